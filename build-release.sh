@@ -82,7 +82,7 @@ if command -v jpackage &> /dev/null; then
     print_status "jpackage found, creating native executables..."
     
     # Create output directories
-    mkdir -p target/native/{windows,linux,mac}
+    mkdir -p jamplate-app/target/native/{windows,linux,mac}
     
     # Determine current platform
     OS=$(uname -s)
@@ -95,24 +95,24 @@ if command -v jpackage &> /dev/null; then
             print_status "Creating macOS application bundle..."
             # For macOS, we can create .app and .dmg
             jpackage \
-                --input target/dependencies \
+                --input jamplate-app/target/dependencies \
                 --main-jar ../jamplate-1.0-SNAPSHOT.jar \
-                --main-class media.samson.jamplate.HelloApplication \
+                --main-class media.samson.jamplate.JamplateLauncher \
                 --name Jamplate \
                 --app-version 1.0.0 \
                 --vendor "Samson Media" \
                 --description "Jamplate - Template Management Tool" \
                 --copyright "Copyright 2025 Samson Media" \
-                --dest target/native/mac \
+                --dest jamplate-app/target/native/mac \
                 --type app-image \
-                --icon src/main/resources/icons/app-icon.icns \
+                --icon jamplate-app/src/main/resources/icons/app-icon.icns \
                 --java-options "--add-exports javafx.graphics/com.sun.javafx.application=ALL-UNNAMED" \
                 --java-options "--add-exports javafx.graphics/com.sun.glass.ui=ALL-UNNAMED" \
                 --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext=ALL-UNNAMED" \
                 --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext.model=ALL-UNNAMED" \
                 --java-options "--add-reads media.samson.jamplate=ALL-UNNAMED" \
                 --java-options "--add-modules java.desktop" \
-                --module-path target/dependencies
+                --module-path jamplate-app/target/dependencies
             
             if [ $? -eq 0 ]; then
                 print_success "macOS application bundle created successfully"
@@ -120,24 +120,24 @@ if command -v jpackage &> /dev/null; then
                 # Create DMG
                 print_status "Creating DMG installer..."
                 jpackage \
-                    --input target/dependencies \
+                    --input jamplate-app/target/dependencies \
                     --main-jar ../jamplate-1.0-SNAPSHOT.jar \
-                    --main-class media.samson.jamplate.HelloApplication \
+                    --main-class media.samson.jamplate.JamplateLauncher \
                     --name Jamplate \
                     --app-version 1.0.0 \
                     --vendor "Samson Media" \
                     --description "Jamplate - Template Management Tool" \
                     --copyright "Copyright 2025 Samson Media" \
-                    --dest target/native/mac \
+                    --dest jamplate-app/target/native/mac \
                     --type dmg \
-                    --icon src/main/resources/icons/app-icon.icns \
+                    --icon jamplate-app/src/main/resources/icons/app-icon.icns \
                     --java-options "--add-exports javafx.graphics/com.sun.javafx.application=ALL-UNNAMED" \
                     --java-options "--add-exports javafx.graphics/com.sun.glass.ui=ALL-UNNAMED" \
                     --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext=ALL-UNNAMED" \
                     --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext.model=ALL-UNNAMED" \
                     --java-options "--add-reads media.samson.jamplate=ALL-UNNAMED" \
                     --java-options "--add-modules java.desktop" \
-                    --module-path target/dependencies
+                    --module-path jamplate-app/target/dependencies
                 
                 if [ $? -eq 0 ]; then
                     print_success "DMG installer created successfully"
@@ -151,23 +151,23 @@ if command -v jpackage &> /dev/null; then
         Linux)
             print_status "Creating Linux application image..."
             jpackage \
-                --input target/dependencies \
+                --input jamplate-app/target/dependencies \
                 --main-jar ../jamplate-1.0-SNAPSHOT.jar \
-                --main-class media.samson.jamplate.HelloApplication \
+                --main-class media.samson.jamplate.JamplateLauncher \
                 --name jamplate \
                 --app-version 1.0.0 \
                 --vendor "Samson Media" \
                 --description "Jamplate - Template Management Tool" \
-                --dest target/native/linux \
+                --dest jamplate-app/target/native/linux \
                 --type app-image \
-                --icon src/main/resources/icons/app-icon.png \
+                --icon jamplate-app/src/main/resources/icons/app-icon.png \
                 --java-options "--add-exports javafx.graphics/com.sun.javafx.application=ALL-UNNAMED" \
                 --java-options "--add-exports javafx.graphics/com.sun.glass.ui=ALL-UNNAMED" \
                 --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext=ALL-UNNAMED" \
                 --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext.model=ALL-UNNAMED" \
                 --java-options "--add-reads media.samson.jamplate=ALL-UNNAMED" \
                 --java-options "--add-modules java.desktop" \
-                --module-path target/dependencies
+                --module-path jamplate-app/target/dependencies
             
             if [ $? -eq 0 ]; then
                 print_success "Linux application image created successfully"
@@ -178,23 +178,23 @@ if command -v jpackage &> /dev/null; then
         MINGW*|CYGWIN*|MSYS*)
             print_status "Creating Windows application..."
             jpackage \
-                --input target/dependencies \
+                --input jamplate-app/target/dependencies \
                 --main-jar ../jamplate-1.0-SNAPSHOT.jar \
-                --main-class media.samson.jamplate.HelloApplication \
+                --main-class media.samson.jamplate.JamplateLauncher \
                 --name Jamplate \
                 --app-version 1.0.0 \
                 --vendor "Samson Media" \
                 --description "Jamplate - Template Management Tool" \
-                --dest target/native/windows \
+                --dest jamplate-app/target/native/windows \
                 --type app-image \
-                --icon src/main/resources/icons/app-icon.ico \
+                --icon jamplate-app/src/main/resources/icons/app-icon.ico \
                 --java-options "--add-exports javafx.graphics/com.sun.javafx.application=ALL-UNNAMED" \
                 --java-options "--add-exports javafx.graphics/com.sun.glass.ui=ALL-UNNAMED" \
                 --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext=ALL-UNNAMED" \
                 --java-options "--add-exports org.fxmisc.richtext/org.fxmisc.richtext.model=ALL-UNNAMED" \
                 --java-options "--add-reads media.samson.jamplate=ALL-UNNAMED" \
                 --java-options "--add-modules java.desktop" \
-                --module-path target/dependencies
+                --module-path jamplate-app/target/dependencies
             
             if [ $? -eq 0 ]; then
                 print_success "Windows application created successfully"
@@ -217,23 +217,23 @@ echo "=========================================="
 echo "           BUILD COMPLETED"
 echo "=========================================="
 
-print_status "Build artifacts created in target/ directory:"
+print_status "Build artifacts created in jamplate-app/target/ directory:"
 
 # List created files
-if [ -d "target/dist" ]; then
-    echo "📁 target/dist/ (Maven assembly output)"
-    ls -la target/dist/ 2>/dev/null || true
+if [ -d "jamplate-app/target/dist" ]; then
+    echo "📁 jamplate-app/target/dist/ (Maven assembly output)"
+    ls -la jamplate-app/target/dist/ 2>/dev/null || true
 fi
 
-if [ -d "target/native" ]; then
-    echo "📁 target/native/ (Native packages)"
-    find target/native -type f -name "*.app" -o -name "*.dmg" -o -name "*.exe" -o -name "*.deb" -o -name "*.rpm" 2>/dev/null || true
+if [ -d "jamplate-app/target/native" ]; then
+    echo "📁 jamplate-app/target/native/ (Native packages)"
+    find jamplate-app/target/native -type f -name "*.app" -o -name "*.dmg" -o -name "*.exe" -o -name "*.deb" -o -name "*.rpm" 2>/dev/null || true
 fi
 
-echo "📦 target/jamplate-1.0-SNAPSHOT-distribution.zip"
-echo "📦 target/jamplate-1.0-SNAPSHOT-distribution.tar.gz"
-echo "☕ target/jamplate-1.0-SNAPSHOT.jar (Main JAR)"
-echo "📚 target/dependencies/ (All dependencies)"
+echo "📦 jamplate-app/target/jamplate-1.0-SNAPSHOT-distribution.zip"
+echo "📦 jamplate-app/target/jamplate-1.0-SNAPSHOT-distribution.tar.gz"
+echo "☕ jamplate-app/target/jamplate-1.0-SNAPSHOT.jar (Main JAR)"
+echo "📚 jamplate-app/target/dependencies/ (All dependencies)"
 
 echo ""
 print_success "Release v1.0.0 build completed successfully!"
@@ -241,8 +241,8 @@ print_success "Release v1.0.0 build completed successfully!"
 echo ""
 echo "📋 DISTRIBUTION GUIDE:"
 echo "1. Cross-platform JAR: Use the -distribution.zip/.tar.gz files"
-echo "2. Native packages: Check target/native/ for platform-specific installers"
-echo "3. Manual setup: Use target/jamplate-1.0-SNAPSHOT.jar with target/dependencies/"
+echo "2. Native packages: Check jamplate-app/target/native/ for platform-specific installers"
+echo "3. Manual setup: Use jamplate-app/target/jamplate-1.0-SNAPSHOT.jar with jamplate-app/target/dependencies/"
 
 echo ""
 print_status "The distribution archives include launch scripts for all platforms."
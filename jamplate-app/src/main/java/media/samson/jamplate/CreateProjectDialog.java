@@ -14,6 +14,8 @@ import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Window;
 
+import media.samson.jamplate.core.TemplateFileType;
+
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -0,0 +1,448 @@
+package media.samson.jamplate;
+
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
+import media.samson.jamplate.core.OutputFormat;
+import media.samson.jamplate.core.ShardingStrategy;
+
+import java.io.File;
+
+/**
+ * Dialog for processing a CSV file and exporting the results to a specified location.
+ */
+public class ExportDialog extends Dialog<ExportDialog.ExportSettings> {
+
+    private final TextField csvFileField;
+    private final TextField directoryField;
+    private final Spinner<Integer> threadsSpinner;
+    private final Spinner<Integer> maxFailuresSpinner;
+    private final ComboBox<OutputFormat> outputFormatComboBox;
+    private final ComboBox<ShardingStrategy> shardingComboBox;
+    private final CheckBox incrementalCheckBox;
+    private final CheckBox resumeCheckBox;
+    private final CheckBox deduplicateCheckBox;
+    private final Button csvBrowseButton;
+    private final Button directoryBrowseButton;
+    private final Button exportButton;
+    private final Button cancelButton;
+    private final Label csvErrorLabel;
+    private final Label directoryErrorLabel;
+
+    private static final String ERROR_STYLE = "-fx-text-fill: red; -fx-font-size: 11px; -fx-padding: 2 0 0 0;";
+
+    /**
+     * Creates a new dialog for exporting data to CSV.
+     *
+     * @param owner the owner window of this dialog
+     */
+    public ExportDialog(Window owner) {
+        setTitle("Process and Export CSV");
+        initOwner(owner);
+        
+        // Create the content pane
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(5);
+        grid.setPadding(new Insets(20, 150, 10, 10));
+        
+        // Initialize error labels
+        csvErrorLabel = new Label();
+        csvErrorLabel.setStyle(ERROR_STYLE);
+        csvErrorLabel.setVisible(false);
+        csvErrorLabel.setManaged(false);
+        csvErrorLabel.setId("csvErrorLabel");
+
+        directoryErrorLabel = new Label();
+        directoryErrorLabel.setStyle(ERROR_STYLE);
+        directoryErrorLabel.setVisible(false);
+        directoryErrorLabel.setManaged(false);
+        directoryErrorLabel.setId("directoryErrorLabel");
+        
+        // CSV file field
+        csvFileField = new TextField();
+        csvFileField.setPromptText("Choose CSV file to process");
+        csvFileField.setId("csvFileField");
+        csvFileField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null && !newValue.trim().isEmpty()) {
+                hideError(csvErrorLabel);
+            }
+        });
+        
+        // Add file path autocompletion for CSV files
+        FilePathAutoComplete csvAutoComplete = FilePathAutoComplete.forFiles(csvFileField);
+        
+        // Set default CSV file location to home directory
+        csvFileField.setText(System.getProperty("user.home") + File.separator);
+        
+        // CSV Browse button
+        csvBrowseButton = new Button("Browse...");
+        csvBrowseButton.setOnAction(e -> browseForCsvFile());
+        
+        // CSV field layout
+        HBox csvBox = new HBox(10, csvFileField, csvBrowseButton);
+        HBox.setHgrow(csvFileField, Priority.ALWAYS);
+        
+        // Directory field
+        directoryField = new TextField();
+        directoryField.setPromptText("Choose output directory for results");
+        directoryField.setId("directoryField");
+        directoryField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null && !newValue.trim().isEmpty()) {
+                hideError(directoryErrorLabel);
+            }
+        });
+        
+        // Add file path autocompletion for directories
+        FilePathAutoComplete.forDirectories(directoryField);
+        
+        // Directory Browse button
+        directoryBrowseButton = new Button("Browse...");
+        directoryBrowseButton.setOnAction(e -> browseForDirectory());
+        
+        // Directory field layout
+        HBox directoryBox = new HBox(10, directoryField, directoryBrowseButton);
+        HBox.setHgrow(directoryField, Priority.ALWAYS);
+        
+        // Worker threads, defaulting to one per available core
+        int processors = Runtime.getRuntime().availableProcessors();
+        threadsSpinner = new Spinner<>(1, Math.max(64, processors * 4), processors);
+        threadsSpinner.setEditable(true);
+        threadsSpinner.setPrefWidth(90);
+        threadsSpinner.setId("threadsSpinner");
+        threadsSpinner.setTooltip(new Tooltip("Number of records rendered and written in parallel"));
+        
+        // Failure limit, where 0 keeps going whatever fails
+        maxFailuresSpinner = new Spinner<>(0, Integer.MAX_VALUE, 0);
+        maxFailuresSpinner.setEditable(true);
+        maxFailuresSpinner.setPrefWidth(90);
+        maxFailuresSpinner.setId("maxFailuresSpinner");
+        maxFailuresSpinner.setTooltip(new Tooltip("Stop the export once more records than this have failed (0 = never stop)"));
+        
+        // Output format, defaulting to one file per record; standard output is only for the command line
+        outputFormatComboBox = new ComboBox<>();
+        for (OutputFormat format : OutputFormat.values()) {
+            if (format != OutputFormat.STDOUT) {
+                outputFormatComboBox.getItems().add(format);
+            }
+        }
+        outputFormatComboBox.setValue(OutputFormat.FILES);
+        outputFormatComboBox.setId("outputFormatComboBox");
+        outputFormatComboBox.setTooltip(new Tooltip("Write one file per record, or stream all documents into a single archive or file"));
+        
+        // Subfolders, for exports too large for a single flat directory
+        shardingComboBox = new ComboBox<>();
+        shardingComboBox.getItems().addAll(ShardingStrategy.values());
+        shardingComboBox.setValue(ShardingStrategy.NONE);
+        shardingComboBox.setId("shardingComboBox");
+        shardingComboBox.setTooltip(new Tooltip("Spread files over subfolders and write a manifest of where each record went"));
+        
+        // Incremental export, which only applies to one file per record
+        incrementalCheckBox = new CheckBox("Only write changed records");
+        incrementalCheckBox.setId("incrementalCheckBox");
+        incrementalCheckBox.setTooltip(new Tooltip("Skip records whose files are up to date from the last export to this location, and delete files of records that are gone"));
+        incrementalCheckBox.disableProperty().bind(outputFormatComboBox.valueProperty().isNotEqualTo(OutputFormat.FILES));
+        
+        // Resume an interrupted export, which also only applies to one file per record
+        resumeCheckBox = new CheckBox("Resume an interrupted export");
+        resumeCheckBox.setId("resumeCheckBox");
+        resumeCheckBox.setTooltip(new Tooltip("Continue the last export to this location from where it stopped, instead of starting over"));
+        resumeCheckBox.disableProperty().bind(outputFormatComboBox.valueProperty().isNotEqualTo(OutputFormat.FILES));
+        
+        // Deduplication, which links identical files together
+        deduplicateCheckBox = new CheckBox("Store identical files once");
+        deduplicateCheckBox.setId("deduplicateCheckBox");
+        deduplicateCheckBox.setTooltip(new Tooltip("Save files with the same content as links to a single copy on disk"));
+        deduplicateCheckBox.disableProperty().bind(outputFormatComboBox.valueProperty().isNotEqualTo(OutputFormat.FILES));
+        
+        // Labels
+        Label csvLabel = new Label("Input CSV:");
+        Label directoryLabel = new Label("Output Location:");
+        Label threadsLabel = new Label("Threads:");
+        Label maxFailuresLabel = new Label("Stop after failures:");
+        Label outputFormatLabel = new Label("Output format:");
+        Label shardingLabel = new Label("Subfolders:");
+        
+        // Add components to grid
+        int row = 0;
+        grid.add(csvLabel, 0, row);
+        grid.add(csvBox, 1, row);
+        grid.add(csvErrorLabel, 1, ++row);
+        grid.add(directoryLabel, 0, ++row);
+        grid.add(directoryBox, 1, row);
+        grid.add(directoryErrorLabel, 1, ++row);
+        grid.add(threadsLabel, 0, ++row);
+        grid.add(threadsSpinner, 1, row);
+        grid.add(maxFailuresLabel, 0, ++row);
+        grid.add(maxFailuresSpinner, 1, row);
+        grid.add(outputFormatLabel, 0, ++row);
+        grid.add(outputFormatComboBox, 1, row);
+        grid.add(shardingLabel, 0, ++row);
+        grid.add(shardingComboBox, 1, row);
+        grid.add(incrementalCheckBox, 1, ++row);
+        grid.add(resumeCheckBox, 1, ++row);
+        grid.add(deduplicateCheckBox, 1, ++row);
+        
+        // Create dialog buttons
+        ButtonType exportButtonType = new ButtonType("Export", ButtonBar.ButtonData.OK_DONE);
+        ButtonType cancelButtonType = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+        getDialogPane().getButtonTypes().addAll(exportButtonType, cancelButtonType);
+        
+        // Get the buttons from the dialog pane
+        exportButton = (Button) getDialogPane().lookupButton(exportButtonType);
+        cancelButton = (Button) getDialogPane().lookupButton(cancelButtonType);
+        
+        // Disable Export button if either field is empty
+        exportButton.disableProperty().bind(
+            csvFileField.textProperty().isEmpty()
+            .or(directoryField.textProperty().isEmpty())
+        );
+        
+        // Set the dialog content
+        getDialogPane().setContent(grid);
+        
+        // Set result converter
+        setResultConverter(dialogButton -> {
+            if (dialogButton.getButtonData() == ButtonBar.ButtonData.OK_DONE) {
+                return new ExportSettings(
+                    csvFileField.getText().trim(),
+                    directoryField.getText().trim(),
+                    threadsSpinner.getValue(),
+                    maxFailuresSpinner.getValue(),
+                    outputFormatComboBox.getValue(),
+                    shardingComboBox.getValue(),
+                    incrementalCheckBox.isSelected() && !incrementalCheckBox.isDisabled(),
+                    resumeCheckBox.isSelected() && !resumeCheckBox.isDisabled(),
+                    deduplicateCheckBox.isSelected() && !deduplicateCheckBox.isDisabled()
+                );
+            }
+            return null;
+        });
+        
+        // Set a default directory
+        directoryField.setText(System.getProperty("user.home"));
+    }
+    
+    /**
+     * Opens a file chooser dialog for selecting an existing CSV file.
+     */
+    private void browseForCsvFile() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select Existing CSV File");
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+            new FileChooser.ExtensionFilter("All Files", "*.*")
+        );
+        
+        // Set initial directory based on the current field value
+        String currentPath = csvFileField.getText().trim();
+        if (!currentPath.isEmpty()) {
+            File currentFile = new File(currentPath);
+            if (currentFile.getParentFile() != null && currentFile.getParentFile().exists()) {
+                fileChooser.setInitialDirectory(currentFile.getParentFile());
+            }
+        }
+        
+        // Show file chooser
+        File selectedFile = fileChooser.showOpenDialog(getDialogPane().getScene().getWindow());
+        if (selectedFile != null) {
+            csvFileField.setText(selectedFile.getAbsolutePath());
+        }
+    }
+    
+    /**
+     * Opens a directory chooser dialog for selecting the export location.
+     */
+    private void browseForDirectory() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Select Export Directory");
+        
+        // Set initial directory based on the current field value
+        String currentPath = directoryField.getText().trim();
+        if (!currentPath.isEmpty()) {
+            File currentDir = new File(currentPath);
+            if (currentDir.exists() && currentDir.isDirectory()) {
+                directoryChooser.setInitialDirectory(currentDir);
+            }
+        }
+        
+        // Show directory chooser
+        File selectedDirectory = directoryChooser.showDialog(getDialogPane().getScene().getWindow());
+        if (selectedDirectory != null) {
+            directoryField.setText(selectedDirectory.getAbsolutePath());
+        }
+    }
+    
+    /**
+     * Shows an error message in the specified error label.
+     * 
+     * @param label The error label to update
+     * @param message The error message to display
+     */
+    public void showError(Label label, String message) {
+        label.setText(message);
+        label.setVisible(true);
+        label.setManaged(true);
+    }
+    
+    /**
+     * Shows an error message for the CSV file field.
+     * 
+     * @param message The error message to display
+     */
+    public void showCsvError(String message) {
+        showError(csvErrorLabel, message);
+    }
+    
+    /**
+     * Shows an error message for the directory field.
+     * 
+     * @param message The error message to display
+     */
+    public void showDirectoryError(String message) {
+        showError(directoryErrorLabel, message);
+    }
+    
+    /**
+     * Hides the error message for the specified label.
+     * 
+     * @param label The error label to hide
+     */
+    private void hideError(Label label) {
+        label.setVisible(false);
+        label.setManaged(false);
+    }
+
+    /**
+     * Class to hold the export settings selected by the user.
+     */
+    public static class ExportSettings {
+        private final String csvFile;
+        private final String exportDirectory;
+        private final int threads;
+        private final int maxFailures;
+        private final OutputFormat outputFormat;
+        private final ShardingStrategy sharding;
+        private final boolean incremental;
+        private final boolean resume;
+        private final boolean deduplicate;
+
+        public ExportSettings(String csvFile, String exportDirectory) {
+            this(csvFile, exportDirectory, Runtime.getRuntime().availableProcessors());
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads) {
+            this(csvFile, exportDirectory, threads, 0);
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads, int maxFailures) {
+            this(csvFile, exportDirectory, threads, maxFailures, OutputFormat.FILES);
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads, int maxFailures,
+                              OutputFormat outputFormat) {
+            this(csvFile, exportDirectory, threads, maxFailures, outputFormat, ShardingStrategy.NONE);
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads, int maxFailures,
+                              OutputFormat outputFormat, ShardingStrategy sharding) {
+            this(csvFile, exportDirectory, threads, maxFailures, outputFormat, sharding, false);
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads, int maxFailures,
+                              OutputFormat outputFormat, ShardingStrategy sharding, boolean incremental) {
+            this(csvFile, exportDirectory, threads, maxFailures, outputFormat, sharding, incremental, false);
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads, int maxFailures,
+                              OutputFormat outputFormat, ShardingStrategy sharding, boolean incremental,
+                              boolean resume) {
+            this(csvFile, exportDirectory, threads, maxFailures, outputFormat, sharding, incremental, resume, false);
+        }
+
+        public ExportSettings(String csvFile, String exportDirectory, int threads, int maxFailures,
+                              OutputFormat outputFormat, ShardingStrategy sharding, boolean incremental,
+                              boolean resume, boolean deduplicate) {
+            this.csvFile = csvFile;
+            this.exportDirectory = exportDirectory;
+            this.threads = threads;
+            this.maxFailures = maxFailures;
+            this.outputFormat = outputFormat;
+            this.sharding = sharding;
+            this.incremental = incremental;
+            this.resume = resume;
+            this.deduplicate = deduplicate;
+        }
+
+        public String getCsvFile() {
+            return csvFile;
+        }
+
+        public String getExportDirectory() {
+            return exportDirectory;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Gets the number of failed records tolerated before the export stops.
+         *
+         * @return The failure limit, or 0 to never stop
+         */
+        public int getMaxFailures() {
+            return maxFailures;
+        }
+
+        /**
+         * Gets whether documents are written as files or into an archive.
+         *
+         * @return The output format
+         */
+        public OutputFormat getOutputFormat() {
+            return outputFormat;
+        }
+
+        /**
+         * Gets how files are spread over subfolders.
+         *
+         * @return The sharding strategy
+         */
+        public ShardingStrategy getSharding() {
+            return sharding;
+        }
+
+        /**
+         * Checks whether only records that changed since the last export are written.
+         *
+         * @return true for an incremental export
+         */
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        /**
+         * Checks whether an interrupted export to the same location is continued.
+         *
+         * @return true to resume from the export's checkpoint
+         */
+        public boolean isResume() {
+            return resume;
+        }
+
+        /**
+         * Checks whether identical documents are stored once.
+         *
+         * @return true to store duplicate documents as hard links
+         */
+        public boolean isDeduplicate() {
+            return deduplicate;
+        }
+    }
+}
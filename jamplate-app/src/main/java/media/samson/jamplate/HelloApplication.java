@@ -85,6 +85,7 @@ public class HelloApplication extends Application {
     }
 
     public static void main(String[] args) {
-        launch();
+        // The packaged main class is JamplateLauncher, which also runs headless commands
+        JamplateLauncher.main(args);
     }
 }
\ No newline at end of file
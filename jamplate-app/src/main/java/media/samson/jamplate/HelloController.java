@@ -1,9 +1,13 @@
 package media.samson.jamplate;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
 import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
 import javafx.scene.control.Alert;
@@ -33,6 +37,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 
 import org.controlsfx.control.action.Action;
 import org.controlsfx.glyphfont.FontAwesome;
@@ -42,10 +47,27 @@ import org.controlsfx.glyphfont.GlyphFontRegistry;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
 
+import media.samson.jamplate.core.ExportJob;
+import media.samson.jamplate.core.ExportListener;
+import media.samson.jamplate.core.ExportOptions;
+import media.samson.jamplate.core.ExportProgress;
+import media.samson.jamplate.core.ExportStage;
+import media.samson.jamplate.core.MyTemplateEngine;
+import media.samson.jamplate.core.OutputFormat;
+import media.samson.jamplate.core.ParallelCsvReader;
+import media.samson.jamplate.core.ProgressReporter;
+import media.samson.jamplate.core.ProjectFile;
+import media.samson.jamplate.core.RecordBinder;
+import media.samson.jamplate.core.RecordSource;
+import media.samson.jamplate.core.ShardingStrategy;
+import media.samson.jamplate.core.TemplateFileType;
+import media.samson.jamplate.core.Variable;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -55,7 +77,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 public class HelloController {
@@ -724,9 +745,6 @@ public class HelloController {
                     return;
                 }
 
-                // Load the CSV file
-                CsvImport csvImport = new CsvImport(new File(csvFile));
-                
                 // Load the template content
                 String templateContent;
                 try {
@@ -740,178 +758,119 @@ public class HelloController {
                     return;
                 }
 
-                // Extract required variables from template
-                Set<String> requiredVariables = extractTemplateVariables(templateContent);
+                // Open the CSV file for streaming; rows are read as the export consumes them
+                RecordSource csvReader = ParallelCsvReader.open(
+                    new File(csvFile), StandardCharsets.UTF_8, exportSettings.getThreads());
                 
-                // Get CSV headers
-                List<String> csvHeaders = csvImport.getHeaders();
+                ExportJob exportJob;
+                try {
+                    // Set up template engine
+                    MyTemplateEngine templateEngine = new MyTemplateEngine();
+                    templateEngine.setTemplate(templateContent);
+
+                    // Check if all required variables are present in CSV or project variables
+                    List<String> missingVariables = RecordBinder.findUnboundVariables(
+                        templateEngine.getCompiledTemplate(), csvReader.getHeaders(), variables);
                 
-                // Check if all required variables are present in CSV or project variables
-                List<String> missingVariables = new ArrayList<>();
-                for (String var : requiredVariables) {
-                    boolean isInCsv = csvHeaders.contains(var);
-                    boolean isInProject = variables.stream()
-                        .anyMatch(v -> v.getName().equals(var));
-                    boolean isSpecialVar = var.equals("JamplateProjectName") || 
-                                          var.equals("JamplateDocumentCreateAt");
-                    
-                    if (!isInCsv && !isInProject && !isSpecialVar) {
-                        missingVariables.add(var);
+                    // Show error if any required variables are missing
+                    if (!missingVariables.isEmpty()) {
+                        csvReader.close();
+                        showErrorDialog(
+                            "Export Error",
+                            "Missing Required Variables",
+                            "The following variables are required by the template but not found in the CSV or project variables:\n" +
+                            String.join("\n", missingVariables)
+                        );
+                        return;
                     }
-                }
-                
-                // Show error if any required variables are missing
-                if (!missingVariables.isEmpty()) {
-                    showErrorDialog(
-                        "Export Error",
-                        "Missing Required Variables",
-                        "The following variables are required by the template but not found in the CSV or project variables:\n" +
-                        String.join("\n", missingVariables)
-                    );
-                    return;
-                }
 
-                // Set up template engine
-                MyTemplateEngine templateEngine = new MyTemplateEngine();
-                templateEngine.setTemplate(templateContent);
+                    // Get current timestamp for unique filenames; a resumed export keeps the interrupted one's
+                    String timestamp = exportSettings.isResume()
+                        ? ExportJob.findResumableTimestamp(directory.toPath())
+                        : null;
+                    if (timestamp == null) {
+                        timestamp = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")
+                            .format(LocalDateTime.now());
+                    }
 
-                // Get current timestamp for unique filenames
-                String timestamp = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")
-                    .format(LocalDateTime.now());
+                    // Bind the template and filename template to the CSV layout once
+                    try {
+                        ExportOptions exportOptions = new ExportOptions();
+                        exportOptions.setThreads(exportSettings.getThreads());
+                        exportOptions.setMaxFailures(exportSettings.getMaxFailures());
+                        exportOptions.setOutputFormat(exportSettings.getOutputFormat());
+                        exportOptions.setSharding(exportSettings.getSharding());
+                        exportOptions.setManifestEnabled(exportSettings.getSharding() != ShardingStrategy.NONE);
+                        exportOptions.setIncremental(exportSettings.isIncremental());
+                        exportOptions.setResume(exportSettings.isResume());
+                        exportOptions.setDeduplicate(exportSettings.isDeduplicate());
+                        exportJob = new ExportJob(
+                            csvReader,
+                            templateEngine.getCompiledTemplate(),
+                            new ArrayList<>(variables),
+                            projectFile.getProjectName(),
+                            projectFile.getTemplateFileType(),
+                            directory.toPath(),
+                            timestamp,
+                            exportOptions
+                        );
+                    } catch (IllegalArgumentException e) {
+                        // Rejected settings are the user's options, not a problem with the CSV file
+                        csvReader.close();
+                        showErrorDialog(
+                            "Export Error",
+                            "Invalid Export Options",
+                            "The selected export options cannot be used:\n" + e.getMessage()
+                        );
+                        System.err.println("Invalid export options: " + e.getMessage());
+                        return;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Until the export task takes over the reader, it is closed here
+                    csvReader.close();
+                    throw e;
+                }
 
-                // Get list of records and create progress dialog
-                List<Map<String, String>> records = csvImport.getRecords();
-                final int totalRecords = records.size();
+                // Get estimated record count and create progress dialog
+                final int totalRecords = exportJob.estimateTotalRecords();
                 final String templateName = new File(projectFile.getTemplateFilePath()).getName();
                 
                 // Create progress dialog
                 ProgressDialog progressDialog = new ProgressDialog(owner);
                 
                 // Create background task for processing
-                Task<Void> exportTask = new Task<>() {
+                Task<Integer> exportTask = new Task<>() {
                     @Override
-                    protected Void call() throws Exception {
+                    protected Integer call() throws Exception {
                         // Initialize progress
                         updateProgress(0, totalRecords);
                         updateMessage(String.format("Starting to process %d records using template: %s", 
                             totalRecords, templateName));
                         
-                        // Process records with index tracking
-                        for (int i = 0; i < records.size(); i++) {
-                            if (isCancelled()) {
-                                break;
-                            }
-
-                            Map<String, String> record = records.get(i);
-                            
-                            // Add template variables
-                            Map<String, String> templateVars = new HashMap<>();
-                            templateVars.putAll(record);
-                            
-                            // Add project variables (only if not already set by CSV)
-                            for (Variable var : variables) {
-                                if (!templateVars.containsKey(var.getName())) {
-                                    templateVars.put(var.getName(), var.getValue());
-                                }
-                            }
-                            
-                            // Add special variables (1-based record index)
-                            int currentRecord = i + 1;
-                            templateVars.put("JamplateProjectName", projectFile.getProjectName());
-                            templateVars.put("JamplateDocumentCreateAt", timestamp);
-                            templateVars.put("JamplateRecordIndex", String.valueOf(currentRecord));
-                            templateVars.put("JamplateRecordIndexPadded", String.format("%04d", currentRecord));
-                            
-                            try {
-                                // Process template with variables (convert Map to HashMap)
-                                String processedContent = templateEngine.build(new HashMap<>(templateVars));
-                                
-                                // Generate filename using available patterns and variables
-                                String outputFileName;
-                                try {
-                                    // Check for filename template variable
-                                    Variable filenameTemplate = variables.stream()
-                                        .filter(v -> v.getName().equals("JamplateOutputFileName"))
-                                        .findFirst()
-                                        .orElse(null);
-                                    
-                                    if (filenameTemplate != null) {
-                                        // Process filename template with variables
-                                        MyTemplateEngine filenameEngine = new MyTemplateEngine();
-                                        filenameEngine.setTemplate(filenameTemplate.getValue());
-                                        outputFileName = filenameEngine.build(new HashMap<>(templateVars));
-                                    } else if (record.containsKey("filename")) {
-                                        // Use filename field from CSV if available
-                                        outputFileName = record.get("filename");
-                                    } else if (record.containsKey("name")) {
-                                        // Fall back to name field if available
-                                        outputFileName = record.get("name");
-                                    } else {
-                                        // Use timestamp and padded index as fallback
-                                        outputFileName = String.format("%s_%s",
-                                            timestamp,
-                                            templateVars.get("JamplateRecordIndexPadded")
-                                        );
-                                    }
-                                    
-                                    // Add file extension if not already present
-                                    // Get file extension using switch on template type
-                                    String extension = switch (projectFile.getTemplateFileType()) {
-                                        case HTML_FILE -> ".html";
-                                        case PHP_FILE -> ".php";
-                                        case TXT_FILE -> ".txt";
-                                        default -> ".txt";
-                                    };
-                                    if (!outputFileName.toLowerCase().endsWith(extension.toLowerCase())) {
-                                        outputFileName += extension;
-                                    }
-                                    
-                                    // Sanitize filename (enhanced version)
-                                    outputFileName = sanitizeFileName(outputFileName);
-                                    
-                                } catch (Exception e) {
-                                    throw new IOException("Error generating output filename: " + e.getMessage(), e);
-                                }
-                                
-                                // Save to output file
-                                Path outputPath = Paths.get(exportDirectory, outputFileName);
-                                Files.writeString(outputPath, processedContent);
-                                
-                                // Update progress
-                                updateProgress(currentRecord, totalRecords);
-                                
-                                // Create progress message
-                                String currentFile = new File(outputFileName).getName();
-                                double progress = (double) currentRecord / totalRecords;
-                                updateMessage(String.format("Generated file %d of %d (%d%%): %s",
-                                    currentRecord,
-                                    totalRecords,
-                                    (int)(progress * 100),
-                                    currentFile));
-                                
-                            } catch (Exception e) {
-                                // Handle error for current record
-                                String errorMsg = String.format("Error processing record %d of %d: %s",
-                                    currentRecord,
-                                    totalRecords,
-                                    e.getMessage());
-                                
-                                // Log error and update message
-                                System.err.println("Export error: " + errorMsg);
-                                updateMessage(String.format("[Warning] Failed to process record %d: %s (Continuing...)",
-                                    currentRecord,
-                                    e.getMessage()));
-                                
-                                // Pause briefly to show error message
-                                Thread.sleep(1500);
-                            }
+                        // Render and write records, possibly on several worker threads
+                        int exportedRecords;
+                        try (csvReader) {
+                            exportedRecords = exportJob.run(this::isCancelled, listener);
                         }
                         
                         // Final progress update
-                        updateProgress(totalRecords, totalRecords);
+                        updateProgress(exportedRecords, exportedRecords);
                         updateMessage("Export completed successfully.");
-                        return null;
+                        return exportedRecords;
                     }
+                    
+                    // Progress is sampled by the monitor below, so records only need logging when they fail
+                    private final ExportListener listener = new ExportListener() {
+                        @Override
+                        public void recordExported(int recordNumber, String fileName, int completed, int total) {
+                        }
+                        
+                        @Override
+                        public void recordFailed(int recordNumber, Exception error, int completed, int total) {
+                            System.err.println("Export error: Error processing record " + recordNumber + ": "
+                                + error.getMessage());
+                        }
+                    };
                 };
 
                 // Set up progress dialog with task
@@ -920,23 +879,82 @@ public class HelloController {
                 // Start the export task in a daemon thread
                 Thread exportThread = new Thread(exportTask, "ExportThread");
                 exportThread.setDaemon(true);
+                // A cancelled export finishes its records in flight, so the dialog waits for the thread
+                progressDialog.setWorker(exportThread);
                 exportThread.start();
                 
+                // Sample progress at a fixed rate; the export threads only update counters
+                ProgressReporter progressReporter = new ProgressReporter(exportJob);
+                List<ExportStage> stages = exportJob.getStages();
+                long[] lastProcessed = new long[stages.size()];
+                long[] lastSample = {System.nanoTime()};
+                int[] ticks = {0};
+                Timeline progressMonitor = new Timeline(new KeyFrame(Duration.millis(ProgressReporter.SAMPLE_INTERVAL_MILLIS), event -> {
+                    // Leave the final message of a failed or finished task alone
+                    if (!exportTask.isRunning()) {
+                        return;
+                    }
+                    ExportProgress progress = progressReporter.sample();
+                    progressDialog.showProgress(progress.getFraction(), describeProgress(progress));
+                    progressDialog.setErrorCount(progress.getFailed());
+                    
+                    // Stage statistics are refreshed twice a second
+                    if (ticks[0]++ % 5 == 0) {
+                        long now = System.nanoTime();
+                        progressDialog.setDetails(describeStages(stages, lastProcessed, (now - lastSample[0]) / 1e9));
+                        lastSample[0] = now;
+                    }
+                }));
+                progressMonitor.setCycleCount(Animation.INDEFINITE);
+                progressMonitor.play();
+                
                 // Show progress dialog and wait for completion
                 progressDialog.showAndWait();
+                progressMonitor.stop();
+                
+                // Point at the dead-letter file if any records failed, and summarise incremental, deduplicated and resumed exports
+                int failedRecords = exportJob.getFailedCount();
+                Path deadLetterFile = exportJob.getDeadLetterFile();
+                String resultNote = deadLetterFile == null ? "" : String.format(
+                    "\n\n%d records failed. They are listed with their errors in '%s'.",
+                    failedRecords, deadLetterFile.getFileName());
+                
+                if (exportSettings.isIncremental()) {
+                    resultNote = String.format("\n\n%d files were already up to date and %d stale files were deleted.",
+                        exportJob.getUnchangedCount(), exportJob.getDeletedCount()) + resultNote;
+                }
+                if (exportJob.getDeduplicatedCount() > 0) {
+                    resultNote = String.format("\n\n%d files had the same content as another and were stored as links to it.",
+                        exportJob.getDeduplicatedCount()) + resultNote;
+                }
+                if (exportJob.getResumedCount() > 0) {
+                    resultNote = String.format("\n\nResumed after %d records exported before the interruption.",
+                        exportJob.getResumedCount()) + resultNote;
+                }
                 
                 // Show completion message based on task state
-                if (!exportTask.isCancelled()) {
+                if (exportTask.getState() == Worker.State.FAILED) {
+                    showErrorDialog(
+                        "Export Error",
+                        "Export Stopped",
+                        exportTask.getException().getMessage() + resultNote
+                    );
+                } else if (!exportTask.isCancelled()) {
                     showSuccessMessage(String.format("Successfully exported %d files using template '%s' in '%s'", 
-                        totalRecords, 
+                        exportJob.getCompletedCount() - failedRecords, 
                         templateName,
-                        new File(exportDirectory).getName()));
+                        exportJob.getOutputFile() != null
+                            ? exportJob.getOutputFile().getFileName().toString()
+                            : new File(exportDirectory).getName()) + resultNote);
                 } else {
                     // Show number of completed records at cancellation
-                    int completedRecords = (int)Math.ceil(exportTask.getProgress() * totalRecords);
                     showSuccessMessage(String.format("Export cancelled after processing %d of %d files", 
-                        completedRecords,
-                        totalRecords));
+                        exportJob.getCompletedCount(),
+                        Math.max(exportJob.getCompletedCount(), exportJob.estimateTotalRecords()))
+                        + (exportSettings.getOutputFormat() == OutputFormat.FILES
+                            ? "\n\nChoose 'Resume an interrupted export' to continue it later."
+                            : "")
+                        + resultNote);
                 }
             } catch (IOException e) {
                 showErrorDialog(
@@ -957,81 +975,48 @@ public class HelloController {
     }
 
     /**
-     * Sanitizes a filename by removing or replacing invalid characters.
-     * 
-     * @param filename The filename to sanitize
-     * @return A sanitized filename
-     */
-    /**
-     * Sanitizes a filename by removing or replacing invalid characters.
-     * Also handles length limitations and other platform-specific restrictions.
-     * 
-     * @param filename The filename to sanitize
-     * @return A sanitized filename
+     * Formats the overall progress with throughput and the estimated time remaining.
+     *
+     * @param progress The sampled progress
+     * @return The progress message
      */
-    private String sanitizeFileName(String filename) {
-        if (filename == null || filename.trim().isEmpty()) {
-            throw new IllegalArgumentException("Filename cannot be null or empty");
-        }
-
-        // Replace invalid characters with underscores
-        String sanitized = filename.replaceAll("[\\\\/:*?\"<>|]", "_");
-        
-        // Replace multiple consecutive underscores with a single one
-        sanitized = sanitized.replaceAll("_+", "_");
-        
-        // Remove leading/trailing dots and spaces
-        sanitized = sanitized.replaceAll("^[. ]+|[. ]+$", "");
-        
-        // Ensure the filename isn't too long (common limit is 255 bytes)
-        if (sanitized.getBytes().length > 255) {
-            String extension = "";
-            int lastDot = sanitized.lastIndexOf('.');
-            if (lastDot > 0) {
-                extension = sanitized.substring(lastDot);
-                sanitized = sanitized.substring(0, lastDot);
-            }
-            
-            // Truncate the name part to fit within limits with the extension
-            while ((sanitized + extension).getBytes().length > 255) {
-                sanitized = sanitized.substring(0, sanitized.length() - 1);
-            }
-            
-            sanitized += extension;
-        }
-        
-        // If the filename is empty after sanitization, use a default name
-        if (sanitized.trim().isEmpty()) {
-            return "untitled";
-        }
-        
-        return sanitized;
+    private String describeProgress(ExportProgress progress) {
+        String eta = progress.getEta() == null ? "--:--" : String.format("%d:%02d",
+            progress.getEta().toMinutes(), progress.getEta().toSecondsPart());
+        return String.format("Generated %,d of %,d files (%d%%)\n%,.0f records/s, %.1f MB/s, ETA %s",
+            progress.getCompleted(),
+            progress.getTotal(),
+            (int) (progress.getFraction() * 100),
+            progress.getRecordsPerSecond(),
+            progress.getBytesPerSecond() / (1024 * 1024),
+            eta);
     }
-    
+
     /**
-     * Extracts variable names from template content.
-     * Looks for patterns like {{$variableName}} in the template.
+     * Formats one line per export stage with its throughput and queue depth.
      *
-     * @param templateContent The template content to analyze
-     * @return A set of variable names (without the "$" prefix)
+     * @param stages The export stages
+     * @param lastProcessed The processed counts at the previous sample, updated in place
+     * @param seconds The time since the previous sample
+     * @return The formatted stage statistics
      */
-    private Set<String> extractTemplateVariables(String templateContent) {
-        Set<String> variables = new HashSet<>();
-        int pos = 0;
-        
-        while ((pos = templateContent.indexOf("{{$", pos)) != -1) {
-            int endPos = templateContent.indexOf("}}", pos);
-            if (endPos != -1) {
-                // Extract variable name without {{$ and }}
-                String varName = templateContent.substring(pos + 3, endPos).trim();
-                variables.add(varName);
-                pos = endPos + 2;
-            } else {
-                break;
+    private String describeStages(List<ExportStage> stages, long[] lastProcessed, double seconds) {
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < stages.size(); i++) {
+            ExportStage stage = stages.get(i);
+            long processed = stage.getProcessed();
+            double rate = seconds > 0 ? (processed - lastProcessed[i]) / seconds : 0;
+            lastProcessed[i] = processed;
+
+            if (details.length() > 0) {
+                details.append('\n');
+            }
+            details.append(String.format("%-7s %,10d done %,9.0f/s", stage.getName(), processed, rate));
+            if (stage.getQueueCapacity() > 0) {
+                details.append(String.format("   queue %d/%d", stage.getQueueDepth(), stage.getQueueCapacity()));
             }
         }
-        
-        return variables;
+        return details.toString();
     }
 
     @FXML
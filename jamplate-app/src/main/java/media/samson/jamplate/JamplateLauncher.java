@@ -0,0 +1,31 @@
+package media.samson.jamplate;
+
+import javafx.application.Application;
+
+import media.samson.jamplate.core.JamplateCli;
+
+/**
+ * Main class of the packaged application.
+ * <p>
+ * When the main class extends {@link Application}, the Java launcher starts the
+ * JavaFX toolkit before {@code main} runs, which fails on machines without a
+ * display. This class does not, so commands such as {@code export} and
+ * {@code --help} run headless, and only the desktop application starts JavaFX.
+ */
+public final class JamplateLauncher {
+
+    private JamplateLauncher() {
+    }
+
+    /**
+     * Runs a command line command, or starts the desktop application.
+     *
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        if (JamplateCli.isCommand(args)) {
+            System.exit(JamplateCli.run(args, System.out, System.err));
+        }
+        Application.launch(HelloApplication.class, args);
+    }
+}
@@ -11,11 +11,20 @@ import javafx.stage.Window;
 /**
  * A dialog that shows progress of a task with a progress bar,
  * status message, and cancel button.
+ * <p>
+ * A cancelled task may keep working for a while, for example to finish the items
+ * it has started. When the thread running the task is known, the dialog stays open
+ * in a cancelling state until that thread has ended.
  */
 public class ProgressDialog extends Dialog<Void> {
     private final Label messageLabel;
     private final ProgressBar progressBar;
+    private final Label detailsLabel;
+    private final Label errorsLabel;
     private Task<?> task;
+    private Thread worker;
+    private final ButtonType cancelButton;
+    private boolean cancelling;
     private double maxProgress = 100.0;
     private double currentProgress = 0.0;
 
@@ -42,15 +51,31 @@ public class ProgressDialog extends Dialog<Void> {
         progressBar = new ProgressBar();
         progressBar.setMaxWidth(Double.MAX_VALUE);
         
+        // Create details label, hidden until details are set
+        detailsLabel = new Label();
+        detailsLabel.setId("progressDetails");
+        detailsLabel.setMaxWidth(Double.MAX_VALUE);
+        detailsLabel.setStyle("-fx-font-family: monospace; -fx-font-size: 11px;");
+        detailsLabel.setVisible(false);
+        detailsLabel.managedProperty().bind(detailsLabel.visibleProperty());
+        
+        // Create error counter label, hidden until something fails
+        errorsLabel = new Label();
+        errorsLabel.setId("progressErrors");
+        errorsLabel.setMaxWidth(Double.MAX_VALUE);
+        errorsLabel.setStyle("-fx-text-fill: red; -fx-font-size: 12px;");
+        errorsLabel.setVisible(false);
+        errorsLabel.managedProperty().bind(errorsLabel.visibleProperty());
+        
         // Create layout
         VBox content = new VBox(10);
         content.setAlignment(Pos.CENTER);
         content.setPadding(new Insets(20));
         content.setPrefWidth(400);
-        content.getChildren().addAll(statusLabel, messageLabel, progressBar);
+        content.getChildren().addAll(statusLabel, messageLabel, progressBar, errorsLabel, detailsLabel);
         
         // Add cancel button
-        ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+        cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
         getDialogPane().getButtonTypes().add(cancelButton);
         
         // Set dialog content
@@ -58,7 +83,10 @@ public class ProgressDialog extends Dialog<Void> {
         
         // Handle dialog close request
         setOnCloseRequest(event -> {
-            if (task != null && task.isRunning()) {
+            if (cancelling) {
+                // The task is still stopping; the dialog closes once it has
+                event.consume();
+            } else if (task != null && task.isRunning()) {
                 event.consume();
                 
                 // Ask for confirmation
@@ -111,7 +139,11 @@ public class ProgressDialog extends Dialog<Void> {
                     getDialogPane().getButtonTypes().setAll(ButtonType.CLOSE);
                     break;
                 case CANCELLED:
-                    Platform.runLater(this::close);
+                    if (worker != null && worker.isAlive()) {
+                        showCancelling();
+                    } else {
+                        Platform.runLater(this::close);
+                    }
                     break;
                 default:
                     break;
@@ -119,6 +151,48 @@ public class ProgressDialog extends Dialog<Void> {
         });
     }
 
+    /**
+     * Sets the thread that runs the task, so a cancelled task is waited for.
+     * Must be called before the task can be cancelled.
+     *
+     * @param worker The thread running the task
+     */
+    public void setWorker(Thread worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * Keeps the dialog open until the worker thread of a cancelled task has ended.
+     */
+    private void showCancelling() {
+        cancelling = true;
+        getDialogPane().lookupButton(cancelButton).setDisable(true);
+        Label statusLabel = (Label) ((VBox) getDialogPane().getContent()).getChildren().get(0);
+        statusLabel.setText("Cancelling...");
+        messageLabel.textProperty().unbind();
+        messageLabel.setText("Finishing the work already started.");
+
+        Thread waiter = new Thread(() -> {
+            boolean interrupted = false;
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            Platform.runLater(() -> {
+                cancelling = false;
+                close();
+            });
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }, "ProgressDialogWaiter");
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
     /**
      * Shows an error message when the task fails.
      *
@@ -222,4 +296,47 @@ public class ProgressDialog extends Dialog<Void> {
             setProcessMessage(message);
         });
     }
+
+    /**
+     * Shows progress sampled by the caller instead of the task's own progress.
+     * Must be called on the JavaFX application thread, for example from a timeline
+     * that samples the work at a fixed rate.
+     *
+     * @param fraction The finished fraction, between 0 and 1
+     * @param message The message to display
+     */
+    public void showProgress(double fraction, String message) {
+        if (progressBar.progressProperty().isBound()) {
+            progressBar.progressProperty().unbind();
+        }
+        if (messageLabel.textProperty().isBound()) {
+            messageLabel.textProperty().unbind();
+        }
+        progressBar.setProgress(fraction);
+        messageLabel.setText(message);
+    }
+
+    /**
+     * Sets the details text displayed below the progress bar, such as per-stage statistics.
+     *
+     * @param details The details to display, or null to hide them
+     */
+    public void setDetails(String details) {
+        Platform.runLater(() -> {
+            detailsLabel.setText(details);
+            detailsLabel.setVisible(details != null && !details.isEmpty());
+        });
+    }
+
+    /**
+     * Sets the number of items that have failed so far, shown below the progress bar.
+     *
+     * @param errorCount The failure count; the counter is hidden while it is 0
+     */
+    public void setErrorCount(int errorCount) {
+        Platform.runLater(() -> {
+            errorsLabel.setText(String.format("%,d %s failed", errorCount, errorCount == 1 ? "record" : "records"));
+            errorsLabel.setVisible(errorCount > 0);
+        });
+    }
 }
@@ -5,6 +5,8 @@ import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 import org.reactfx.Subscription;
 
+import media.samson.jamplate.core.TemplateFileType;
+
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
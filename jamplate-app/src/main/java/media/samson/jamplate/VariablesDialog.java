@@ -10,6 +10,9 @@ import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.Window;
 
+import media.samson.jamplate.core.FakerService;
+import media.samson.jamplate.core.Variable;
+
 /**
  * Dialog for creating or editing variables.
  * This dialog allows users to input name, type, and placeholder value for variables.
@@ -10,9 +10,9 @@ module media.samson.jamplate {
     requires org.fxmisc.richtext;
     requires static org.fxmisc.flowless;
     
-    // XML and CSV handling
+    // Template engine and XML handling
     requires jakarta.xml.bind;
-    requires org.apache.commons.csv;
+    requires media.samson.jamplate.core;
     
     // Desktop integration for Help menu
     requires java.desktop;
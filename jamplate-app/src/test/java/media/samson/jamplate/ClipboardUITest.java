@@ -18,6 +18,9 @@ import org.testfx.api.FxRobot;
 import org.testfx.framework.junit5.ApplicationExtension;
 import org.testfx.framework.junit5.Start;
 
+import media.samson.jamplate.core.ProjectFile;
+import media.samson.jamplate.core.TemplateFileType;
+
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -29,6 +29,10 @@ import org.testfx.api.FxRobot;
 import org.testfx.framework.junit5.ApplicationExtension;
 import org.testfx.framework.junit5.Start;
 
+import media.samson.jamplate.core.ProjectFile;
+import media.samson.jamplate.core.TemplateFileType;
+import media.samson.jamplate.core.Variable;
+
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -0,0 +1,63 @@
+package media.samson.jamplate;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link JamplateLauncher}, the packaged main class.
+ */
+@DisplayName("JamplateLauncher Tests")
+public class JamplateLauncherTest {
+
+    @Test
+    @DisplayName("Every packaging configuration uses the launcher as main class")
+    void testPackagedMainClass() throws IOException {
+        String pom = Files.readString(Path.of("pom.xml"), StandardCharsets.UTF_8);
+        Matcher mainClasses = Pattern.compile("<mainClass>(.*?)</mainClass>|<module>.*/(.*?)</module>").matcher(pom);
+
+        int found = 0;
+        while (mainClasses.find()) {
+            String mainClass = mainClasses.group(1) != null ? mainClasses.group(1) : mainClasses.group(2);
+            assertEquals(JamplateLauncher.class.getName(), mainClass);
+            found++;
+        }
+        assertTrue(found > 0, "The pom should declare a main class");
+    }
+
+    @Test
+    @DisplayName("Commands run without a display")
+    void testHeadlessCommand() throws IOException, InterruptedException {
+        String classPath = System.getProperty("java.class.path");
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null && !modulePath.isEmpty()) {
+            classPath = classPath + File.pathSeparator + modulePath;
+        }
+        List<String> command = new ArrayList<>(List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", classPath, JamplateLauncher.class.getName(), "--help"));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().remove("DISPLAY");
+        builder.environment().remove("WAYLAND_DISPLAY");
+
+        Process process = builder.start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "The launcher should exit");
+
+        assertEquals(0, process.exitValue(), output);
+        assertTrue(output.contains("jamplate export"), output);
+        assertFalse(output.contains("DISPLAY"), output);
+    }
+}
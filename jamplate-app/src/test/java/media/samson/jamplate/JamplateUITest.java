@@ -16,6 +16,8 @@ import org.testfx.framework.junit5.ApplicationExtension;
 import org.testfx.framework.junit5.Start;
 import org.testfx.matcher.control.LabeledMatchers;
 
+import media.samson.jamplate.core.ProjectFile;
+
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
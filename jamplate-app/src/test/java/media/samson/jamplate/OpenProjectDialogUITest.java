@@ -14,6 +14,8 @@ import org.testfx.api.FxRobot;
 import org.testfx.framework.junit5.ApplicationExtension;
 import org.testfx.framework.junit5.Start;
 
+import media.samson.jamplate.core.ProjectFile;
+
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
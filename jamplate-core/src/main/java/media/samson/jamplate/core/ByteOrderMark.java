@@ -0,0 +1,75 @@
+package media.samson.jamplate.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte order marks that may start a text file.
+ * A byte order mark identifies the file's encoding and is not part of its content.
+ */
+enum ByteOrderMark {
+    UTF_8(StandardCharsets.UTF_8, 0xEF, 0xBB, 0xBF),
+    UTF_16BE(StandardCharsets.UTF_16BE, 0xFE, 0xFF),
+    UTF_16LE(StandardCharsets.UTF_16LE, 0xFF, 0xFE);
+
+    private final Charset charset;
+    private final int[] bytes;
+
+    ByteOrderMark(Charset charset, int... bytes) {
+        this.charset = charset;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Gets the encoding the byte order mark stands for.
+     *
+     * @return The charset of the file content
+     */
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the number of bytes the byte order mark occupies.
+     *
+     * @return The length in bytes
+     */
+    int length() {
+        return bytes.length;
+    }
+
+    /**
+     * Reads the byte order mark at the start of a file.
+     *
+     * @param file The file to check
+     * @return The byte order mark, or null if the file doesn't start with one
+     * @throws IOException If the file cannot be read
+     */
+    static ByteOrderMark read(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] head = input.readNBytes(3);
+            for (ByteOrderMark mark : values()) {
+                if (mark.matches(head)) {
+                    return mark;
+                }
+            }
+            return null;
+        }
+    }
+
+    private boolean matches(byte[] head) {
+        if (head.length < bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if ((head[i] & 0xFF) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
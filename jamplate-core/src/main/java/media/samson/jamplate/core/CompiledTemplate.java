@@ -0,0 +1,469 @@
+package media.samson.jamplate.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, pre-parsed form of a template.
+ * <p>
+ * The template source is split once into literal segments and variable slots
+ * (the {@code {{$name}}} placeholders). Rendering then walks the segments in a
+ * single linear pass, instead of copying the whole document once per variable.
+ * Values are always inserted literally, so {@code $} and {@code \} in a value
+ * need no escaping.
+ * <p>
+ * Every distinct variable name gets one slot; a name that appears several times
+ * in the template shares the same slot. Placeholders whose value is not bound
+ * are written back out unchanged, matching the behaviour of the original
+ * {@link MyTemplateEngine}.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class CompiledTemplate {
+    /** Opening marker of a variable placeholder. */
+    public static final String PLACEHOLDER_OPEN = "{{$";
+
+    /** Closing marker of a variable placeholder. */
+    public static final String PLACEHOLDER_CLOSE = "}}";
+
+    /** literals[i] precedes placeholder i; the last literal follows the final placeholder. */
+    private final String[] literals;
+    /** The slot referenced by each placeholder, in document order. */
+    private final int[] placeholderSlots;
+    /** Variable name for each slot, in order of first appearance. */
+    private final String[] slotNames;
+    private final Map<String, Integer> slotIndex;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, int[] placeholderSlots, String[] slotNames) {
+        this.literals = literals;
+        this.placeholderSlots = placeholderSlots;
+        this.slotNames = slotNames;
+
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < slotNames.length; i++) {
+            index.put(slotNames[i], i);
+        }
+        this.slotIndex = index;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parses a template into literal segments and variable slots.
+     *
+     * @param source The template text
+     * @return The compiled template
+     */
+    public static CompiledTemplate compile(String source) {
+        if (source == null) {
+            source = "";
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> placeholders = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> slots = new HashMap<>();
+
+        int pos = 0;
+        int literalStart = 0;
+        while (true) {
+            int start = source.indexOf(PLACEHOLDER_OPEN, pos);
+            if (start == -1) {
+                break;
+            }
+            int end = source.indexOf(PLACEHOLDER_CLOSE, start + PLACEHOLDER_OPEN.length());
+            if (end == -1) {
+                break;
+            }
+
+            // For text like "{{$a {{$b}}" the innermost opener is the real placeholder
+            start = source.lastIndexOf(PLACEHOLDER_OPEN, end - PLACEHOLDER_OPEN.length());
+
+            String name = source.substring(start + PLACEHOLDER_OPEN.length(), end);
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slot = names.size();
+                slots.put(name, slot);
+                names.add(name);
+            }
+
+            literals.add(source.substring(literalStart, start));
+            placeholders.add(slot);
+
+            pos = end + PLACEHOLDER_CLOSE.length();
+            literalStart = pos;
+        }
+        literals.add(source.substring(literalStart));
+
+        int[] placeholderSlots = new int[placeholders.size()];
+        for (int i = 0; i < placeholderSlots.length; i++) {
+            placeholderSlots[i] = placeholders.get(i);
+        }
+
+        return new CompiledTemplate(
+            literals.toArray(new String[0]),
+            placeholderSlots,
+            names.toArray(new String[0])
+        );
+    }
+
+    /**
+     * Produces a specialised copy of this template with some variables folded in.
+     * <p>
+     * Each placeholder whose variable appears in {@code constants} is replaced by
+     * its value and merged into the surrounding literal text, so the returned
+     * template only has slots for the remaining, per-record variables. Rendering
+     * the specialised template with the remaining values gives the same output as
+     * rendering this template with all of them.
+     *
+     * @param constants Map of variable name to the value it always takes
+     * @return A new template with the constant variables removed from its slots
+     */
+    public CompiledTemplate specialise(Map<String, String> constants) {
+        List<String> newLiterals = new ArrayList<>();
+        List<Integer> newPlaceholders = new ArrayList<>();
+        List<String> newNames = new ArrayList<>();
+        int[] slotMapping = new int[slotNames.length];
+        Arrays.fill(slotMapping, -1);
+
+        StringBuilder literal = new StringBuilder(literals[0]);
+        for (int i = 0; i < placeholderSlots.length; i++) {
+            int slot = placeholderSlots[i];
+            String constant = constants.get(slotNames[slot]);
+            if (constant != null) {
+                literal.append(constant);
+            } else {
+                if (slotMapping[slot] == -1) {
+                    slotMapping[slot] = newNames.size();
+                    newNames.add(slotNames[slot]);
+                }
+                newLiterals.add(literal.toString());
+                newPlaceholders.add(slotMapping[slot]);
+                literal.setLength(0);
+            }
+            literal.append(literals[i + 1]);
+        }
+        newLiterals.add(literal.toString());
+
+        int[] placeholders = new int[newPlaceholders.size()];
+        for (int i = 0; i < placeholders.length; i++) {
+            placeholders[i] = newPlaceholders.get(i);
+        }
+
+        return new CompiledTemplate(
+            newLiterals.toArray(new String[0]),
+            placeholders,
+            newNames.toArray(new String[0])
+        );
+    }
+
+    /**
+     * Splits the template at the placeholders of per-record slots.
+     * <p>
+     * Each span between two such placeholders, and before the first and after the
+     * last, is the longest run of literal text and placeholders of the other slots,
+     * so its text only depends on the values of those slots.
+     *
+     * @param perRecord true for each slot whose placeholders split the template
+     * @return The spans in document order; each is followed by a per-record placeholder except the last
+     */
+    List<Span> split(boolean[] perRecord) {
+        List<Span> spans = new ArrayList<>();
+        int first = 0;
+        for (int i = 0; i <= placeholderSlots.length; i++) {
+            boolean last = i == placeholderSlots.length;
+            if (last || perRecord[placeholderSlots[i]]) {
+                spans.add(new Span(Arrays.copyOfRange(literals, first, i + 1),
+                    Arrays.copyOfRange(placeholderSlots, first, i), slotNames, last ? -1 : placeholderSlots[i]));
+                first = i + 1;
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * A run of a template between placeholders of per-record slots, from {@link #split(boolean[])}.
+     * Slots keep their numbering in the whole template.
+     */
+    static final class Span {
+        private final String[] literals;
+        private final int[] placeholderSlots;
+        private final String[] slotNames;
+        private final int[] keySlots;
+        private final int followingSlot;
+
+        private Span(String[] literals, int[] placeholderSlots, String[] slotNames, int followingSlot) {
+            this.literals = literals;
+            this.placeholderSlots = placeholderSlots;
+            this.slotNames = slotNames;
+            this.keySlots = Arrays.stream(placeholderSlots).distinct().sorted().toArray();
+            this.followingSlot = followingSlot;
+        }
+
+        /**
+         * Gets the slots the span's text depends on.
+         *
+         * @return The distinct slots of the span's placeholders, ascending; empty for literal text
+         */
+        int[] getKeySlots() {
+            return keySlots;
+        }
+
+        /**
+         * Gets the per-record slot whose placeholder follows the span.
+         *
+         * @return The slot, or -1 for the last span
+         */
+        int getFollowingSlot() {
+            return followingSlot;
+        }
+
+        /**
+         * Renders the span.
+         *
+         * @param slotValues The value for each slot of the whole template
+         * @return The span's text
+         */
+        String render(String[] slotValues) {
+            StringBuilder text = new StringBuilder();
+            try {
+                appendSegments(literals, placeholderSlots, slotNames, slotValues, text);
+            } catch (IOException e) {
+                // StringBuilder never throws IOException
+                throw new UncheckedIOException(e);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Builds the placeholder text for a variable name.
+     *
+     * @param name The variable name
+     * @return The placeholder, e.g. {@code {{$name}}}
+     */
+    public static String placeholder(String name) {
+        return PLACEHOLDER_OPEN + name + PLACEHOLDER_CLOSE;
+    }
+
+    /**
+     * Adds the template's structure to a digest.
+     * Two templates that add the same input render identical documents from the same slot values.
+     *
+     * @param digest The digest to update
+     */
+    void updateDigest(MessageDigest digest) {
+        ContentHash.update(digest, literals.length);
+        for (String literal : literals) {
+            ContentHash.update(digest, literal);
+        }
+        for (int slot : placeholderSlots) {
+            ContentHash.update(digest, slot);
+        }
+    }
+
+    /**
+     * Gets the distinct variable names referenced by the template,
+     * in slot order (order of first appearance).
+     *
+     * @return An unmodifiable list of variable names
+     */
+    public List<String> getVariableNames() {
+        return Collections.unmodifiableList(Arrays.asList(slotNames));
+    }
+
+    /**
+     * Gets the number of variable slots in the template.
+     *
+     * @return The number of distinct variables
+     */
+    public int getSlotCount() {
+        return slotNames.length;
+    }
+
+    /**
+     * Gets the number of placeholders in the template, counting repeats.
+     *
+     * @return The number of placeholders
+     */
+    public int getPlaceholderCount() {
+        return placeholderSlots.length;
+    }
+
+    /**
+     * Gets the slot index for a variable name.
+     *
+     * @param name The variable name
+     * @return The slot index, or -1 if the template does not reference the variable
+     */
+    public int slotOf(String name) {
+        Integer slot = slotIndex.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Renders the template from values that are already laid out by slot.
+     * This avoids any map lookups; a null entry leaves its placeholder in place.
+     *
+     * @param slotValues The value for each slot, indexed as in {@link #getVariableNames()}
+     * @return The rendered document
+     * @throws IllegalArgumentException if the array is shorter than the slot count
+     */
+    public String render(String[] slotValues) {
+        checkSlotValues(slotValues);
+        StringBuilder document = new StringBuilder(renderedLength(slotValues));
+        try {
+            appendTo(slotValues, document);
+        } catch (IOException e) {
+            // StringBuilder never throws IOException
+            throw new UncheckedIOException(e);
+        }
+        return document.toString();
+    }
+
+    /**
+     * Streams the rendered template into a writer from values laid out by slot.
+     *
+     * @param slotValues The value for each slot, indexed as in {@link #getVariableNames()}
+     * @param out The writer to render into; it is not closed
+     * @throws IOException If writing to the sink fails
+     * @throws IllegalArgumentException if the array is shorter than the slot count
+     */
+    public void render(String[] slotValues, Writer out) throws IOException {
+        checkSlotValues(slotValues);
+        appendTo(slotValues, out);
+    }
+
+    /**
+     * Streams the rendered template into an output stream from values laid out by slot.
+     *
+     * @param slotValues The value for each slot, indexed as in {@link #getVariableNames()}
+     * @param out The stream to render into; it is flushed but not closed
+     * @param charset The charset used to encode the document
+     * @throws IOException If writing to the sink fails
+     * @throws IllegalArgumentException if the array is shorter than the slot count
+     */
+    public void render(String[] slotValues, OutputStream out, Charset charset) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+        render(slotValues, writer);
+        writer.flush();
+    }
+
+    /**
+     * Renders the template with the given variable values.
+     * Variables missing from the map are left as placeholders.
+     *
+     * @param values Map of variable name to value
+     * @return The rendered document
+     */
+    public String render(Map<String, String> values) {
+        return render(resolve(values));
+    }
+
+    /**
+     * Streams the rendered template into a writer.
+     * Literal segments and values are written straight to the sink, so the
+     * full document is never held in memory. The writer is not closed.
+     *
+     * @param values Map of variable name to value
+     * @param out The writer to render into
+     * @throws IOException If writing to the sink fails
+     */
+    public void render(Map<String, String> values, Writer out) throws IOException {
+        appendTo(resolve(values), out);
+    }
+
+    /**
+     * Streams the rendered template into an output stream using the given charset.
+     * Output is buffered and flushed before returning; the stream is not closed.
+     *
+     * @param values Map of variable name to value
+     * @param out The stream to render into
+     * @param charset The charset used to encode the document
+     * @throws IOException If writing to the sink fails
+     */
+    public void render(Map<String, String> values, OutputStream out, Charset charset) throws IOException {
+        render(resolve(values), out, charset);
+    }
+
+    /**
+     * Looks up the value for every slot once.
+     *
+     * @param values Map of variable name to value
+     * @return The value for each slot, or null where the variable is not bound
+     */
+    private String[] resolve(Map<String, String> values) {
+        String[] slotValues = new String[slotNames.length];
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            slotValues[slot] = values.get(slotNames[slot]);
+        }
+        return slotValues;
+    }
+
+    private void checkSlotValues(String[] slotValues) {
+        if (slotValues.length < slotNames.length) {
+            throw new IllegalArgumentException(
+                "Expected " + slotNames.length + " slot values but got " + slotValues.length);
+        }
+    }
+
+    /**
+     * Computes the exact length of the rendered document.
+     *
+     * @param slotValues The value for each slot
+     * @return The number of characters the document will contain
+     */
+    private int renderedLength(String[] slotValues) {
+        int length = literalLength;
+        for (int slot : placeholderSlots) {
+            String value = slotValues[slot];
+            length += value != null
+                ? value.length()
+                : PLACEHOLDER_OPEN.length() + slotNames[slot].length() + PLACEHOLDER_CLOSE.length();
+        }
+        return length;
+    }
+
+    /**
+     * Writes the literal segments and slot values, in document order, to a sink.
+     *
+     * @param slotValues The value for each slot
+     * @param out The sink to write to
+     * @throws IOException If writing to the sink fails
+     */
+    private void appendTo(String[] slotValues, Appendable out) throws IOException {
+        appendSegments(literals, placeholderSlots, slotNames, slotValues, out);
+    }
+
+    private static void appendSegments(String[] literals, int[] placeholderSlots, String[] slotNames,
+                                       String[] slotValues, Appendable out) throws IOException {
+        out.append(literals[0]);
+        for (int i = 0; i < placeholderSlots.length; i++) {
+            int slot = placeholderSlots[i];
+            String value = slotValues[slot];
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append(PLACEHOLDER_OPEN).append(slotNames[slot]).append(PLACEHOLDER_CLOSE);
+            }
+            out.append(literals[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package media.samson.jamplate.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 helpers for fingerprinting the inputs of a document.
+ * Every value is written with its length, so different sequences of values never
+ * produce the same digest input.
+ */
+final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return A new digest
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds a string, which may be null, to a digest.
+     *
+     * @param digest The digest to update
+     * @param value The value to add
+     */
+    static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            update(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Adds an int to a digest.
+     *
+     * @param digest The digest to update
+     * @param value The value to add
+     */
+    static void update(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    /**
+     * Completes a digest and resets it for reuse.
+     *
+     * @param digest The digest to complete
+     * @return The digest as lowercase hex
+     */
+    static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,146 @@
+package media.samson.jamplate.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers a hash of the inputs of every document an export wrote, so the next
+ * export into the same directory can skip documents whose inputs have not changed.
+ * <p>
+ * The manifest is a CSV file of document paths and input hashes in the export
+ * directory. Hashes from the previous export are read once and never change, so
+ * they can be checked from any thread; hashes for the current export are collected
+ * concurrently and saved when it finishes.
+ */
+final class ContentHashManifest {
+    /** Name of the manifest file in the export directory. */
+    static final String FILE_NAME = ".jamplate-manifest.csv";
+
+    private static final List<String> HEADER = List.of("path", "hash");
+
+    private final Path path;
+    private final Map<String, String> previous;
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    private ContentHashManifest(Path path, Map<String, String> previous) {
+        this.path = path;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the manifest of the previous export into a directory.
+     * A missing or unreadable manifest is treated as empty, so every document is written again.
+     *
+     * @param exportDirectory The export directory
+     * @return The manifest
+     */
+    static ContentHashManifest load(Path exportDirectory) {
+        Path path = exportDirectory.resolve(FILE_NAME);
+        Map<String, String> previous = new HashMap<>();
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+                 CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+                for (CSVRecord row : parser) {
+                    if (row.getRecordNumber() > 1 && row.size() == HEADER.size()) {
+                        previous.put(row.get(0), row.get(1));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error reading export manifest " + path + ", exporting every record: "
+                    + e.getMessage());
+                previous.clear();
+            }
+        }
+        return new ContentHashManifest(path, previous);
+    }
+
+    /**
+     * Checks whether a document was written by the previous export from the same inputs.
+     *
+     * @param documentPath The document's path relative to the export directory
+     * @param hash The hash of the document's inputs
+     * @return true if the previous export recorded the same hash for the path
+     */
+    boolean isUnchanged(String documentPath, String hash) {
+        return hash.equals(previous.get(documentPath));
+    }
+
+    /**
+     * Records the input hash of a document that is up to date.
+     *
+     * @param documentPath The document's path relative to the export directory
+     * @param hash The hash of the document's inputs
+     */
+    void put(String documentPath, String hash) {
+        current.put(documentPath, hash);
+    }
+
+    /**
+     * Keeps the previous entry for a document whose record failed, so its file is
+     * not deleted as stale and the next export tries the record again.
+     *
+     * @param documentPath The document's path relative to the export directory
+     */
+    void keepPrevious(String documentPath) {
+        String hash = previous.get(documentPath);
+        if (hash != null) {
+            current.putIfAbsent(documentPath, hash);
+        }
+    }
+
+    /**
+     * Gets the documents the previous export wrote that the current one did not.
+     * Only meaningful once every record has been seen.
+     *
+     * @return The stale document paths
+     */
+    List<String> getStalePaths() {
+        List<String> stale = new ArrayList<>();
+        for (String documentPath : previous.keySet()) {
+            if (!current.containsKey(documentPath)) {
+                stale.add(documentPath);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Saves the manifest, replacing the previous one atomically.
+     *
+     * @param complete true if every record was seen; otherwise entries for records
+     *                 that were not reached are carried over
+     * @throws IOException If the manifest cannot be written
+     */
+    void save(boolean complete) throws IOException {
+        Map<String, String> entries = new TreeMap<>(current);
+        if (!complete) {
+            previous.forEach(entries::putIfAbsent);
+        }
+
+        Path temporary = path.resolveSibling(FILE_NAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8);
+             CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+            printer.printRecord(HEADER);
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                printer.printRecord(entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,366 @@
+package media.samson.jamplate.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Handles importing and parsing CSV files with headers.
+ * Assumes the first line of the CSV file contains field names.
+ * <p>
+ * Records are held in a compact columnar store: one value array per column,
+ * with low-cardinality columns dictionary encoded so repeated values are only
+ * stored once. Records and field values are exposed as lightweight read-only
+ * views over the columns. Use {@link CsvRecordReader} instead when the records
+ * only need to be read once, in order.
+ */
+public class CsvImport {
+    /** Maximum number of distinct values a column may hold and stay dictionary encoded. */
+    static final int DICTIONARY_LIMIT = 256;
+
+    private final String[] headers;
+    private final List<String> headerList;
+    private final Map<String, Integer> headerIndex;
+    private final Column[] columns;
+    private final int recordCount;
+
+    /**
+     * Creates a new CsvImport instance from a UTF-8 CSV file.
+     *
+     * @param file The CSV file to read
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty or missing headers
+     */
+    public CsvImport(File file) throws IOException {
+        this(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a new CsvImport instance from a CSV file.
+     *
+     * @param file The CSV file to read
+     * @param charset The file's encoding, used unless the file starts with a byte order mark
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty or missing headers
+     */
+    public CsvImport(File file, Charset charset) throws IOException {
+        try (CsvRecordReader reader = new CsvRecordReader(file, charset)) {
+            // Get headers from the reader
+            this.headerList = reader.getHeaders();
+            this.headers = headerList.toArray(new String[0]);
+            this.headerIndex = new HashMap<>();
+            for (int i = 0; i < headers.length; i++) {
+                headerIndex.putIfAbsent(headers[i], i);
+            }
+
+            // Distribute the record values over the columns
+            this.columns = new Column[headers.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new Column();
+            }
+            int count = 0;
+            String[] row;
+            while ((row = reader.nextRecord()) != null) {
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i].add(row[i]);
+                }
+                count++;
+            }
+            this.recordCount = count;
+
+            for (Column column : columns) {
+                column.trim();
+            }
+        }
+    }
+
+    /**
+     * Gets the field names (headers) from the CSV file.
+     *
+     * @return An unmodifiable list of field names
+     */
+    public List<String> getHeaders() {
+        return headerList;
+    }
+
+    /**
+     * Gets all records from the CSV file.
+     * Each record is a map of field name to value.
+     *
+     * @return An unmodifiable list of records, backed by the columnar store
+     */
+    public List<Map<String, String>> getRecords() {
+        return new AbstractList<>() {
+            @Override
+            public Map<String, String> get(int index) {
+                return getRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return recordCount;
+            }
+        };
+    }
+
+    /**
+     * Gets a specific record by index.
+     *
+     * @param index The index of the record to get
+     * @return An unmodifiable map representing the record, in header order
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public Map<String, String> getRecord(int index) {
+        return new RecordView(checkIndex(index));
+    }
+
+    /**
+     * Gets the values of a specific record in header order.
+     * This is the cheapest way to read a record when the column layout is known.
+     *
+     * @param index The index of the record to get
+     * @return A copy of the record's values, in the same order as {@link #getHeaders()}
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String[] getRecordValues(int index) {
+        checkIndex(index);
+        String[] values = new String[columns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns[i].get(index);
+        }
+        return values;
+    }
+
+    /**
+     * Gets the number of records in the CSV file (excluding headers).
+     *
+     * @return The number of records
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets all values for a specific field name.
+     *
+     * @param fieldName The name of the field to get values for
+     * @return An unmodifiable list of values for the field, backed by the columnar store
+     * @throws IllegalArgumentException if the field name doesn't exist
+     */
+    public List<String> getFieldValues(String fieldName) {
+        Integer column = headerIndex.get(fieldName);
+        if (column == null) {
+            throw new IllegalArgumentException("Field name not found: " + fieldName);
+        }
+
+        Column values = columns[column];
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return values.get(checkIndex(index));
+            }
+
+            @Override
+            public int size() {
+                return recordCount;
+            }
+        };
+    }
+
+    /**
+     * Validates that all required fields are present in the CSV.
+     *
+     * @param requiredFields The list of required field names
+     * @throws IllegalArgumentException if any required fields are missing
+     */
+    public void validateRequiredFields(List<String> requiredFields) {
+        List<String> missingFields = new ArrayList<>();
+        for (String field : requiredFields) {
+            if (!headerIndex.containsKey(field)) {
+                missingFields.add(field);
+            }
+        }
+        
+        if (!missingFields.isEmpty()) {
+            throw new IllegalArgumentException(
+                "Required fields missing from CSV: " + String.join(", ", missingFields)
+            );
+        }
+    }
+
+    /**
+     * Checks whether a field's values are stored dictionary encoded.
+     *
+     * @param fieldName The name of the field
+     * @return true if the field has few enough distinct values to be dictionary encoded
+     */
+    boolean isDictionaryEncoded(String fieldName) {
+        Integer column = headerIndex.get(fieldName);
+        return column != null && columns[column].isDictionaryEncoded();
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record index " + index + " out of range for " + recordCount + " records");
+        }
+        return index;
+    }
+
+    /**
+     * The values of one field for every record.
+     * Starts out dictionary encoded, with one byte per record pointing into a table
+     * of distinct values, and switches to a plain value array once the column has
+     * more than {@link #DICTIONARY_LIMIT} distinct values.
+     */
+    private static final class Column {
+        private Map<String, Integer> dictionaryCodes = new HashMap<>();
+        private String[] dictionary = new String[16];
+        private byte[] codes = new byte[64];
+        private String[] values;
+        private int size;
+
+        void add(String value) {
+            if (values == null) {
+                Integer code = dictionaryCodes.get(value);
+                if (code == null && dictionaryCodes.size() < DICTIONARY_LIMIT) {
+                    code = dictionaryCodes.size();
+                    dictionaryCodes.put(value, code);
+                    if (code == dictionary.length) {
+                        dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+                    }
+                    dictionary[code] = value;
+                }
+                if (code != null) {
+                    if (size == codes.length) {
+                        codes = Arrays.copyOf(codes, codes.length * 2);
+                    }
+                    codes[size++] = (byte) (int) code;
+                    return;
+                }
+                decode();
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        String get(int row) {
+            return values != null ? values[row] : dictionary[codes[row] & 0xFF];
+        }
+
+        boolean isDictionaryEncoded() {
+            return values == null;
+        }
+
+        /**
+         * Switches to a plain value array; the dictionary's strings are shared with it.
+         */
+        private void decode() {
+            values = new String[Math.max(16, size * 2)];
+            for (int i = 0; i < size; i++) {
+                values[i] = dictionary[codes[i] & 0xFF];
+            }
+            dictionaryCodes = null;
+            dictionary = null;
+            codes = null;
+        }
+
+        /**
+         * Releases spare capacity once all values have been added.
+         */
+        void trim() {
+            if (values != null) {
+                values = Arrays.copyOf(values, size);
+            } else {
+                dictionary = Arrays.copyOf(dictionary, dictionaryCodes.size());
+                codes = Arrays.copyOf(codes, size);
+                dictionaryCodes = null;
+            }
+        }
+    }
+
+    /**
+     * A read-only map view of a single record.
+     */
+    private final class RecordView extends AbstractMap<String, String> {
+        private final int row;
+
+        RecordView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(Object key) {
+            Integer column = headerIndex.get(key);
+            return column != null ? columns[column].get(row) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return headerIndex.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return headerIndex.size();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int column = nextColumn(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < columns.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(
+                                headers[column], columns[column].get(row));
+                            column = nextColumn(column + 1);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return headerIndex.size();
+                }
+            };
+        }
+
+        /**
+         * Finds the next column that is the first one with its header name,
+         * matching the old map behaviour for duplicate headers.
+         */
+        private int nextColumn(int from) {
+            int column = from;
+            while (column < columns.length && headerIndex.get(headers[column]) != column) {
+                column++;
+            }
+            return column;
+        }
+    }
+}
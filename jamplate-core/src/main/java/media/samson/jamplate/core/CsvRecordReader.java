@@ -0,0 +1,381 @@
+package media.samson.jamplate.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams records from a CSV file with headers, one row at a time.
+ * <p>
+ * Unlike {@link CsvImport}, which reads every row into memory up front, this
+ * reader only keeps the current row (plus a small sample used to estimate the
+ * record count), so memory use does not grow with the size of the file.
+ * The first line of the file must contain the field names.
+ * <p>
+ * A byte order mark at the start of the file is skipped and takes precedence
+ * over the requested charset.
+ * <p>
+ * Positions are character offsets into the decoded file. Seeking decodes the file
+ * up to the position but does not parse it. Positions saved by a
+ * {@link ParallelCsvReader} are translated by decoding the file up to their byte offset.
+ * <p>
+ * The underlying parser splits every field of a row, so {@link #selectColumns(Set)}
+ * only saves the memory of the values that are dropped.
+ */
+public class CsvRecordReader implements SeekableRecordSource {
+    /** Number of records read ahead when the reader is opened, to estimate the record count. */
+    private static final int SAMPLE_SIZE = 100;
+
+    private static final CSVFormat DATA_FORMAT = CSVFormat.DEFAULT
+        .withTrim()
+        .withIgnoreEmptyLines(true);
+
+    private final File file;
+    private final Charset charset;
+    private final ByteOrderMark byteOrderMark;
+    private CSVParser csvParser;
+    private Iterator<CSVRecord> iterator;
+    private final List<String> headers;
+    /** Column position in the file for each header, resolved once. */
+    private final int[] columnIndexes;
+    /** Whether each header's values are kept, or null to keep every column. */
+    private boolean[] selected;
+    private final long fileLength;
+    private final Deque<String[]> sample = new ArrayDeque<>();
+    private final Deque<Long> samplePositions = new ArrayDeque<>();
+    /** Character position of the record most recently returned by {@link #nextRecord()}. */
+    private long returnedPosition;
+    private long recordsReturned;
+    /** Character position of the record most recently parsed. */
+    private long parsedPosition;
+
+    private volatile long recordsRead;
+    private volatile long firstCharacterPosition;
+    private volatile long lastCharacterPosition;
+    private volatile boolean exhausted;
+
+    /**
+     * Opens a UTF-8 CSV file for streaming.
+     *
+     * @param file The CSV file to read
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty or missing headers or data
+     */
+    public CsvRecordReader(File file) throws IOException {
+        this(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a CSV file for streaming.
+     *
+     * @param file The CSV file to read
+     * @param charset The file's encoding, used unless the file starts with a byte order mark
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty or missing headers or data
+     */
+    public CsvRecordReader(File file, Charset charset) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("CSV file does not exist: " + file.getAbsolutePath());
+        }
+        if (file.length() == 0) {
+            throw new IllegalArgumentException("CSV file is empty: " + file.getAbsolutePath());
+        }
+        this.file = file;
+        this.fileLength = file.length();
+
+        this.byteOrderMark = ByteOrderMark.read(file);
+        this.charset = byteOrderMark != null ? byteOrderMark.getCharset() : charset;
+        Reader reader = openReader();
+        try {
+            this.csvParser = DATA_FORMAT
+                .withFirstRecordAsHeader()
+                .parse(reader);
+
+            // Get headers from parser
+            this.headers = Collections.unmodifiableList(new ArrayList<>(csvParser.getHeaderNames()));
+            if (headers.isEmpty()) {
+                throw new IllegalArgumentException("CSV file has no headers");
+            }
+            this.columnIndexes = new int[headers.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                columnIndexes[i] = csvParser.getHeaderMap().get(headers.get(i));
+            }
+            this.iterator = csvParser.iterator();
+
+            // Read a small sample so the record count can be estimated from the start
+            String[] row;
+            while (sample.size() < SAMPLE_SIZE && (row = readRecord()) != null) {
+                sample.add(row);
+                samplePositions.add(parsedPosition);
+            }
+            if (sample.isEmpty()) {
+                throw new IllegalArgumentException("CSV file contains headers but no data");
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public String[] nextRecord() throws IOException {
+        String[] row;
+        long position;
+        if (!sample.isEmpty()) {
+            row = sample.poll();
+            position = samplePositions.poll();
+        } else {
+            row = readRecord();
+            position = parsedPosition;
+        }
+        if (row != null) {
+            returnedPosition = position;
+            recordsReturned++;
+        }
+        return row;
+    }
+
+    @Override
+    public void selectColumns(Set<String> columns) {
+        selected = new boolean[headers.size()];
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = columns.contains(headers.get(i));
+        }
+        // Drop the values already read ahead, too
+        for (String[] row : sample) {
+            for (int i = 0; i < row.length; i++) {
+                if (!selected[i]) {
+                    row[i] = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint(file);
+    }
+
+    /**
+     * Identifies a file by its path, size and modification time.
+     *
+     * @param file The file
+     * @return The fingerprint
+     */
+    static String fingerprint(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    @Override
+    public RecordPosition getPosition() {
+        return recordsReturned == 0
+            ? new RecordPosition(firstCharacterPosition, 0)
+            : new RecordPosition(returnedPosition, recordsReturned - 1);
+    }
+
+    @Override
+    public void seek(RecordPosition position) throws IOException {
+        if (position.getOffset() < firstCharacterPosition || position.getRecordIndex() < 0) {
+            throw new IllegalArgumentException("Position is outside the CSV data: " + position.getOffset());
+        }
+        Reader reader = openReader();
+        try {
+            // Decoding is unavoidable, but skipping does not parse anything
+            long remaining = position.getOffset();
+            while (remaining > 0) {
+                long skipped = reader.skip(remaining);
+                if (skipped <= 0) {
+                    throw new IllegalArgumentException("Position is past the end of the CSV file: "
+                        + position.getOffset());
+                }
+                remaining -= skipped;
+            }
+            CSVParser parser = new CSVParser(reader, DATA_FORMAT, position.getOffset(), position.getRecordIndex() + 1);
+            csvParser.close();
+            csvParser = parser;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        iterator = csvParser.iterator();
+        sample.clear();
+        samplePositions.clear();
+        recordsRead = position.getRecordIndex();
+        recordsReturned = position.getRecordIndex();
+        exhausted = false;
+    }
+
+    @Override
+    public RecordPosition translatePosition(RecordPosition position, String sourceType) throws IOException {
+        if (!sourceType.equals(ParallelCsvReader.class.getName())) {
+            return SeekableRecordSource.super.translatePosition(position, sourceType);
+        }
+        // The parallel reader saves byte offsets into the file, byte order mark included
+        long contentStart = byteOrderMark != null ? byteOrderMark.length() : 0;
+        long bytes = position.getOffset() - contentStart;
+        if (bytes < 0) {
+            return null;
+        }
+        long[] decoded = decodeExtent(file, charset, contentStart, bytes, Long.MAX_VALUE);
+        return decoded[0] == bytes ? new RecordPosition(decoded[1], position.getRecordIndex()) : null;
+    }
+
+    /**
+     * Decodes part of a file until a byte or a character limit is reached, to convert
+     * between byte offsets and character offsets.
+     *
+     * @param file The file
+     * @param charset The file's encoding
+     * @param start The byte offset to start decoding at
+     * @param maxBytes The most bytes to decode
+     * @param maxChars The most characters to produce
+     * @return The number of bytes decoded and the number of characters they produced
+     * @throws IOException If the file cannot be read
+     */
+    static long[] decodeExtent(File file, Charset charset, long start, long maxBytes, long maxChars)
+            throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024).flip();
+        CharBuffer out = CharBuffer.allocate(64 * 1024);
+        long bytes = 0;
+        long chars = 0;
+        long unread = maxBytes;
+        boolean endOfInput = false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(start);
+            while (chars < maxChars) {
+                if (!endOfInput) {
+                    in.compact();
+                    in.limit((int) Math.min(in.capacity(), in.position() + unread));
+                    int read = channel.read(in);
+                    in.flip();
+                    if (read > 0) {
+                        unread -= read;
+                    }
+                    endOfInput = read < 0 || unread == 0;
+                }
+                // Never produce more characters than asked for, so decoding stops exactly at the limit
+                out.clear();
+                out.limit((int) Math.min(out.capacity(), maxChars - chars));
+                int before = in.position();
+                CoderResult result = decoder.decode(in, out, endOfInput);
+                bytes += in.position() - before;
+                chars += out.position();
+                if (result.isOverflow() ? out.position() == 0 : endOfInput) {
+                    break;
+                }
+            }
+        }
+        return new long[] {bytes, chars};
+    }
+
+    /**
+     * Opens the file for reading from the start of its content, after any byte order mark.
+     */
+    private Reader openReader() throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            if (byteOrderMark != null) {
+                input.skipNBytes(byteOrderMark.length());
+            }
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        return new InputStreamReader(input, charset);
+    }
+
+    /**
+     * Parses the next record from the file.
+     *
+     * @return The record's values in header order, or null at the end of the file
+     * @throws IOException If the file cannot be read or parsed
+     */
+    private String[] readRecord() throws IOException {
+        CSVRecord record;
+        try {
+            if (!iterator.hasNext()) {
+                exhausted = true;
+                return null;
+            }
+            record = iterator.next();
+        } catch (UncheckedIOException e) {
+            // CSVParser's iterator wraps parse errors
+            throw e.getCause();
+        }
+
+        String[] row = new String[columnIndexes.length];
+        for (int i = 0; i < row.length; i++) {
+            int column = columnIndexes[i];
+            if (column >= record.size()) {
+                throw new IllegalArgumentException(String.format(
+                    "Record %d has %d values but field '%s' is column %d",
+                    record.getRecordNumber(), record.size(), headers.get(i), column + 1));
+            }
+            row[i] = selected == null || selected[i] ? record.get(column) : null;
+        }
+        if (recordsRead == 0) {
+            firstCharacterPosition = record.getCharacterPosition();
+        }
+        lastCharacterPosition = record.getCharacterPosition();
+        parsedPosition = record.getCharacterPosition();
+        recordsRead++;
+        return row;
+    }
+
+    /**
+     * Estimates the record count from the file size and the average size of
+     * the records read so far. The estimate is exact once the file has been read.
+     *
+     * @return The estimated record count
+     */
+    @Override
+    public long estimateRecordCount() {
+        long read = recordsRead;
+        if (exhausted || read < 2) {
+            return read;
+        }
+        // Characters between the first and the latest record start cover read - 1 records
+        double averageRecordLength = (double) (lastCharacterPosition - firstCharacterPosition) / (read - 1);
+        long estimate = averageRecordLength > 0
+            ? Math.round((fileLength - firstCharacterPosition) / averageRecordLength)
+            : read;
+        return Math.max(read, estimate);
+    }
+
+    @Override
+    public void close() throws IOException {
+        csvParser.close();
+    }
+}
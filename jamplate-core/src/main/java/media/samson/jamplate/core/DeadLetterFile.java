@@ -0,0 +1,121 @@
+package media.samson.jamplate.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * A CSV file collecting the records an export could not write, with the reason.
+ * <p>
+ * Each row holds the record number, the record's original values and the error,
+ * so the failed rows can be fixed and exported again on their own. An export that
+ * only reads some columns (see {@link ExportOptions#setColumnProjection(boolean)})
+ * writes just those columns, rather than leaving the others empty. The file is
+ * only created when the first record fails, so clean exports leave nothing behind.
+ * Writes are synchronized, since failures are reported from several export threads.
+ */
+final class DeadLetterFile implements Closeable {
+    /** Column holding the 1-based number of the failed record. */
+    static final String RECORD_NUMBER_COLUMN = "jamplate_record";
+
+    /** Column holding the reason the record failed. */
+    static final String ERROR_COLUMN = "jamplate_error";
+
+    private final Path path;
+    private final List<String> headers;
+    /** Positions in the record of the columns written. */
+    private final int[] columns;
+    private final boolean append;
+    private CSVPrinter printer;
+    private boolean broken;
+
+    /**
+     * Creates a dead-letter file; nothing is written until a record fails.
+     *
+     * @param path The file to write failed records to
+     * @param headers The CSV headers of the exported records
+     * @param readColumns The names of the columns the export reads, or null if it reads them all
+     * @param append true to add to an existing file from an interrupted export, rather than replace it
+     */
+    DeadLetterFile(Path path, List<String> headers, Set<String> readColumns, boolean append) {
+        this.path = path;
+        this.columns = IntStream.range(0, headers.size())
+            .filter(i -> readColumns == null || readColumns.contains(headers.get(i)))
+            .toArray();
+        this.headers = Arrays.stream(columns).mapToObj(headers::get).toList();
+        this.append = append;
+    }
+
+    /**
+     * Appends a failed record.
+     * Problems writing the dead-letter file are logged, not thrown, so they never
+     * stop the export itself.
+     *
+     * @param recordNumber The 1-based record number
+     * @param record The record's values, in header order, or null if they are not known
+     * @param error The error that stopped the record
+     */
+    synchronized void write(int recordNumber, String[] record, Exception error) {
+        if (broken) {
+            return;
+        }
+        try {
+            if (printer == null) {
+                List<String> header = new ArrayList<>(headers.size() + 2);
+                header.add(RECORD_NUMBER_COLUMN);
+                header.addAll(headers);
+                header.add(ERROR_COLUMN);
+                boolean appending = append && Files.exists(path);
+                printer = new CSVPrinter(appending
+                    ? Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND)
+                    : Files.newBufferedWriter(path, StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+                if (!appending) {
+                    printer.printRecord(header);
+                }
+            }
+
+            List<Object> row = new ArrayList<>(headers.size() + 2);
+            row.add(recordNumber);
+            for (int column : columns) {
+                row.add(record != null && column < record.length ? record[column] : "");
+            }
+            row.add(describe(error));
+            printer.printRecord(row);
+        } catch (IOException e) {
+            broken = true;
+            System.err.println("Error writing failed records to " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the dead-letter file, if any record has been written to it.
+     *
+     * @return The file path, or null if no record has failed
+     */
+    synchronized Path getPath() {
+        return printer == null ? null : path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (printer != null) {
+            printer.close(true);
+        }
+    }
+
+    private static String describe(Exception error) {
+        String message = error.getMessage();
+        return message == null || message.isEmpty() ? error.getClass().getSimpleName() : message;
+    }
+}
@@ -0,0 +1,508 @@
+package media.samson.jamplate.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes every document to its own file in a directory.
+ * Filenames may contain a shard subdirectory, which is created on first use.
+ * <p>
+ * Files are written on a small pool of I/O threads, so the export only hands
+ * documents over. Each I/O thread copies documents to disk through its own
+ * reusable direct buffer. A document goes to a hidden temporary file in its
+ * target's directory and is renamed into place once complete, so a partially written file
+ * never appears under its real name. The {@link Durability} policy decides when
+ * files are forced to disk. A document only counts as written once it is in place
+ * and as durable as the policy asks, except with {@link Durability#ON_CLOSE}, where
+ * it counts once it is in place and is forced when the sink is closed.
+ * <p>
+ * With deduplication, each document's content is hashed and a document identical
+ * to one already in place becomes a hard link to it instead of a second copy. The
+ * linked files share their storage, so editing one in place changes them all;
+ * writing over one through this sink does not, as it renames a new file into place.
+ * File systems without hard links get ordinary copies.
+ * <p>
+ * Only a few documents per I/O thread can be queued. Handing over more blocks
+ * until one of them is written, so a slow disk holds back rendering instead of
+ * filling the heap. Closing the sink waits for every queued document.
+ */
+final class DirectorySink implements OutputSink {
+    /** Prefix of the temporary files documents are written to before they are renamed. */
+    static final String TEMP_PREFIX = ".jamplate-";
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /** Documents that can be queued per I/O thread before handing over more blocks. */
+    static final int QUEUED_PER_THREAD = 4;
+
+    /**
+     * Learns the outcome of a document handed to {@link #write}.
+     * Called on an I/O thread, or on the thread that closes the sink.
+     */
+    interface WriteCallback {
+        /**
+         * The document is in place, and forced to disk unless the policy is
+         * {@link Durability#ON_CLOSE}.
+         *
+         * @param bytes The size of the document
+         */
+        void written(long bytes);
+
+        /**
+         * The document could not be written; no file was left behind for it.
+         *
+         * @param error The cause
+         */
+        void failed(Exception error);
+    }
+
+    private final Path directory;
+    /** Keeps the temporary files of exports running side by side apart. */
+    private final String tempPrefix = TEMP_PREFIX + Long.toString(System.nanoTime(), 36) + "-";
+    private final AtomicLong tempCounter = new AtomicLong();
+    private final Durability durability;
+    private final int syncInterval;
+    private final boolean deduplicate;
+    /** The first file in place for each document hash, when deduplicating. */
+    private final Map<String, Path> filesByHash = new ConcurrentHashMap<>();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(ContentHash::newDigest);
+    private final AtomicInteger linkedCount = new AtomicInteger();
+    private final ExecutorService ioThreads;
+    private final Semaphore queueSlots;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+    /** Temporary files waiting for the next batch to be forced, with {@link Durability#EVERY_BATCH}. */
+    private final List<WrittenFile> unsynced = new ArrayList<>();
+    /** Directories holding files not yet forced, with {@link Durability#ON_CLOSE}. */
+    private final Set<Path> unforcedDirectories = ConcurrentHashMap.newKeySet();
+    /** Files modified before this time were not written by this sink; allows for coarse file times. */
+    private final long startMillis = System.currentTimeMillis() - 2000;
+    /** First failure of a document written through {@link #openEntry}, thrown on close. */
+    private IOException entryError;
+
+    /**
+     * A document written to its temporary file.
+     */
+    private record WrittenFile(Path temporary, Path target, long bytes, String hash, boolean linked,
+                               WriteCallback callback) {
+    }
+
+    /**
+     * Creates a sink that leaves writing to disk to the operating system.
+     *
+     * @param directory The directory to write to
+     */
+    DirectorySink(Path directory) {
+        this(directory, 1, Durability.NONE, 1, false);
+    }
+
+    /**
+     * Creates a sink.
+     *
+     * @param directory The directory to write to
+     * @param threads The number of I/O threads
+     * @param durability When files are forced to disk
+     * @param syncInterval Files per forced batch, for {@link Durability#EVERY_BATCH}
+     * @param deduplicate true to store identical documents once, as hard links
+     */
+    DirectorySink(Path directory, int threads, Durability durability, int syncInterval, boolean deduplicate) {
+        this.directory = directory;
+        this.durability = durability;
+        this.syncInterval = syncInterval;
+        this.deduplicate = deduplicate;
+        this.queueSlots = new Semaphore(threads * QUEUED_PER_THREAD);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.ioThreads = Executors.newFixedThreadPool(threads, task -> Thread.ofPlatform().daemon()
+            .name("export-io-" + threadCount.incrementAndGet()).unstarted(task));
+    }
+
+    /**
+     * Starts a document. It is buffered in memory and handed to an I/O thread when
+     * the stream is closed; a failure to write it is thrown when the sink is closed.
+     */
+    @Override
+    public OutputStream openEntry(String fileName) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    DirectorySink.this.write(fileName, toByteArray(), new WriteCallback() {
+                        @Override
+                        public void written(long bytes) {
+                        }
+
+                        @Override
+                        public void failed(Exception error) {
+                            entryFailed(fileName, error);
+                        }
+                    });
+                }
+            }
+        };
+    }
+
+    private synchronized void entryFailed(String fileName, Exception error) {
+        if (entryError == null) {
+            entryError = new IOException("Error writing " + fileName + ": " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Queues a document to be written. Blocks while the queue is full, even if the
+     * thread is interrupted: the I/O threads always free a slot, and a document that
+     * was handed over must not be dropped, so an interrupt is left for the caller.
+     *
+     * @param fileName The document's path relative to the directory
+     * @param content The document, which must not be changed afterwards
+     * @param callback Told once the document is written or has failed
+     * @throws IOException If the document cannot be queued
+     */
+    void write(String fileName, byte[] content, WriteCallback callback) throws IOException {
+        queueSlots.acquireUninterruptibly();
+        Path target = directory.resolve(fileName);
+        try {
+            ioThreads.execute(() -> {
+                try {
+                    writeFile(target, content, callback);
+                } finally {
+                    queueSlots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            queueSlots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a document on an I/O thread and reports the outcome, unless it waits for a batch.
+     */
+    private void writeFile(Path target, byte[] content, WriteCallback callback) {
+        // A short name of its own, as the document's name may already be as long as the file system allows
+        Path temporary = target.resolveSibling(tempPrefix + tempCounter.incrementAndGet() + ".tmp");
+        List<WrittenFile> batch = null;
+        String hash = null;
+        Path original = null;
+        if (deduplicate) {
+            MessageDigest digest = digests.get();
+            digest.update(content);
+            hash = ContentHash.toHex(digest);
+            original = filesByHash.get(hash);
+        }
+        boolean linked = false;
+        try {
+            createParentDirectory(target);
+            linked = original != null && linkTo(temporary, original);
+            if (!linked) {
+                writeTemporary(temporary, content);
+            }
+
+            switch (durability) {
+                case NONE, ON_CLOSE -> moveIntoPlace(temporary, target);
+                case EVERY_FILE -> {
+                    moveIntoPlace(temporary, target);
+                    syncDirectory(target.getParent());
+                }
+                case EVERY_BATCH -> {
+                    synchronized (unsynced) {
+                        unsynced.add(new WrittenFile(temporary, target, content.length, hash, linked, callback));
+                        if (unsynced.size() < syncInterval) {
+                            return;
+                        }
+                        batch = new ArrayList<>(unsynced);
+                        unsynced.clear();
+                    }
+                }
+            }
+            if (durability == Durability.ON_CLOSE) {
+                unforcedDirectories.add(target.getParent());
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temporary);
+            callback.failed(e);
+            return;
+        }
+
+        if (batch != null) {
+            syncBatch(batch);
+        } else {
+            placed(target, hash, linked);
+            callback.written(content.length);
+        }
+    }
+
+    /**
+     * Writes a document's content to its temporary file through this thread's direct buffer.
+     */
+    private void writeTemporary(Path temporary, byte[] content) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = buffers.get();
+            for (int offset = 0; offset < content.length; ) {
+                int length = Math.min(buffer.capacity(), content.length - offset);
+                buffer.clear();
+                buffer.put(content, offset, length).flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                offset += length;
+            }
+            if (durability == Durability.EVERY_FILE) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Forces a batch of temporary files to disk, renames them into place and
+     * reports them. A file that fails is reported on its own.
+     */
+    private void syncBatch(List<WrittenFile> batch) {
+        List<WrittenFile> synced = new ArrayList<>(batch.size());
+        for (WrittenFile file : batch) {
+            try {
+                try (FileChannel channel = FileChannel.open(file.temporary(), StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                synced.add(file);
+            } catch (IOException e) {
+                deleteQuietly(file.temporary());
+                file.callback().failed(e);
+            }
+        }
+
+        List<WrittenFile> moved = new ArrayList<>(synced.size());
+        Set<Path> directories = new LinkedHashSet<>();
+        for (WrittenFile file : synced) {
+            try {
+                moveIntoPlace(file.temporary(), file.target());
+                placed(file.target(), file.hash(), file.linked());
+                directories.add(file.target().getParent());
+                moved.add(file);
+            } catch (IOException e) {
+                deleteQuietly(file.temporary());
+                file.callback().failed(e);
+            }
+        }
+        IOException directoryError = syncDirectories(directories);
+        for (WrittenFile file : moved) {
+            if (directoryError != null) {
+                file.callback().failed(directoryError);
+            } else {
+                file.callback().written(file.bytes());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of documents stored as hard links to an identical document.
+     *
+     * @return The linked document count
+     */
+    int getLinkedCount() {
+        return linkedCount.get();
+    }
+
+    /**
+     * Creates the temporary file as a hard link to an identical document.
+     *
+     * @return false if the file system cannot link it, so the content must be written
+     */
+    private static boolean linkTo(Path temporary, Path original) {
+        try {
+            Files.createLink(temporary, original);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            // No hard links on this file system, too many links to the original, or it was removed
+            return false;
+        }
+    }
+
+    private void placed(Path target, String hash, boolean linked) {
+        if (linked) {
+            linkedCount.incrementAndGet();
+        } else if (hash != null) {
+            filesByHash.putIfAbsent(hash, target);
+        }
+    }
+
+    private void createParentDirectory(Path file) throws IOException {
+        Path parent = file.getParent();
+        if (!parent.equals(directory) && !createdDirectories.contains(parent)) {
+            Files.createDirectories(parent);
+            createdDirectories.add(parent);
+        }
+    }
+
+    private static void moveIntoPlace(Path temporary, Path target) throws IOException {
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces a directory's entries to disk, so a rename survives a crash.
+     * Platforms that cannot open a directory, such as Windows, are skipped.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces every directory, even after one fails.
+     *
+     * @return The first error, or null if every directory was forced
+     */
+    private static IOException syncDirectories(Set<Path> directories) {
+        IOException error = null;
+        for (Path directory : directories) {
+            try {
+                syncDirectory(directory);
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Forces the files this sink put in a directory. Only the directories are
+     * remembered while the export runs, so the files are found again by their
+     * modification time; forcing a file that is already on disk costs little.
+     *
+     * @return The first error, or null if every file was forced
+     */
+    private IOException forceFiles(Path directory) {
+        IOException error = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile() || attributes.lastModifiedTime().toMillis() < startMillis
+                        || file.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                        continue;
+                    }
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                } catch (IOException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        return error;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete temporary file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for every queued document, then finishes the durability policy:
+     * forces the last partial batch, or every file written for {@link Durability#ON_CLOSE}.
+     */
+    @Override
+    public void close() throws IOException {
+        ioThreads.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (ioThreads.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // Queued documents still have to be reported
+                interrupted = true;
+            }
+        }
+        try {
+            finishDurability();
+        } finally {
+            // Forcing uses interruptible channels, so the interrupt is only restored afterwards
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void finishDurability() throws IOException {
+        List<WrittenFile> batch;
+        synchronized (unsynced) {
+            batch = new ArrayList<>(unsynced);
+            unsynced.clear();
+        }
+        if (!batch.isEmpty()) {
+            syncBatch(batch);
+        }
+
+        // Keep forcing after a failure, so one bad file does not leave the rest unsynced
+        IOException forceError = null;
+        for (Path directory : unforcedDirectories) {
+            IOException error = forceFiles(directory);
+            if (forceError == null) {
+                forceError = error;
+            }
+        }
+        IOException directoryError = syncDirectories(unforcedDirectories);
+        unforcedDirectories.clear();
+        if (forceError != null) {
+            throw forceError;
+        }
+        if (directoryError != null) {
+            throw directoryError;
+        }
+
+        synchronized (this) {
+            if (entryError != null) {
+                throw entryError;
+            }
+        }
+    }
+}
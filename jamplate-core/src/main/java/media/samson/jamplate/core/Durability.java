@@ -0,0 +1,28 @@
+package media.samson.jamplate.core;
+
+/**
+ * How hard an export to files works to get documents onto disk.
+ * <p>
+ * Every policy writes a document to a temporary file and renames it into place,
+ * so a killed export never leaves a partially written file behind. Forcing files
+ * to disk additionally protects them against a power failure or operating system
+ * crash, at the cost of waiting for the disk.
+ */
+public enum Durability {
+    /** Leave writing to disk to the operating system. */
+    NONE,
+    /** Force every file to disk before it is renamed into place. */
+    EVERY_FILE,
+    /**
+     * Force files to disk in groups of {@link ExportOptions#getSyncInterval()}, then
+     * rename the group into place. A power failure loses at most one group of files.
+     */
+    EVERY_BATCH,
+    /**
+     * Rename files into place as they are written and force them all to disk when
+     * the export finishes. Records are reported, checkpointed and added to the
+     * manifests once their file is renamed, before it is forced, so a power failure
+     * during the export can leave incomplete files behind records counted as written.
+     */
+    ON_CLOSE
+}
@@ -0,0 +1,320 @@
+package media.samson.jamplate.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * A journal that lets an interrupted export be resumed where it stopped.
+ * <p>
+ * The journal is an append-only CSV file in the export directory. It starts with
+ * the export's timestamp and the fingerprint of its input, followed by one line
+ * per record naming its output file, and a commit line about once a second. A
+ * commit holds the number of records that are finished with no gaps before them,
+ * the input position to resume reading from, and the records still in flight.
+ * <p>
+ * The filenames let a resumed export reproduce the duplicate numbering of earlier
+ * records without reading them again. Records after the last commit, including
+ * those in flight, are exported again on resume, overwriting anything they left
+ * behind. A torn line at the end of the journal, from a process that died while
+ * writing it, is ignored.
+ * <p>
+ * Records are read and named on one thread but finish on others, so all methods
+ * are synchronized. Problems writing the journal are logged, not thrown, and only
+ * stop further checkpoints.
+ */
+final class ExportCheckpoint implements Closeable {
+    /** Name of the journal file in the export directory. */
+    static final String FILE_NAME = ".jamplate-checkpoint";
+
+    /** Minimum time between commits. */
+    static final long COMMIT_INTERVAL_NANOS = 1_000_000_000L;
+
+    private static final String HEADER = "jamplate-checkpoint";
+    private static final String VERSION = "1";
+    private static final String NAME = "name";
+    private static final String COMMIT = "commit";
+
+    private final Path path;
+    private final CSVPrinter printer;
+    /** Input position after each record that is read but not yet committed. */
+    private final Map<Integer, RecordPosition> positions = new HashMap<>();
+    /** Records after the committed ones that have finished, as offsets from the committed count. */
+    private final BitSet finishedAhead = new BitSet();
+    private int committed;
+    private RecordPosition committedPosition;
+    private long lastCommitNanos = System.nanoTime();
+    private boolean broken;
+
+    /**
+     * A commit read back from a journal.
+     */
+    static final class Resume {
+        final String timestamp;
+        final String fingerprint;
+        final String sourceType;
+        final int committedRecords;
+        final RecordPosition position;
+        /** The journal, read again for the filenames so they are never all held at once. */
+        private final Path path;
+
+        Resume(String timestamp, String fingerprint, String sourceType, int committedRecords,
+               RecordPosition position, Path path) {
+            this.timestamp = timestamp;
+            this.fingerprint = fingerprint;
+            this.sourceType = sourceType;
+            this.committedRecords = committedRecords;
+            this.position = position;
+            this.path = path;
+        }
+
+        /**
+         * Reads the output filenames of the committed records back from the journal.
+         * Names of later records are skipped, since those records are exported again.
+         *
+         * @param visitor Receives each committed record's number and filename
+         * @throws IOException If the journal cannot be read, or the visitor fails
+         */
+        void forEachFileName(FileNameVisitor visitor) throws IOException {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+                 CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+                for (CSVRecord line : parser) {
+                    if (line.size() == 3 && line.get(0).equals(NAME)) {
+                        int recordNumber = Integer.parseInt(line.get(1));
+                        if (recordNumber <= committedRecords) {
+                            visitor.visit(recordNumber, line.get(2));
+                        }
+                    }
+                }
+            } catch (UncheckedIOException | NumberFormatException e) {
+                // A torn final line, which comes after every committed name
+            }
+        }
+    }
+
+    /**
+     * Receives the filenames read back from a journal.
+     */
+    interface FileNameVisitor {
+        /**
+         * Receives one filename.
+         *
+         * @param recordNumber The 1-based record number
+         * @param fileName The record's output filename
+         * @throws IOException If the filename cannot be processed
+         */
+        void visit(int recordNumber, String fileName) throws IOException;
+    }
+
+    /**
+     * Starts a journal, replacing any previous one.
+     *
+     * @param exportDirectory The export directory
+     * @param timestamp The export timestamp
+     * @param source The input being exported
+     * @param resumed The commit the export resumes from, or null for a new export
+     * @throws IOException If the journal cannot be created
+     */
+    ExportCheckpoint(Path exportDirectory, String timestamp, SeekableRecordSource source, Resume resumed)
+            throws IOException {
+        this.path = exportDirectory.resolve(FILE_NAME);
+        if (resumed == null) {
+            this.printer = new CSVPrinter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+            printer.printRecord(HEADER, VERSION, timestamp, source.getFingerprint(), source.getClass().getName());
+            printer.flush();
+            return;
+        }
+
+        // Carry the committed names over, so the new journal is complete on its own. They are
+        // copied line by line into a new file, since the old journal is still being read.
+        Path copy = exportDirectory.resolve(FILE_NAME + ".tmp");
+        try (CSVPrinter names = new CSVPrinter(Files.newBufferedWriter(copy, StandardCharsets.UTF_8),
+                CSVFormat.DEFAULT)) {
+            names.printRecord(HEADER, VERSION, timestamp, source.getFingerprint(), source.getClass().getName());
+            resumed.forEachFileName((recordNumber, fileName) -> names.printRecord(NAME, recordNumber, fileName));
+        }
+        Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING);
+        this.printer = new CSVPrinter(
+            Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND), CSVFormat.DEFAULT);
+        committed = resumed.committedRecords;
+        committedPosition = resumed.position;
+        writeCommit("");
+        printer.flush();
+    }
+
+    /**
+     * Reads the last commit of the journal in an export directory.
+     *
+     * @param exportDirectory The export directory
+     * @return The commit to resume from, or null if there is no journal
+     * @throws IOException If the journal cannot be read or is not a checkpoint journal
+     */
+    static Resume read(Path exportDirectory) throws IOException {
+        Path path = exportDirectory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        String timestamp = null;
+        String fingerprint = null;
+        String sourceType = null;
+        // Only which records are named is kept; the names themselves are read again when needed
+        BitSet named = new BitSet();
+        int committedRecords = 0;
+        RecordPosition position = null;
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+             CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+            for (CSVRecord line : parser) {
+                if (timestamp == null) {
+                    if (line.size() < 5 || !line.get(0).equals(HEADER) || !line.get(1).equals(VERSION)) {
+                        throw new IOException("Not an export checkpoint: " + path);
+                    }
+                    timestamp = line.get(2);
+                    fingerprint = line.get(3);
+                    sourceType = line.get(4);
+                } else if (line.size() == 3 && line.get(0).equals(NAME)) {
+                    named.set(Integer.parseInt(line.get(1)));
+                } else if (line.size() == 5 && line.get(0).equals(COMMIT)) {
+                    committedRecords = Integer.parseInt(line.get(1));
+                    position = new RecordPosition(Long.parseLong(line.get(2)), Long.parseLong(line.get(3)));
+                }
+            }
+        } catch (UncheckedIOException | NumberFormatException e) {
+            // A torn final line; everything before it is usable
+        }
+        if (timestamp == null) {
+            throw new IOException("Not an export checkpoint: " + path);
+        }
+
+        if (named.nextClearBit(1) <= committedRecords) {
+            throw new IOException("Export checkpoint is incomplete: " + path);
+        }
+        return new Resume(timestamp, fingerprint, sourceType, committedRecords, position, path);
+    }
+
+    /**
+     * Notes where the input stands after reading a record.
+     *
+     * @param recordNumber The 1-based record number
+     * @param position The input position after reading the record
+     */
+    synchronized void recordRead(int recordNumber, RecordPosition position) {
+        positions.put(recordNumber, position);
+    }
+
+    /**
+     * Records the output filename given to a record.
+     *
+     * @param recordNumber The 1-based record number
+     * @param fileName The filename, before any shard directory is added
+     */
+    synchronized void recordNamed(int recordNumber, String fileName) {
+        if (broken) {
+            return;
+        }
+        try {
+            printer.printRecord(NAME, recordNumber, fileName);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Notes that a record was written or failed, and commits if a commit is due.
+     *
+     * @param recordNumber The 1-based record number
+     */
+    synchronized void recordFinished(int recordNumber) {
+        finishedAhead.set(recordNumber - committed - 1);
+        int advance = finishedAhead.nextClearBit(0);
+        if (advance > 0) {
+            committed += advance;
+            committedPosition = positions.get(committed);
+            for (int i = committed - advance + 1; i <= committed; i++) {
+                positions.remove(i);
+            }
+            BitSet remaining = finishedAhead.get(advance, Math.max(advance, finishedAhead.length()));
+            finishedAhead.clear();
+            finishedAhead.or(remaining);
+        }
+
+        long now = System.nanoTime();
+        if (now - lastCommitNanos >= COMMIT_INTERVAL_NANOS) {
+            lastCommitNanos = now;
+            commit();
+        }
+    }
+
+    /**
+     * Gets the number of records finished with no gaps before them.
+     *
+     * @return The committed record count
+     */
+    synchronized int getCommittedCount() {
+        return committed;
+    }
+
+    private void commit() {
+        if (broken || committedPosition == null) {
+            return;
+        }
+        StringJoiner inFlight = new StringJoiner(" ");
+        positions.keySet().stream()
+            .filter(recordNumber -> recordNumber > committed
+                && !finishedAhead.get(recordNumber - committed - 1))
+            .sorted()
+            .forEach(recordNumber -> inFlight.add(String.valueOf(recordNumber)));
+        try {
+            writeCommit(inFlight.toString());
+            printer.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void writeCommit(String inFlight) throws IOException {
+        printer.printRecord(COMMIT, committed, committedPosition.getOffset(), committedPosition.getRecordIndex(),
+            inFlight);
+    }
+
+    private void fail(IOException e) {
+        broken = true;
+        System.err.println("Error writing export checkpoint " + path + ": " + e.getMessage());
+    }
+
+    /**
+     * Ends the journal. A finished export deletes it; otherwise a final commit is written.
+     *
+     * @param finished true if every record was exported
+     * @throws IOException If the journal cannot be closed or deleted
+     */
+    synchronized void finish(boolean finished) throws IOException {
+        if (!finished) {
+            commit();
+        }
+        printer.close();
+        if (finished) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        printer.close();
+    }
+}
@@ -0,0 +1,1059 @@
+package media.samson.jamplate.core;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders every record of a {@link RecordSource} through a template and writes one document per record.
+ * <p>
+ * Records are pulled from the source as they are needed, so a streaming source
+ * keeps memory flat regardless of the input size.
+ * <p>
+ * The template and the output filename template are bound and specialised once
+ * when the job is created. Records can then be exported sequentially, or through
+ * a pipeline of three stages connected by bounded queues: the calling thread reads
+ * records, a pool of workers renders them into memory, and a writer thread writes
+ * the files. Reading, rendering and disk I/O overlap, and a full queue blocks the
+ * stage feeding it, so memory stays bounded when the disk is slower than rendering
+ * (see {@link ExportOptions}). Output filenames only depend on the record itself
+ * and its position, so they are the same in either mode.
+ * <p>
+ * Documents are written to an {@link OutputSink}: one file each, a single ZIP or
+ * TAR.GZ archive, a single concatenated or JSON Lines file, standard output, or a
+ * custom sink (see {@link ExportOptions#getOutputFormat()}). Sinks that put every
+ * document into one stream receive them in record order in either mode. Huge
+ * exports can be sharded into subdirectories (see {@link ShardingStrategy}), with
+ * an optional manifest mapping every record to its document's path.
+ * <p>
+ * One file per document is written on a few I/O threads, through a temporary file
+ * that is renamed into place, so a partial file never appears in the export
+ * directory. A record counts as exported once its file is in place and forced to
+ * disk as far as the {@link Durability} policy asks. Identical documents can be
+ * stored once, as hard links (see {@link ExportOptions#setDeduplicate(boolean)}).
+ * Rendering is skipped for records whose template variables have the same values as
+ * a recent record (see {@link ExportOptions#setRenderCacheSize(int)}), and the text
+ * of template fragments that only depend on low-cardinality variables is rendered
+ * once (see {@link ExportOptions#setFragmentCacheSize(int)}). Optionally, only the
+ * input columns the template and the filenames use are parsed
+ * (see {@link ExportOptions#setColumnProjection(boolean)}).
+ * <p>
+ * An incremental export remembers a hash of every document's inputs in the export
+ * directory (see {@link ExportOptions#setIncremental(boolean)}). The next run skips
+ * rendering and writing records whose hash is unchanged, and deletes the documents
+ * of records that have disappeared, so its I/O depends on how much changed rather
+ * than on the size of the input.
+ * <p>
+ * Exports to files keep a checkpoint journal in the export directory while they
+ * run. An export that was cancelled or died can then be resumed: the input is
+ * repositioned at the last checkpoint instead of being read, rendered and written
+ * again from the first record (see {@link ExportOptions#setResume(boolean)}).
+ * <p>
+ * A failed record never pauses the export. It is reported to the listener, counted,
+ * and written with its error to a dead-letter CSV next to the output, from which
+ * the failed rows can be fixed and exported again.
+ */
+public class ExportJob {
+    /** Project variable holding the output filename template. */
+    public static final String OUTPUT_FILE_NAME = "JamplateOutputFileName";
+
+    /** Upper limit on the threads writing files; more rarely helps a single disk. */
+    private static final int MAX_IO_THREADS = 4;
+
+    private final RecordSource source;
+    private final RecordBinder binder;
+    /** Rendered documents by slot values, or null when every record is rendered. */
+    private final RenderCache renderCache;
+    private final FragmentRenderer fragmentRenderer;
+    private final OutputFileNamer fileNamer;
+    private final Path exportDirectory;
+    private final ExportOptions options;
+    private final DeadLetterFile deadLetters;
+    private final ExportManifest manifest;
+    private final byte[] templateDigest;
+    private ContentHashManifest contentHashes;
+    private volatile boolean sourceExhausted;
+    private final String archiveName;
+    private final String timestamp;
+    private SeekableRecordSource checkpointSource;
+    private ExportCheckpoint checkpoint;
+    private int resumedRecords;
+    private OutputSink sink;
+    /** The sink when writing one file per document, which reports each file asynchronously. */
+    private DirectorySink directorySink;
+    private int unflushedDocuments;
+    private volatile IOException sinkError;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+    private volatile boolean failureLimitReached;
+    /** Whether the thread running the export was interrupted; the flag is held here until the run ends. */
+    private boolean interrupted;
+    private final ExportStage readStage = new ExportStage("Read");
+    private final ExportStage renderStage = new ExportStage("Render");
+    private final ExportStage writeStage = new ExportStage("Write");
+
+    /**
+     * Creates an export job.
+     *
+     * @param source The records to export
+     * @param template The compiled document template
+     * @param projectVariables The project variables
+     * @param projectName The project name, exposed as {@value RecordBinder#PROJECT_NAME}
+     * @param templateFileType The template type, which decides the file extension
+     * @param exportDirectory The directory the files are written to
+     * @param timestamp The export timestamp, used for fallback filenames
+     * @param options The tuning options
+     * @throws IllegalArgumentException If the options ask for an incremental, resumed or deduplicated
+     *         export to anything but files
+     */
+    public ExportJob(RecordSource source, CompiledTemplate template, List<Variable> projectVariables,
+                     String projectName, TemplateFileType templateFileType, Path exportDirectory,
+                     String timestamp, ExportOptions options) {
+        if (options.isIncremental()
+            && (options.getOutputSink() != null || options.getOutputFormat() != OutputFormat.FILES)) {
+            throw new IllegalArgumentException("Incremental export needs the " + OutputFormat.FILES + " output format");
+        }
+        if (options.isResume()
+            && (options.getOutputSink() != null || options.getOutputFormat() != OutputFormat.FILES)) {
+            throw new IllegalArgumentException("Only exports to the " + OutputFormat.FILES + " output format can be resumed");
+        }
+        if (options.isDeduplicate()
+            && (options.getOutputSink() != null || options.getOutputFormat() != OutputFormat.FILES)) {
+            throw new IllegalArgumentException("Deduplication needs the " + OutputFormat.FILES + " output format");
+        }
+        this.source = source;
+        this.exportDirectory = exportDirectory;
+        this.options = options;
+
+        List<String> headers = source.getHeaders();
+        this.binder = new RecordBinder(template, headers, projectVariables, projectName, timestamp);
+        this.fragmentRenderer = options.getFragmentCacheSize() > 0
+            ? new FragmentRenderer(binder.getTemplate(), new FragmentCache(options.getFragmentCacheSize()))
+            : null;
+        this.renderCache = options.getRenderCacheSize() > 0 && !binder.usesRecordNumber()
+            ? new RenderCache(this::renderDocument, options.getRenderCacheSize())
+            : null;
+
+        this.fileNamer = new OutputFileNamer(headers, projectVariables, projectName, templateFileType, timestamp);
+        Set<String> columnsUsed = null;
+        if (options.isColumnProjection()) {
+            columnsUsed = new HashSet<>(binder.getColumnsUsed());
+            columnsUsed.addAll(fileNamer.getColumnsUsed());
+            source.selectColumns(columnsUsed);
+        }
+        this.archiveName = "export_" + timestamp;
+        this.timestamp = timestamp;
+        // A resumed export adds to the files of the export it continues
+        this.deadLetters = options.isDeadLetterEnabled()
+            ? new DeadLetterFile(exportDirectory.resolve("failed-records_" + timestamp + ".csv"), headers,
+                columnsUsed, options.isResume())
+            : null;
+        this.manifest = options.isManifestEnabled()
+            ? new ExportManifest(exportDirectory.resolve("manifest_" + timestamp + ".csv"), options.isResume())
+            : null;
+
+        if (options.isIncremental()) {
+            MessageDigest digest = ContentHash.newDigest();
+            binder.getTemplate().updateDigest(digest);
+            this.templateDigest = digest.digest();
+        } else {
+            this.templateDigest = null;
+        }
+    }
+
+    /**
+     * Finds an interrupted export that can be resumed in a directory.
+     *
+     * @param exportDirectory The export directory
+     * @return The timestamp of the interrupted export, to create the resuming job with,
+     *         or null if there is nothing to resume
+     * @throws IOException If the checkpoint journal cannot be read
+     */
+    public static String findResumableTimestamp(Path exportDirectory) throws IOException {
+        ExportCheckpoint.Resume resume = ExportCheckpoint.read(exportDirectory);
+        return resume == null ? null : resume.timestamp;
+    }
+
+    /**
+     * Estimates the number of records this job exports.
+     * For streaming sources the estimate is refined as the export progresses.
+     *
+     * @return The estimated record count
+     */
+    public int estimateTotalRecords() {
+        return (int) Math.min(Integer.MAX_VALUE, source.estimateRecordCount());
+    }
+
+    /**
+     * Gets the live counters of the export stages, in pipeline order.
+     *
+     * @return The read, render and write stages
+     */
+    public List<ExportStage> getStages() {
+        return List.of(readStage, renderStage, writeStage);
+    }
+
+    /**
+     * Gets the number of records finished so far, including failures.
+     * Progress reporters sample this instead of formatting a message per record.
+     *
+     * @return The finished record count
+     */
+    public int getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Gets the number of document bytes written so far.
+     *
+     * @return The bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Gets the number of records a resumed export took over from the interrupted one.
+     * They are included in the completed count but were not read again.
+     *
+     * @return The resumed record count, or 0 for an export that was not resumed
+     */
+    public int getResumedCount() {
+        return resumedRecords;
+    }
+
+    /**
+     * Gets the number of records whose document was reused from an earlier record
+     * with the same values instead of being rendered.
+     *
+     * @return The render cache hit count, or 0 without a render cache
+     */
+    public long getRenderCacheHitCount() {
+        return renderCache == null ? 0 : renderCache.getHitCount();
+    }
+
+    /**
+     * Gets the cache of rendered template fragments, whose counters tell how often
+     * fragment text was reused.
+     *
+     * @return The fragment cache, or null if fragment caching is disabled
+     */
+    public FragmentCache getFragmentCache() {
+        return fragmentRenderer == null ? null : fragmentRenderer.getCache();
+    }
+
+    /**
+     * Gets the number of documents stored as hard links to an identical document.
+     *
+     * @return The deduplicated document count, or 0 without deduplication
+     */
+    public int getDeduplicatedCount() {
+        return directorySink == null ? 0 : directorySink.getLinkedCount();
+    }
+
+    /**
+     * Gets the number of records an incremental export skipped because their
+     * documents were already up to date. They are included in the completed count.
+     *
+     * @return The unchanged record count
+     */
+    public int getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    /**
+     * Gets the number of stale documents an incremental export deleted because
+     * their records are no longer in the input.
+     *
+     * @return The deleted document count
+     */
+    public int getDeletedCount() {
+        return deleted.get();
+    }
+
+    /**
+     * Gets the number of records that have failed so far.
+     *
+     * @return The failed record count
+     */
+    public int getFailedCount() {
+        return failures.get();
+    }
+
+    /**
+     * Gets the dead-letter CSV holding the failed records and their errors.
+     *
+     * @return The file path, or null if no record has failed or dead-lettering is disabled
+     */
+    public Path getDeadLetterFile() {
+        return deadLetters == null ? null : deadLetters.getPath();
+    }
+
+    /**
+     * Gets the manifest mapping each exported record to its document's path.
+     *
+     * @return The file path, or null if no document was written or the manifest is disabled
+     */
+    public Path getManifestFile() {
+        return manifest == null ? null : manifest.getPath();
+    }
+
+    /**
+     * Gets the single file the documents are written to.
+     *
+     * @return The archive or combined file, or null when each document is written to its own
+     *         file, to standard output or to a custom sink
+     */
+    public Path getOutputFile() {
+        if (options.getOutputSink() != null) {
+            return null;
+        }
+        return switch (options.getOutputFormat()) {
+            case FILES, STDOUT -> null;
+            case CONCATENATED -> exportDirectory.resolve(archiveName + fileNamer.getExtension());
+            case ZIP, TAR_GZ, JSON_LINES ->
+                exportDirectory.resolve(archiveName + options.getOutputFormat().getArchiveExtension());
+        };
+    }
+
+    private OutputSink createSink() throws IOException {
+        if (options.getOutputSink() != null) {
+            return options.getOutputSink();
+        }
+        Path outputFile = getOutputFile();
+        return switch (options.getOutputFormat()) {
+            case FILES -> directorySink = new DirectorySink(exportDirectory,
+                Math.min(options.getThreads(), MAX_IO_THREADS), options.getDurability(), options.getSyncInterval(),
+                options.isDeduplicate());
+            case ZIP -> new ZipSink(outputFile, options.getCompressionLevel());
+            case TAR_GZ -> new TarGzSink(outputFile, options.getCompressionLevel());
+            case CONCATENATED -> new StreamSink(bufferedOutput(outputFile), options.getDocumentSeparator(), true);
+            case JSON_LINES -> new JsonLinesSink(bufferedOutput(outputFile));
+            // Standard output belongs to the process, so it is flushed but never closed
+            case STDOUT -> new StreamSink(new BufferedOutputStream(System.out, 1 << 16),
+                options.getDocumentSeparator(), false);
+        };
+    }
+
+    private static OutputStream bufferedOutput(Path file) throws IOException {
+        return new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+    }
+
+    /**
+     * Runs the export. Failed records are reported to the listener and skipped.
+     * When cancellation is requested no new records are read, but records
+     * already read are finished so no half-written files are left behind.
+     * The same happens when more records fail than {@link ExportOptions#getMaxFailures()}
+     * allows, after which the export fails. An incremental export only deletes stale
+     * documents when every record has been read.
+     * <p>
+     * Interrupting the thread that runs the export cancels it the same way. The interrupt
+     * is cleared while the records in flight finish and the output is closed, since file
+     * channels fail once their thread is interrupted, and restored before returning.
+     *
+     * @param cancelled Polled before each record is read
+     * @param listener Receives a callback for every finished record
+     * @return The number of records that were finished, including failures
+     * @throws IOException If the record source or the output cannot be read or written,
+     *         or the failure limit was exceeded
+     */
+    public int run(BooleanSupplier cancelled, ExportListener listener) throws IOException {
+        try {
+            return export(cancelled, listener);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int export(BooleanSupplier cancelled, ExportListener listener) throws IOException {
+        BooleanSupplier stopped = () -> failureLimitReached || cancelled.getAsBoolean() || interruptRequested();
+        if (options.isIncremental()) {
+            contentHashes = ContentHashManifest.load(exportDirectory);
+        }
+        if (options.isCheckpointEnabled() && options.getOutputSink() == null
+            && options.getOutputFormat() == OutputFormat.FILES && source instanceof SeekableRecordSource seekable) {
+            ExportCheckpoint.Resume resume = options.isResume() ? ExportCheckpoint.read(exportDirectory) : null;
+            if (resume != null) {
+                resumeFrom(seekable, resume);
+            }
+            checkpointSource = seekable;
+            checkpoint = new ExportCheckpoint(exportDirectory, timestamp, seekable, resume);
+        }
+        OutputSink outputSink;
+        try {
+            outputSink = createSink();
+        } catch (IOException | RuntimeException e) {
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+            throw e;
+        }
+        sink = outputSink;
+        try (outputSink) {
+            try {
+                if (options.getThreads() == 1) {
+                    runSequential(stopped, listener);
+                } else {
+                    runPipelined(stopped, listener);
+                }
+            } finally {
+                // An interrupt after the last poll must not fail closing the output
+                interruptRequested();
+            }
+        } finally {
+            if (deadLetters != null) {
+                deadLetters.close();
+            }
+            if (manifest != null) {
+                manifest.close();
+            }
+            if (checkpoint != null) {
+                checkpoint.finish(sourceExhausted && !failureLimitReached);
+            }
+            if (contentHashes != null) {
+                // A resumed export never saw the records before the checkpoint, so nothing is stale
+                finishIncremental(sourceExhausted && !failureLimitReached && resumedRecords == 0);
+            }
+        }
+
+        if (failureLimitReached) {
+            throw new IOException(String.format("Export stopped after %d failed records (limit %d)",
+                failures.get(), options.getMaxFailures()));
+        }
+        if (sinkError != null) {
+            throw sinkError;
+        }
+        // Closing the sink waited for the last files, so every record is accounted for
+        return completed.get();
+    }
+
+    /**
+     * Repositions the source at an interrupted export's last checkpoint and restores
+     * the filenames of the records before it.
+     */
+    private void resumeFrom(SeekableRecordSource seekable, ExportCheckpoint.Resume resume) throws IOException {
+        if (!resume.timestamp.equals(timestamp)) {
+            throw new IOException("The checkpoint in " + exportDirectory + " belongs to the export started at "
+                + resume.timestamp);
+        }
+        if (!resume.fingerprint.equals(seekable.getFingerprint())) {
+            throw new IOException("The CSV file has changed since the export was interrupted");
+        }
+
+        resume.forEachFileName((recordNumber, fileName) -> fileNamer.markUsed(fileName));
+        long recordIndex = 0;
+        if (resume.position != null) {
+            // The interrupted export may have read the file with another reader, e.g. at another thread count
+            RecordPosition position = seekable.translatePosition(resume.position, resume.sourceType);
+            if (position != null) {
+                seekable.seek(position);
+                recordIndex = position.getRecordIndex();
+            } else {
+                System.err.println("Warning: the checkpoint position saved by " + resume.sourceType
+                    + " cannot be used by " + seekable.getClass().getName()
+                    + "; reading the first " + resume.committedRecords + " records again");
+            }
+        }
+        // Skip the few committed records between the position and the checkpoint, without rendering them
+        for (long i = recordIndex; i < resume.committedRecords; i++) {
+            if (source.nextRecord() == null) {
+                throw new IOException("The CSV file ended before the checkpoint at record " + resume.committedRecords);
+            }
+        }
+        resumedRecords = resume.committedRecords;
+        completed.set(resumedRecords);
+    }
+
+    private void runSequential(BooleanSupplier cancelled, ExportListener listener) throws IOException {
+        String[] slotValues = new String[binder.getSlotCount()];
+        MessageDigest digest = contentHashes != null ? ContentHash.newDigest() : null;
+        int recordNumber = resumedRecords;
+        while (!cancelled.getAsBoolean()) {
+            String[] record;
+            try {
+                record = source.nextRecord();
+            } catch (InterruptedIOException e) {
+                // Interrupted while waiting for the reader, which is cancellation too
+                interruptRequested();
+                interrupted = true;
+                break;
+            }
+            if (record == null) {
+                sourceExhausted = true;
+                break;
+            }
+            readStage.recordProcessed();
+            checkpointRead(++recordNumber);
+            exportRecord(record, recordNumber, slotValues, digest, listener);
+            renderStage.recordProcessed();
+            writeStage.recordProcessed();
+        }
+    }
+
+    private void runPipelined(BooleanSupplier cancelled, ExportListener listener) throws IOException {
+        int capacity = options.getQueueCapacity();
+        BlockingQueue<PendingRecord> renderQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<RenderedRecord> writeQueue = new ArrayBlockingQueue<>(capacity);
+        renderStage.setQueue(renderQueue, capacity);
+        writeStage.setQueue(writeQueue, capacity);
+
+        ThreadFactory renderThreads = options.isVirtualThreads()
+            ? Thread.ofVirtual().name("export-render-", 1).factory()
+            : Thread.ofPlatform().daemon().name("export-render-", 1).factory();
+        List<Thread> renderers = new ArrayList<>();
+        for (int i = 0; i < options.getThreads(); i++) {
+            Thread renderer = renderThreads.newThread(() -> renderLoop(renderQueue, writeQueue, listener));
+            renderer.start();
+            renderers.add(renderer);
+        }
+        Thread writer = Thread.ofPlatform().daemon().name("export-writer")
+            .start(() -> writeLoop(writeQueue, listener));
+
+        try {
+            // Records are read, numbered and named on this thread, in order, before being handed off
+            int recordNumber = resumedRecords;
+            int sequence = 0;
+            while (!cancelled.getAsBoolean()) {
+                String[] record;
+                try {
+                    record = source.nextRecord();
+                } catch (InterruptedIOException e) {
+                    // Interrupted while waiting for the reader, which is cancellation too
+                    interruptRequested();
+                    interrupted = true;
+                    break;
+                }
+                if (record == null) {
+                    sourceExhausted = true;
+                    break;
+                }
+                readStage.recordProcessed();
+                checkpointRead(++recordNumber);
+                String outputFileName;
+                try {
+                    outputFileName = outputFileNameOrFail(record, recordNumber);
+                } catch (IOException e) {
+                    recordFailed(recordNumber, record, e, listener);
+                    continue;
+                }
+                // A record that was read is always handed off; an interrupt stops the loop at the next poll
+                interrupted |= putUninterruptibly(renderQueue,
+                    new PendingRecord(sequence, recordNumber, record, outputFileName));
+                sequence++;
+            }
+        } finally {
+            // Let each stage drain its queue, then stop it
+            for (int i = 0; i < renderers.size(); i++) {
+                interrupted |= putUninterruptibly(renderQueue, PendingRecord.END);
+            }
+            for (Thread renderer : renderers) {
+                interrupted |= joinUninterruptibly(renderer);
+            }
+            interrupted |= putUninterruptibly(writeQueue, RenderedRecord.END);
+            interrupted |= joinUninterruptibly(writer);
+        }
+    }
+
+    /**
+     * Takes an interrupt of the thread running the export as cancellation, clearing
+     * the flag so the rest of the export can still use file channels.
+     *
+     * @return true if the thread has been interrupted since the export started
+     */
+    private boolean interruptRequested() {
+        if (Thread.interrupted()) {
+            interrupted = true;
+        }
+        return interrupted;
+    }
+
+    /**
+     * Render stage: binds and renders queued records into memory until the end marker.
+     */
+    private void renderLoop(BlockingQueue<PendingRecord> renderQueue, BlockingQueue<RenderedRecord> writeQueue,
+                            ExportListener listener) {
+        String[] slotValues = new String[binder.getSlotCount()];
+        MessageDigest digest = contentHashes != null ? ContentHash.newDigest() : null;
+        while (true) {
+            PendingRecord pending = takeUninterruptibly(renderQueue);
+            if (pending == PendingRecord.END) {
+                return;
+            }
+
+            RenderedRecord rendered;
+            try {
+                binder.bind(pending.record, pending.recordNumber, slotValues);
+                String hash = null;
+                if (digest != null) {
+                    hash = inputHash(digest, pending.fileName, slotValues);
+                    if (isUnchanged(pending.fileName, hash)) {
+                        recordUnchanged(pending.recordNumber, pending.fileName, hash, listener);
+                        renderStage.recordProcessed();
+                        putUninterruptibly(writeQueue, RenderedRecord.skipped(pending.sequence));
+                        continue;
+                    }
+                }
+                byte[] content = render(slotValues);
+                rendered = new RenderedRecord(pending.sequence, pending.recordNumber, pending.record,
+                    pending.fileName, hash, content);
+            } catch (Exception e) {
+                keepPreviousHash(pending.fileName);
+                renderStage.recordProcessed();
+                recordFailed(pending.recordNumber, pending.record, e, listener);
+                // Tell the writer, so an ordered sink does not wait for this record
+                putUninterruptibly(writeQueue, RenderedRecord.skipped(pending.sequence));
+                continue;
+            }
+            renderStage.recordProcessed();
+            putUninterruptibly(writeQueue, rendered);
+        }
+    }
+
+    /**
+     * Write stage: writes rendered records to the output sink until the end marker.
+     * For sinks that need record order, documents that overtook an earlier record
+     * are held back until it has been written or has failed.
+     */
+    private void writeLoop(BlockingQueue<RenderedRecord> writeQueue, ExportListener listener) {
+        boolean ordered = sink.requiresRecordOrder();
+        Map<Integer, RenderedRecord> heldBack = new HashMap<>();
+        int nextSequence = 0;
+        while (true) {
+            RenderedRecord rendered = takeUninterruptibly(writeQueue);
+            if (rendered == RenderedRecord.END) {
+                return;
+            }
+            if (!ordered) {
+                writeRecord(rendered, listener);
+                continue;
+            }
+
+            heldBack.put(rendered.sequence, rendered);
+            RenderedRecord next;
+            while ((next = heldBack.remove(nextSequence)) != null) {
+                nextSequence++;
+                writeRecord(next, listener);
+            }
+        }
+    }
+
+    private void writeRecord(RenderedRecord rendered, ExportListener listener) {
+        if (rendered.content == null) {
+            // The record failed to render and has already been reported
+            return;
+        }
+        if (directorySink != null) {
+            RecordWrite write = new RecordWrite(rendered.recordNumber, rendered.record, rendered.fileName,
+                rendered.hash, listener);
+            try {
+                directorySink.write(rendered.fileName, rendered.content, write);
+            } catch (IOException e) {
+                write.failed(e);
+            }
+            writeStage.recordProcessed();
+            return;
+        }
+        try {
+            try (OutputStream out = sink.openEntry(rendered.fileName)) {
+                out.write(rendered.content);
+            }
+            bytesWritten.addAndGet(rendered.content.length);
+            addToManifest(rendered.recordNumber, rendered.fileName);
+            if (rendered.hash != null) {
+                contentHashes.put(rendered.fileName, rendered.hash);
+            }
+            writeStage.recordProcessed();
+            recordExported(rendered.recordNumber, rendered.fileName, listener);
+        } catch (Exception e) {
+            keepPreviousHash(rendered.fileName);
+            writeStage.recordProcessed();
+            recordFailed(rendered.recordNumber, rendered.record, e, listener);
+            return;
+        }
+        flushIfDue();
+    }
+
+    /**
+     * Renders and writes a single record.
+     *
+     * @param record The record's values, in header order
+     * @param recordNumber The 1-based record number
+     * @param slotValues Scratch array for the bound slot values
+     * @param digest Digest for the input hash of an incremental export, otherwise null
+     * @param listener Receives the outcome
+     */
+    private void exportRecord(String[] record, int recordNumber, String[] slotValues, MessageDigest digest,
+                              ExportListener listener) {
+        String outputFileName = null;
+        try {
+            binder.bind(record, recordNumber, slotValues);
+            outputFileName = outputFileNameOrFail(record, recordNumber);
+            String hash = null;
+            if (digest != null) {
+                hash = inputHash(digest, outputFileName, slotValues);
+                if (isUnchanged(outputFileName, hash)) {
+                    recordUnchanged(recordNumber, outputFileName, hash, listener);
+                    return;
+                }
+            }
+
+            if (directorySink != null) {
+                // The I/O threads write the file and finish the record once it is in place
+                byte[] content = render(slotValues);
+                directorySink.write(outputFileName, content,
+                    new RecordWrite(recordNumber, record, outputFileName, hash, listener));
+                return;
+            }
+
+            // Stream the processed template straight into the archive entry or stream;
+            // the caches only supply the documents or fragments they already hold
+            try (CountingOutputStream out = new CountingOutputStream(sink.openEntry(outputFileName))) {
+                render(slotValues, out);
+                bytesWritten.addAndGet(out.count);
+            }
+            addToManifest(recordNumber, outputFileName);
+            if (hash != null) {
+                contentHashes.put(outputFileName, hash);
+            }
+
+            recordExported(recordNumber, outputFileName, listener);
+        } catch (Exception e) {
+            keepPreviousHash(outputFileName);
+            recordFailed(recordNumber, record, e, listener);
+            return;
+        }
+        flushIfDue();
+    }
+
+    /**
+     * Renders a record's bound slot values to UTF-8, reusing an identical earlier document if cached.
+     */
+    private byte[] render(String[] slotValues) {
+        if (renderCache != null) {
+            return renderCache.render(slotValues);
+        }
+        return fragmentRenderer != null
+            ? fragmentRenderer.render(slotValues)
+            : binder.getTemplate().render(slotValues).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streams a record's bound slot values as UTF-8, copying an identical earlier document if cached.
+     */
+    private void render(String[] slotValues, OutputStream out) throws IOException {
+        if (renderCache != null) {
+            renderCache.render(slotValues, out);
+        } else {
+            renderDocument(slotValues, out);
+        }
+    }
+
+    /**
+     * Streams a record's bound slot values as UTF-8, reusing cached fragments if enabled.
+     */
+    private void renderDocument(String[] slotValues, OutputStream out) throws IOException {
+        if (fragmentRenderer != null) {
+            fragmentRenderer.render(slotValues, out);
+        } else {
+            binder.getTemplate().render(slotValues, out, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Flushes the sink after a document is written, as the flush policy asks.
+     * Only called from the thread that writes to the sink. A failed flush cannot be
+     * pinned on one record, so it fails the export once the sink is closed.
+     */
+    private void flushIfDue() {
+        FlushPolicy policy = options.getFlushPolicy();
+        if (policy == FlushPolicy.ON_CLOSE
+            || (policy == FlushPolicy.EVERY_BATCH && ++unflushedDocuments < options.getBatchSize())) {
+            return;
+        }
+        unflushedDocuments = 0;
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            if (sinkError == null) {
+                sinkError = new IOException("Error writing export output: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Hashes everything a document depends on: the template, its path and the bound slot values.
+     * Slot values cover exactly the record values and variables the template uses.
+     */
+    private String inputHash(MessageDigest digest, String documentPath, String[] slotValues) {
+        digest.update(templateDigest);
+        ContentHash.update(digest, documentPath);
+        for (String value : slotValues) {
+            ContentHash.update(digest, value);
+        }
+        return ContentHash.toHex(digest);
+    }
+
+    private boolean isUnchanged(String documentPath, String hash) {
+        return contentHashes.isUnchanged(documentPath, hash)
+            && Files.isRegularFile(exportDirectory.resolve(documentPath));
+    }
+
+    private void recordUnchanged(int recordNumber, String documentPath, String hash,
+                                 ExportListener listener) throws IOException {
+        contentHashes.put(documentPath, hash);
+        addToManifest(recordNumber, documentPath);
+        unchanged.incrementAndGet();
+        recordExported(recordNumber, documentPath, listener);
+    }
+
+    private void keepPreviousHash(String documentPath) {
+        if (contentHashes != null && documentPath != null) {
+            contentHashes.keepPrevious(documentPath);
+        }
+    }
+
+    /**
+     * Deletes the documents of records that disappeared, once every record has been
+     * seen, and saves the input hashes for the next run.
+     */
+    private void finishIncremental(boolean complete) throws IOException {
+        if (complete) {
+            Path root = exportDirectory.toAbsolutePath().normalize();
+            for (String stalePath : contentHashes.getStalePaths()) {
+                Path stale = root.resolve(stalePath).normalize();
+                // Never follow a manifest entry out of the export directory
+                if (stale.startsWith(root) && Files.deleteIfExists(stale)) {
+                    deleted.incrementAndGet();
+                }
+            }
+        }
+        contentHashes.save(complete);
+    }
+
+    private void checkpointRead(int recordNumber) {
+        if (checkpoint != null) {
+            checkpoint.recordRead(recordNumber, checkpointSource.getPosition());
+        }
+    }
+
+    private void recordExported(int recordNumber, String fileName, ExportListener listener) {
+        if (checkpoint != null) {
+            checkpoint.recordFinished(recordNumber);
+        }
+        int done = completed.incrementAndGet();
+        listener.recordExported(recordNumber, fileName, done, Math.max(done, estimateTotalRecords()));
+    }
+
+    private void recordFailed(int recordNumber, String[] record, Exception error,
+                              ExportListener listener) {
+        int failed = failures.incrementAndGet();
+        if (checkpoint != null) {
+            checkpoint.recordFinished(recordNumber);
+        }
+        if (deadLetters != null) {
+            deadLetters.write(recordNumber, record, error);
+        }
+        if (options.getMaxFailures() > 0 && failed > options.getMaxFailures()) {
+            failureLimitReached = true;
+        }
+
+        int done = completed.incrementAndGet();
+        listener.recordFailed(recordNumber, error, done, Math.max(done, estimateTotalRecords()));
+    }
+
+    /**
+     * Names a record's document, including its shard directory.
+     */
+    private String outputFileNameOrFail(String[] record, int recordNumber) throws IOException {
+        String fileName;
+        try {
+            fileName = fileNamer.nextFileName(record, recordNumber);
+        } catch (Exception e) {
+            throw new IOException("Error generating output filename: " + e.getMessage(), e);
+        }
+        if (checkpoint != null) {
+            checkpoint.recordNamed(recordNumber, fileName);
+        }
+        return options.getSharding().pathFor(fileName, recordNumber, options.getShardSize());
+    }
+
+    private void addToManifest(int recordNumber, String documentPath) throws IOException {
+        if (manifest != null) {
+            manifest.write(recordNumber, documentPath);
+        }
+    }
+
+    private static <T> boolean putUninterruptibly(BlockingQueue<T> queue, T element) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(element);
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                // Stages only stop at the end marker, so nothing is dropped
+            }
+        }
+    }
+
+    private static boolean joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    /**
+     * A record waiting to be rendered.
+     */
+    private static final class PendingRecord {
+        /** Tells a render worker there are no more records. */
+        static final PendingRecord END = new PendingRecord(0, 0, null, null);
+
+        /** Position among the records handed to the render stage, without gaps. */
+        final int sequence;
+        final int recordNumber;
+        final String[] record;
+        final String fileName;
+
+        PendingRecord(int sequence, int recordNumber, String[] record, String fileName) {
+            this.sequence = sequence;
+            this.recordNumber = recordNumber;
+            this.record = record;
+            this.fileName = fileName;
+        }
+    }
+
+    /**
+     * A rendered document waiting to be written.
+     */
+    private static final class RenderedRecord {
+        /** Tells the writer there are no more documents. */
+        static final RenderedRecord END = new RenderedRecord(0, 0, null, null, null, null);
+
+        final int sequence;
+        final int recordNumber;
+        final String[] record;
+        final String fileName;
+        /** Input hash for an incremental export, otherwise null. */
+        final String hash;
+        final byte[] content;
+
+        RenderedRecord(int sequence, int recordNumber, String[] record, String fileName, String hash,
+                       byte[] content) {
+            this.sequence = sequence;
+            this.recordNumber = recordNumber;
+            this.record = record;
+            this.fileName = fileName;
+            this.hash = hash;
+            this.content = content;
+        }
+
+        /**
+         * Creates a placeholder for a record that failed to render, which only holds its place in the order.
+         */
+        static RenderedRecord skipped(int sequence) {
+            return new RenderedRecord(sequence, 0, null, null, null, null);
+        }
+    }
+
+    /**
+     * Finishes a record once an I/O thread has put its file in place, or failed to.
+     */
+    private final class RecordWrite implements DirectorySink.WriteCallback {
+        private final int recordNumber;
+        private final String[] record;
+        private final String fileName;
+        private final String hash;
+        private final ExportListener listener;
+
+        RecordWrite(int recordNumber, String[] record, String fileName, String hash, ExportListener listener) {
+            this.recordNumber = recordNumber;
+            this.record = record;
+            this.fileName = fileName;
+            this.hash = hash;
+            this.listener = listener;
+        }
+
+        @Override
+        public void written(long bytes) {
+            bytesWritten.addAndGet(bytes);
+            try {
+                addToManifest(recordNumber, fileName);
+            } catch (IOException e) {
+                failed(e);
+                return;
+            }
+            if (hash != null) {
+                contentHashes.put(fileName, hash);
+            }
+            recordExported(recordNumber, fileName, listener);
+        }
+
+        @Override
+        public void failed(Exception error) {
+            keepPreviousHash(fileName);
+            recordFailed(recordNumber, record, error, listener);
+        }
+    }
+
+    /**
+     * Counts the bytes written through it, so the sequential path can report throughput.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package media.samson.jamplate.core;
+
+/**
+ * Receives progress events from an {@link ExportJob}.
+ * These methods are called from worker threads, such as the render threads of a
+ * parallel export and the threads writing one file per document, so
+ * implementations must be thread-safe.
+ */
+public interface ExportListener {
+
+    /**
+     * Called after a record has been written.
+     *
+     * @param recordNumber The 1-based record number
+     * @param fileName The name of the file written for the record
+     * @param completed The number of records finished so far, including failures
+     * @param total The estimated total number of records, refined as the export progresses
+     */
+    void recordExported(int recordNumber, String fileName, int completed, int total);
+
+    /**
+     * Called when a record could not be exported. The export continues with the next record.
+     *
+     * @param recordNumber The 1-based record number
+     * @param error The error that stopped the record
+     * @param completed The number of records finished so far, including failures
+     * @param total The estimated total number of records, refined as the export progresses
+     */
+    void recordFailed(int recordNumber, Exception error, int completed, int total);
+}
@@ -0,0 +1,79 @@
+package media.samson.jamplate.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A CSV file mapping every exported record to the path of its document.
+ * <p>
+ * Paths are relative to the export directory, or to the root of an archive, and
+ * use forward slashes. Rows are appended as documents are written, so with
+ * parallel rendering they are not necessarily in record order. The file is created
+ * when the first document is written.
+ */
+final class ExportManifest implements Closeable {
+    /** Column holding the 1-based record number. */
+    static final String RECORD_NUMBER_COLUMN = "jamplate_record";
+
+    /** Column holding the document's path. */
+    static final String PATH_COLUMN = "path";
+
+    private final Path path;
+    private final boolean append;
+    private CSVPrinter printer;
+
+    /**
+     * Creates a manifest; nothing is written until the first document is.
+     *
+     * @param path The manifest file to write
+     * @param append true to add to an existing file from an interrupted export, rather than replace it
+     */
+    ExportManifest(Path path, boolean append) {
+        this.path = path;
+        this.append = append;
+    }
+
+    /**
+     * Records where a document was written.
+     *
+     * @param recordNumber The 1-based record number
+     * @param documentPath The document's path relative to the export directory
+     * @throws IOException If the manifest cannot be written
+     */
+    synchronized void write(int recordNumber, String documentPath) throws IOException {
+        if (printer == null) {
+            boolean appending = append && Files.exists(path);
+            printer = new CSVPrinter(appending
+                ? Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND)
+                : Files.newBufferedWriter(path, StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+            if (!appending) {
+                printer.printRecord(List.of(RECORD_NUMBER_COLUMN, PATH_COLUMN));
+            }
+        }
+        printer.printRecord(recordNumber, documentPath);
+    }
+
+    /**
+     * Gets the manifest file, if any document has been recorded in it.
+     *
+     * @return The file path, or null if nothing was written
+     */
+    synchronized Path getPath() {
+        return printer == null ? null : path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (printer != null) {
+            printer.close(true);
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package media.samson.jamplate.core;
+
+import java.util.zip.Deflater;
+
+/**
+ * Tuning options for an {@link ExportJob}.
+ * The defaults render on every available core using virtual threads.
+ */
+public class ExportOptions {
+    private int threads;
+    private boolean virtualThreads;
+    private int queueCapacity;
+    private int maxFailures;
+    private boolean deadLetterEnabled;
+    private OutputFormat outputFormat;
+    private int compressionLevel;
+    private String documentSeparator;
+    private FlushPolicy flushPolicy;
+    private int batchSize;
+    private Durability durability;
+    private int syncInterval;
+    private boolean deduplicate;
+    private int renderCacheSize;
+    private int fragmentCacheSize;
+    private boolean columnProjection;
+    private OutputSink outputSink;
+    private ShardingStrategy sharding;
+    private int shardSize;
+    private boolean manifestEnabled;
+    private boolean incremental;
+    private boolean checkpointEnabled;
+    private boolean resume;
+
+    /**
+     * Creates options with the default settings.
+     */
+    public ExportOptions() {
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.virtualThreads = true;
+        this.queueCapacity = 0;
+        this.maxFailures = 0;
+        this.deadLetterEnabled = true;
+        this.outputFormat = OutputFormat.FILES;
+        this.compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        this.documentSeparator = "\n";
+        this.flushPolicy = FlushPolicy.EVERY_BATCH;
+        this.batchSize = 64;
+        this.durability = Durability.NONE;
+        this.syncInterval = 100;
+        this.deduplicate = false;
+        this.renderCacheSize = 256;
+        this.fragmentCacheSize = FragmentCache.DEFAULT_CAPACITY;
+        this.columnProjection = false;
+        this.outputSink = null;
+        this.sharding = ShardingStrategy.NONE;
+        this.shardSize = 1000;
+        this.manifestEnabled = false;
+        this.incremental = false;
+        this.checkpointEnabled = true;
+        this.resume = false;
+    }
+
+    /**
+     * Gets the number of render workers.
+     * A value of 1 runs the export sequentially on the calling thread.
+     *
+     * @return The number of worker threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of render workers.
+     *
+     * @param threads The number of worker threads (must be > 0)
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be greater than 0");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Checks whether render workers run on virtual threads rather than platform threads.
+     *
+     * @return true to use virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets whether render workers run on virtual threads rather than platform threads.
+     *
+     * @param virtualThreads true to use virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Gets the capacity of each queue between export stages.
+     * A full queue blocks the stage feeding it, which bounds memory when reading
+     * or rendering is faster than writing.
+     *
+     * @return The queue capacity; defaults to four records per thread
+     */
+    public int getQueueCapacity() {
+        return queueCapacity > 0 ? queueCapacity : threads * 4;
+    }
+
+    /**
+     * Sets the capacity of each queue between export stages.
+     *
+     * @param queueCapacity The queue capacity, or 0 for the default
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity cannot be negative");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Gets the number of failed records the export tolerates before it stops.
+     *
+     * @return The failure limit, or 0 to never stop because of failures
+     */
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    /**
+     * Sets the number of failed records the export tolerates before it stops.
+     * The export stops as soon as more records than this have failed.
+     *
+     * @param maxFailures The failure limit, or 0 to never stop because of failures
+     */
+    public void setMaxFailures(int maxFailures) {
+        if (maxFailures < 0) {
+            throw new IllegalArgumentException("Failure limit cannot be negative");
+        }
+        this.maxFailures = maxFailures;
+    }
+
+    /**
+     * Checks whether failed records are written to a dead-letter CSV in the export directory.
+     *
+     * @return true to write failed records to a dead-letter file
+     */
+    public boolean isDeadLetterEnabled() {
+        return deadLetterEnabled;
+    }
+
+    /**
+     * Sets whether failed records are written to a dead-letter CSV in the export directory.
+     *
+     * @param deadLetterEnabled true to write failed records to a dead-letter file
+     */
+    public void setDeadLetterEnabled(boolean deadLetterEnabled) {
+        this.deadLetterEnabled = deadLetterEnabled;
+    }
+
+    /**
+     * Gets where the rendered documents are written.
+     *
+     * @return The output format
+     */
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Sets where the rendered documents are written.
+     *
+     * @param outputFormat The output format
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("Output format cannot be null");
+        }
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * Gets the deflate level used for archive output.
+     *
+     * @return The compression level, 0-9, or -1 for the default
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the deflate level used for archive output.
+     * Level 0 stores documents uncompressed, 1 is fastest and 9 compresses most.
+     *
+     * @param compressionLevel The compression level, 0-9, or -1 for the default
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9, or -1 for the default");
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Gets the text written between documents in single-stream formats.
+     *
+     * @return The separator; defaults to a newline
+     * @see OutputFormat#CONCATENATED
+     * @see OutputFormat#STDOUT
+     */
+    public String getDocumentSeparator() {
+        return documentSeparator;
+    }
+
+    /**
+     * Sets the text written between documents in single-stream formats.
+     *
+     * @param documentSeparator The separator, which may be empty
+     */
+    public void setDocumentSeparator(String documentSeparator) {
+        if (documentSeparator == null) {
+            throw new IllegalArgumentException("Document separator cannot be null");
+        }
+        this.documentSeparator = documentSeparator;
+    }
+
+    /**
+     * Gets when the output sink is flushed.
+     *
+     * @return The flush policy
+     */
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * Sets when the output sink is flushed.
+     *
+     * @param flushPolicy The flush policy
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        if (flushPolicy == null) {
+            throw new IllegalArgumentException("Flush policy cannot be null");
+        }
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * Gets the number of documents written between flushes under {@link FlushPolicy#EVERY_BATCH}.
+     *
+     * @return The batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of documents written between flushes under {@link FlushPolicy#EVERY_BATCH}.
+     *
+     * @param batchSize The batch size (must be > 0)
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets when files are forced to disk, for the {@link OutputFormat#FILES} format.
+     *
+     * @return The durability policy
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets when files are forced to disk, for the {@link OutputFormat#FILES} format.
+     *
+     * @param durability The durability policy
+     */
+    public void setDurability(Durability durability) {
+        if (durability == null) {
+            throw new IllegalArgumentException("Durability cannot be null");
+        }
+        this.durability = durability;
+    }
+
+    /**
+     * Gets the number of files forced to disk together under {@link Durability#EVERY_BATCH}.
+     *
+     * @return The sync interval in files
+     */
+    public int getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Sets the number of files forced to disk together under {@link Durability#EVERY_BATCH}.
+     *
+     * @param syncInterval The sync interval in files (must be > 0)
+     */
+    public void setSyncInterval(int syncInterval) {
+        if (syncInterval <= 0) {
+            throw new IllegalArgumentException("Sync interval must be greater than 0");
+        }
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Checks whether identical documents are stored once, for the {@link OutputFormat#FILES} format.
+     *
+     * @return true to store duplicate documents as hard links
+     */
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Sets whether identical documents are stored once, for the {@link OutputFormat#FILES} format.
+     * Every rendered document is hashed, and one with the same content as a file already
+     * written becomes a hard link to that file, saving the write and the disk space.
+     *
+     * @param deduplicate true to store duplicate documents as hard links
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * Gets the number of rendered documents kept for reuse by records with the same values.
+     *
+     * @return The render cache size, or 0 if rendered documents are not reused
+     */
+    public int getRenderCacheSize() {
+        return renderCacheSize;
+    }
+
+    /**
+     * Sets the number of rendered documents kept for reuse by records with the same values.
+     * Records whose template variables all have the same values render the same document,
+     * so a cache hit skips rendering. Templates that show the record number never hit,
+     * and do not use the cache.
+     *
+     * @param renderCacheSize The render cache size, or 0 to render every record
+     */
+    public void setRenderCacheSize(int renderCacheSize) {
+        if (renderCacheSize < 0) {
+            throw new IllegalArgumentException("Render cache size cannot be negative");
+        }
+        this.renderCacheSize = renderCacheSize;
+    }
+
+    /**
+     * Gets the number of rendered template fragments kept for reuse.
+     *
+     * @return The fragment cache size, or 0 if every document is rendered in full
+     */
+    public int getFragmentCacheSize() {
+        return fragmentCacheSize;
+    }
+
+    /**
+     * Sets the number of rendered template fragments kept for reuse.
+     * Parts of a template that only show low-cardinality variables, such as a country,
+     * are rendered once per combination of values and reused by later records.
+     *
+     * @param fragmentCacheSize The fragment cache size, or 0 to render every document in full
+     */
+    public void setFragmentCacheSize(int fragmentCacheSize) {
+        if (fragmentCacheSize < 0) {
+            throw new IllegalArgumentException("Fragment cache size cannot be negative");
+        }
+        this.fragmentCacheSize = fragmentCacheSize;
+    }
+
+    /**
+     * Checks whether only the columns the export uses are read from the input.
+     *
+     * @return true if unused columns are skipped
+     */
+    public boolean isColumnProjection() {
+        return columnProjection;
+    }
+
+    /**
+     * Sets whether only the columns the template and the filenames use are read from the input.
+     * Skipping the other columns saves parsing and memory on wide files, but the
+     * failed-records file then only holds the columns that were read. Off by default.
+     *
+     * @param columnProjection true to skip unused columns, false to read every column
+     */
+    public void setColumnProjection(boolean columnProjection) {
+        this.columnProjection = columnProjection;
+    }
+
+    /**
+     * Gets the custom sink the documents are written to.
+     *
+     * @return The custom sink, or null to use the {@link #getOutputFormat() output format}
+     */
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+
+    /**
+     * Sets a custom sink to write the documents to instead of the output format.
+     * The export closes the sink when it finishes.
+     *
+     * @param outputSink The custom sink, or null to use the output format
+     */
+    public void setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+    }
+
+    /**
+     * Gets how documents are spread over subdirectories.
+     *
+     * @return The sharding strategy
+     */
+    public ShardingStrategy getSharding() {
+        return sharding;
+    }
+
+    /**
+     * Sets how documents are spread over subdirectories.
+     * Archives use the same layout for their entries.
+     *
+     * @param sharding The sharding strategy
+     */
+    public void setSharding(ShardingStrategy sharding) {
+        if (sharding == null) {
+            throw new IllegalArgumentException("Sharding strategy cannot be null");
+        }
+        this.sharding = sharding;
+    }
+
+    /**
+     * Gets the number of records per subdirectory under {@link ShardingStrategy#RECORD_RANGE}.
+     *
+     * @return The shard size
+     */
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    /**
+     * Sets the number of records per subdirectory under {@link ShardingStrategy#RECORD_RANGE}.
+     *
+     * @param shardSize The shard size (must be > 0)
+     */
+    public void setShardSize(int shardSize) {
+        if (shardSize <= 0) {
+            throw new IllegalArgumentException("Shard size must be greater than 0");
+        }
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * Checks whether a manifest mapping each record to its document path is written to the export directory.
+     *
+     * @return true to write a manifest
+     */
+    public boolean isManifestEnabled() {
+        return manifestEnabled;
+    }
+
+    /**
+     * Sets whether a manifest mapping each record to its document path is written to the export directory.
+     *
+     * @param manifestEnabled true to write a manifest
+     */
+    public void setManifestEnabled(boolean manifestEnabled) {
+        this.manifestEnabled = manifestEnabled;
+    }
+
+    /**
+     * Checks whether the export only writes documents whose inputs changed since the last export.
+     *
+     * @return true for an incremental export
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets whether the export only writes documents whose inputs changed since the last export.
+     * A hash of each document's template, path and values is kept in
+     * {@code .jamplate-manifest.csv} in the export directory. Documents whose hash is
+     * unchanged are skipped, and documents of records that are no longer in the input
+     * are deleted. Templates using {@value RecordBinder#DOCUMENT_CREATE_AT} change on
+     * every run, so all their documents are written again.
+     * Only the {@link OutputFormat#FILES} format supports incremental export.
+     *
+     * @param incremental true for an incremental export
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Checks whether the export keeps a checkpoint journal it can be resumed from.
+     * Checkpoints are only kept for the {@link OutputFormat#FILES} format and
+     * {@link SeekableRecordSource seekable} sources; the journal is deleted once the
+     * export finishes.
+     *
+     * @return true to keep a checkpoint journal
+     */
+    public boolean isCheckpointEnabled() {
+        return checkpointEnabled;
+    }
+
+    /**
+     * Sets whether the export keeps a checkpoint journal it can be resumed from.
+     *
+     * @param checkpointEnabled true to keep a checkpoint journal
+     */
+    public void setCheckpointEnabled(boolean checkpointEnabled) {
+        this.checkpointEnabled = checkpointEnabled;
+    }
+
+    /**
+     * Checks whether the export continues an interrupted export into the same directory.
+     *
+     * @return true to resume from the checkpoint journal
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Sets whether the export continues an interrupted export into the same directory.
+     * The job must be created with the interrupted export's timestamp, which
+     * {@link ExportJob#findResumableTimestamp(java.nio.file.Path)} reads from the journal.
+     * Without a journal the export starts from the first record.
+     *
+     * @param resume true to resume from the checkpoint journal
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+}
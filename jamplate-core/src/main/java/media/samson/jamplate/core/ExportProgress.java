@@ -0,0 +1,111 @@
+package media.samson.jamplate.core;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of an export's progress, taken by a {@link ProgressReporter}.
+ * Instances are immutable.
+ */
+public final class ExportProgress {
+    private final int completed;
+    private final int failed;
+    private final int total;
+    private final long bytesWritten;
+    private final double recordsPerSecond;
+    private final double bytesPerSecond;
+    private final Duration elapsed;
+    private final Duration eta;
+
+    ExportProgress(int completed, int failed, int total, long bytesWritten,
+                   double recordsPerSecond, double bytesPerSecond, Duration elapsed, Duration eta) {
+        this.completed = completed;
+        this.failed = failed;
+        this.total = total;
+        this.bytesWritten = bytesWritten;
+        this.recordsPerSecond = recordsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.elapsed = elapsed;
+        this.eta = eta;
+    }
+
+    /**
+     * Gets the number of records finished, including failures.
+     *
+     * @return The finished record count
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets the number of records that failed.
+     *
+     * @return The failed record count
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the estimated total number of records.
+     *
+     * @return The estimated total, never less than the finished count
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the fraction of the export that is finished.
+     *
+     * @return A value between 0 and 1
+     */
+    public double getFraction() {
+        return total == 0 ? 0 : Math.min(1.0, (double) completed / total);
+    }
+
+    /**
+     * Gets the number of document bytes written.
+     *
+     * @return The bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the recent record throughput.
+     *
+     * @return Records finished per second, smoothed over the last few samples
+     */
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    /**
+     * Gets the recent write throughput.
+     *
+     * @return Bytes written per second, smoothed over the last few samples
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Gets the time since the reporter was created.
+     *
+     * @return The elapsed time
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Gets the estimated time until the export finishes, based on the recent throughput.
+     *
+     * @return The estimated remaining time, or null while the throughput is unknown
+     */
+    public Duration getEta() {
+        return eta;
+    }
+}
@@ -0,0 +1,70 @@
+package media.samson.jamplate.core;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for one stage of an {@link ExportJob} pipeline.
+ * Counters are updated by the stage's threads and may be read from any thread.
+ */
+public final class ExportStage {
+    private final String name;
+    private final AtomicLong processed = new AtomicLong();
+    private volatile BlockingQueue<?> queue;
+    private volatile int queueCapacity;
+
+    /**
+     * Creates a stage.
+     *
+     * @param name The stage name shown to the user
+     */
+    ExportStage(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the stage name.
+     *
+     * @return The stage name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of records this stage has finished with, including failures.
+     *
+     * @return The processed record count
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Gets the number of records waiting for this stage.
+     *
+     * @return The queue depth, or 0 if the stage has no input queue
+     */
+    public int getQueueDepth() {
+        BlockingQueue<?> current = queue;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Gets the maximum number of records that may wait for this stage.
+     *
+     * @return The queue capacity, or 0 if the stage has no input queue
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    void recordProcessed() {
+        processed.incrementAndGet();
+    }
+
+    void setQueue(BlockingQueue<?> queue, int capacity) {
+        this.queue = queue;
+        this.queueCapacity = capacity;
+    }
+}
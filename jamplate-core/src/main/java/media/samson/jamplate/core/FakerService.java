@@ -1,4 +1,4 @@
-package media.samson.jamplate;
+package media.samson.jamplate.core;
 
 import net.datafaker.Faker;
 import java.util.Arrays;
@@ -0,0 +1,15 @@
+package media.samson.jamplate.core;
+
+/**
+ * When an {@link ExportJob} flushes its {@link OutputSink}.
+ * Flushing less often lets the sink write larger blocks; flushing more often gets
+ * documents to a reader, such as a process on the other end of a pipe, sooner.
+ */
+public enum FlushPolicy {
+    /** Flush after every document. */
+    EVERY_DOCUMENT,
+    /** Flush after every {@link ExportOptions#getBatchSize()} documents. */
+    EVERY_BATCH,
+    /** Only flush when the export finishes and the sink is closed. */
+    ON_CLOSE
+}
@@ -0,0 +1,120 @@
+package media.samson.jamplate.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of rendered template fragments with least-recently-used eviction.
+ * <p>
+ * A fragment is a span of a template whose text only depends on a few
+ * low-cardinality variables, such as a country or a plan name. It is keyed by the
+ * span and the values of those variables and holds the span's UTF-8 encoded text.
+ * The counters tell how well the cache works for a template: a low hit rate or
+ * many evictions mean the variables were not as repetitive as they looked.
+ * <p>
+ * The cache is thread-safe. Cached fragments are shared and must not be modified.
+ */
+public final class FragmentCache {
+    /** Number of fragments kept by default. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<SlotKey, byte[]> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The maximum number of fragments to keep
+     * @throws IllegalArgumentException If the capacity is less than 1
+     */
+    public FragmentCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SlotKey, byte[]> eldest) {
+                if (size() > FragmentCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of lookups that found a fragment.
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to render the fragment.
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of fragments dropped to make room for newer ones.
+     *
+     * @return The eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the share of lookups that found a fragment.
+     *
+     * @return A value between 0 and 1, or 0 before any lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * Gets the maximum number of fragments kept.
+     *
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of fragments currently cached.
+     *
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized byte[] get(SlotKey key) {
+        byte[] cached = entries.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    synchronized void put(SlotKey key, byte[] fragment) {
+        entries.put(key, fragment);
+    }
+}
@@ -0,0 +1,181 @@
+package media.samson.jamplate.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Renders documents straight to UTF-8, reusing the encoded text of template
+ * fragments that only depend on low-cardinality variables.
+ * <p>
+ * The first {@value #SAMPLE_RECORDS} records are rendered normally while the
+ * distinct values of every slot are counted. Slots with more than
+ * {@value #MAX_DISTINCT_VALUES} distinct values are taken to change with every
+ * record, and the template is split at their placeholders into maximal spans
+ * (see {@link CompiledTemplate#split(boolean[])}). A span of literal text is
+ * encoded once. Any other span only references low-cardinality slots, so its
+ * encoded text is kept in a {@link FragmentCache}, keyed by the span and the
+ * values of those slots. After that only the per-record values are encoded for
+ * each document.
+ * <p>
+ * If a slot turns out to vary more than the sample suggested, its spans simply
+ * miss and the bounded cache evicts them.
+ * <p>
+ * The renderer is thread-safe.
+ */
+final class FragmentRenderer {
+    /** Number of records sampled before the template is split. */
+    static final int SAMPLE_RECORDS = 256;
+
+    /** Most distinct sampled values for a slot to count as low cardinality. */
+    static final int MAX_DISTINCT_VALUES = 32;
+
+    private final CompiledTemplate template;
+    private final FragmentCache cache;
+    private final List<String> slotNames;
+    private final ThreadLocal<ByteArrayOutputStream> buffers =
+        ThreadLocal.withInitial(() -> new ByteArrayOutputStream(8192));
+
+    // Guarded by this until the plan is built
+    private List<Set<String>> sampledValues;
+    private int sampledRecords;
+
+    private volatile Plan plan;
+
+    /**
+     * The spans of the split template, with the encoded text of literal-only spans.
+     */
+    private record Plan(CompiledTemplate.Span[] spans, byte[][] constants) {
+    }
+
+    /**
+     * Creates a renderer.
+     *
+     * @param template The specialised template the slot values are rendered with
+     * @param cache The cache for rendered fragments
+     */
+    FragmentRenderer(CompiledTemplate template, FragmentCache cache) {
+        this.template = template;
+        this.cache = cache;
+        this.slotNames = template.getVariableNames();
+        this.sampledValues = new ArrayList<>();
+        for (int slot = 0; slot < template.getSlotCount(); slot++) {
+            sampledValues.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Gets the cache holding the rendered fragments.
+     *
+     * @return The fragment cache
+     */
+    FragmentCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Renders a record's slot values to a UTF-8 document.
+     *
+     * @param slotValues The bound slot values
+     * @return The rendered document
+     */
+    byte[] render(String[] slotValues) {
+        ByteArrayOutputStream out = buffers.get();
+        out.reset();
+        try {
+            render(slotValues, out);
+        } catch (IOException e) {
+            // A byte array stream never fails
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Streams a record's slot values as a UTF-8 document.
+     *
+     * @param slotValues The bound slot values
+     * @param out The stream to render into; it is not closed
+     * @throws IOException If writing to the stream fails
+     */
+    void render(String[] slotValues, OutputStream out) throws IOException {
+        Plan current = plan;
+        if (current == null) {
+            current = sample(slotValues);
+            if (current == null) {
+                template.render(slotValues, out, StandardCharsets.UTF_8);
+                return;
+            }
+        }
+
+        CompiledTemplate.Span[] spans = current.spans();
+        for (int i = 0; i < spans.length; i++) {
+            byte[] text = current.constants()[i];
+            out.write(text != null ? text : fragment(i, spans[i], slotValues));
+            int slot = spans[i].getFollowingSlot();
+            if (slot >= 0) {
+                String value = slotValues[slot];
+                String rendered = value != null ? value : CompiledTemplate.placeholder(slotNames.get(slot));
+                out.write(rendered.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private byte[] fragment(int index, CompiledTemplate.Span span, String[] slotValues) {
+        int[] keySlots = span.getKeySlots();
+        String[] values = new String[keySlots.length];
+        for (int k = 0; k < keySlots.length; k++) {
+            values[k] = slotValues[keySlots[k]];
+        }
+        SlotKey key = new SlotKey(index, values);
+        byte[] cached = cache.get(key);
+        if (cached == null) {
+            cached = span.render(slotValues).getBytes(StandardCharsets.UTF_8);
+            cache.put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Counts a record's values and builds the plan once enough records were seen.
+     *
+     * @return The plan, or null while still sampling
+     */
+    private synchronized Plan sample(String[] slotValues) {
+        if (plan != null) {
+            return plan;
+        }
+        for (int slot = 0; slot < sampledValues.size(); slot++) {
+            Set<String> values = sampledValues.get(slot);
+            // Past the limit the exact count no longer matters
+            if (values.size() <= MAX_DISTINCT_VALUES) {
+                values.add(slotValues[slot]);
+            }
+        }
+        if (++sampledRecords < SAMPLE_RECORDS) {
+            return null;
+        }
+
+        boolean[] perRecord = new boolean[sampledValues.size()];
+        for (int slot = 0; slot < perRecord.length; slot++) {
+            perRecord[slot] = sampledValues.get(slot).size() > MAX_DISTINCT_VALUES;
+        }
+        sampledValues = null;
+
+        CompiledTemplate.Span[] spans = template.split(perRecord).toArray(new CompiledTemplate.Span[0]);
+        byte[][] constants = new byte[spans.length][];
+        for (int i = 0; i < spans.length; i++) {
+            if (spans[i].getKeySlots().length == 0) {
+                constants[i] = spans[i].render(new String[perRecord.length]).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        plan = new Plan(spans, constants);
+        return plan;
+    }
+}
@@ -0,0 +1,55 @@
+package media.samson.jamplate.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Entry point for embedding the template engine.
+ * <p>
+ * Templates are compiled through a shared {@link TemplateCache}, so repeated
+ * exports and concurrent callers reuse the same immutable {@link CompiledTemplate}:
+ *
+ * <pre>{@code
+ * CompiledTemplate template = Jamplate.compile("Hello {{$name}}");
+ * String doc = template.render(Map.of("name", "World"));
+ * }</pre>
+ *
+ * All methods are thread-safe.
+ */
+public final class Jamplate {
+    private static final TemplateCache CACHE = new TemplateCache(TemplateCache.DEFAULT_CAPACITY);
+
+    private Jamplate() {
+    }
+
+    /**
+     * Compiles template text, reusing a cached compilation of the same text.
+     *
+     * @param source The template text
+     * @return The compiled template
+     */
+    public static CompiledTemplate compile(String source) {
+        return CACHE.compile(source);
+    }
+
+    /**
+     * Compiles a UTF-8 template file, reusing the cached compilation while the
+     * file is unchanged.
+     *
+     * @param templateFile The template file
+     * @return The compiled template
+     * @throws IOException If the file cannot be read
+     */
+    public static CompiledTemplate compile(Path templateFile) throws IOException {
+        return CACHE.compile(templateFile);
+    }
+
+    /**
+     * Gets the shared cache, for example to read its hit and miss counters.
+     *
+     * @return The shared template cache
+     */
+    public static TemplateCache cache() {
+        return CACHE;
+    }
+}
@@ -0,0 +1,454 @@
+package media.samson.jamplate.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Command-line entry point for running exports without a display.
+ * <p>
+ * Usage: {@code jamplate export --project <dir> --csv <file> --out <dir> [--threads N] [--charset NAME]
+ * [--max-failures N] [--format files|zip|tar.gz|concatenated|jsonl|stdout] [--compression 0-9]
+ * [--flush document|batch|close] [--durability none|file|batch|close] [--sync-interval N] [--shard none|range|hash] [--shard-size N] [--incremental]
+ * [--resume] [--dedup] [--render-cache N] [--fragment-cache N] [--used-columns]}
+ * <p>
+ * The export runs on the same {@link ExportJob} as the desktop application, but
+ * never touches the JavaFX toolkit, so it starts quickly and runs on headless
+ * servers. The process exit code tells batch schedulers how the run went.
+ */
+public final class JamplateCli {
+    /** Every record was exported. */
+    public static final int EXIT_OK = 0;
+
+    /** The export could not run, or some records failed. */
+    public static final int EXIT_FAILED = 1;
+
+    /** The command line was invalid. */
+    public static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: jamplate export --project <dir> --csv <file> --out <dir> [options]",
+        "",
+        "Options:",
+        "  --project <dir>    Project directory or project.xml file",
+        "  --csv <file>       CSV file with a header row",
+        "  --out <dir>        Directory the documents are written to (created if missing;",
+        "                     optional with --format stdout)",
+        "  --threads <n>      Number of render threads (default: number of processors)",
+        "  --charset <name>   CSV file encoding (default: UTF-8)",
+        "  --max-failures <n> Stop once more than n records have failed (default: 0, never stop)",
+        "  --format <format>  files, zip, tar.gz, concatenated, jsonl or stdout",
+        "                     (default: files, one file per record)",
+        "  --compression <n>  Archive compression level from 0 (none) to 9 (smallest)",
+        "  --flush <when>     Flush output after every document, batch or only at close (default: batch)",
+        "  --durability <when> Force files to disk: none, after every file, every batch of",
+        "                     --sync-interval files or at the end (files format; default: none)",
+        "  --sync-interval <n> Files forced to disk together with --durability batch (default: 100)",
+        "  --shard <layout>   Spread documents over subdirectories: none, range (by record number)",
+        "                     or hash (by filename); writes a manifest of record paths (default: none)",
+        "  --shard-size <n>   Records per subdirectory with --shard range (default: 1000)",
+        "  --incremental      Only write records that changed since the last export to --out,",
+        "                     and delete files of records that are gone (files format only)",
+        "  --resume           Continue an interrupted export to --out from its last checkpoint",
+        "                     (files format only)",
+        "  --dedup            Store identical documents once, as hard links (files format only)",
+        "  --render-cache <n> Rendered documents kept for records with the same values;",
+        "                     0 renders every record (default: 256)",
+        "  --fragment-cache <n> Rendered template fragments kept for low-cardinality",
+        "                     columns; 0 renders every document in full (default: 1024)",
+        "  --used-columns     Only read the CSV columns the template and filenames use;",
+        "                     failed-records files then hold just those columns",
+        "  --help             Show this help");
+
+    private JamplateCli() {
+    }
+
+    /**
+     * Runs the command line and exits with its exit code.
+     *
+     * @param args The command-line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Checks whether a command line asks for a command-line command rather than the desktop application.
+     *
+     * @param args The command-line arguments
+     * @return true if the first argument is a known command or asks for help
+     */
+    public static boolean isCommand(String[] args) {
+        return args.length > 0 && (args[0].equals("export") || isHelp(args[0]));
+    }
+
+    private static boolean isHelp(String arg) {
+        return arg.equals("--help") || arg.equals("-h");
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @param args The command-line arguments, starting with the command name
+     * @param out Receives the summary
+     * @param err Receives errors and usage information
+     * @return The process exit code
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length > 0 && isHelp(args[0])) {
+            out.println(USAGE);
+            return EXIT_OK;
+        }
+        if (!isCommand(args)) {
+            err.println(args.length == 0 ? "Missing command" : "Unknown command: " + args[0]);
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        ExportCommand command = new ExportCommand();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String option = args[i];
+                if (isHelp(option)) {
+                    out.println(USAGE);
+                    return EXIT_OK;
+                }
+                if (option.equals("--incremental")) {
+                    command.incremental = true;
+                    continue;
+                }
+                if (option.equals("--resume")) {
+                    command.resume = true;
+                    continue;
+                }
+                if (option.equals("--dedup")) {
+                    command.deduplicate = true;
+                    continue;
+                }
+                if (option.equals("--used-columns")) {
+                    command.usedColumns = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                command.setOption(option, args[++i]);
+            }
+            command.validate();
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        try {
+            return command.execute(out, err);
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * The options and execution of the {@code export} command.
+     */
+    private static final class ExportCommand {
+        private String project;
+        private String csvFile;
+        private String outputDirectory;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private Charset charset = StandardCharsets.UTF_8;
+        private int maxFailures;
+        private OutputFormat format = OutputFormat.FILES;
+        private int compressionLevel = -1;
+        private FlushPolicy flushPolicy = FlushPolicy.EVERY_BATCH;
+        private Durability durability = Durability.NONE;
+        private int syncInterval = 100;
+        private ShardingStrategy sharding = ShardingStrategy.NONE;
+        private int shardSize = 1000;
+        private boolean incremental;
+        private boolean resume;
+        private boolean deduplicate;
+        private int renderCacheSize = 256;
+        private int fragmentCacheSize = FragmentCache.DEFAULT_CAPACITY;
+        private boolean usedColumns;
+
+        void setOption(String option, String value) {
+            switch (option) {
+                case "--project" -> project = value;
+                case "--csv" -> csvFile = value;
+                case "--out" -> outputDirectory = value;
+                case "--threads" -> {
+                    try {
+                        threads = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid thread count: " + value);
+                    }
+                    if (threads <= 0) {
+                        throw new IllegalArgumentException("Thread count must be greater than 0");
+                    }
+                }
+                case "--charset" -> {
+                    try {
+                        charset = Charset.forName(value);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unsupported charset: " + value);
+                    }
+                }
+                case "--max-failures" -> {
+                    try {
+                        maxFailures = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid failure limit: " + value);
+                    }
+                    if (maxFailures < 0) {
+                        throw new IllegalArgumentException("Failure limit cannot be negative");
+                    }
+                }
+                case "--format" -> format = switch (value.toLowerCase()) {
+                    case "files" -> OutputFormat.FILES;
+                    case "zip" -> OutputFormat.ZIP;
+                    case "tar.gz", "tgz" -> OutputFormat.TAR_GZ;
+                    case "concatenated" -> OutputFormat.CONCATENATED;
+                    case "jsonl" -> OutputFormat.JSON_LINES;
+                    case "stdout", "-" -> OutputFormat.STDOUT;
+                    default -> throw new IllegalArgumentException("Unknown output format: " + value);
+                };
+                case "--compression" -> {
+                    try {
+                        compressionLevel = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid compression level: " + value);
+                    }
+                    if (compressionLevel < 0 || compressionLevel > 9) {
+                        throw new IllegalArgumentException("Compression level must be between 0 and 9");
+                    }
+                }
+                case "--flush" -> flushPolicy = switch (value.toLowerCase()) {
+                    case "document" -> FlushPolicy.EVERY_DOCUMENT;
+                    case "batch" -> FlushPolicy.EVERY_BATCH;
+                    case "close" -> FlushPolicy.ON_CLOSE;
+                    default -> throw new IllegalArgumentException("Unknown flush policy: " + value);
+                };
+                case "--durability" -> durability = switch (value.toLowerCase()) {
+                    case "none" -> Durability.NONE;
+                    case "file" -> Durability.EVERY_FILE;
+                    case "batch" -> Durability.EVERY_BATCH;
+                    case "close" -> Durability.ON_CLOSE;
+                    default -> throw new IllegalArgumentException("Unknown durability: " + value);
+                };
+                case "--sync-interval" -> {
+                    try {
+                        syncInterval = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid sync interval: " + value);
+                    }
+                    if (syncInterval <= 0) {
+                        throw new IllegalArgumentException("Sync interval must be greater than 0");
+                    }
+                }
+                case "--render-cache" -> {
+                    try {
+                        renderCacheSize = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid render cache size: " + value);
+                    }
+                    if (renderCacheSize < 0) {
+                        throw new IllegalArgumentException("Render cache size cannot be negative");
+                    }
+                }
+                case "--fragment-cache" -> {
+                    try {
+                        fragmentCacheSize = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid fragment cache size: " + value);
+                    }
+                    if (fragmentCacheSize < 0) {
+                        throw new IllegalArgumentException("Fragment cache size cannot be negative");
+                    }
+                }
+                case "--shard" -> sharding = switch (value.toLowerCase()) {
+                    case "none" -> ShardingStrategy.NONE;
+                    case "range" -> ShardingStrategy.RECORD_RANGE;
+                    case "hash" -> ShardingStrategy.FILENAME_HASH;
+                    default -> throw new IllegalArgumentException("Unknown shard layout: " + value);
+                };
+                case "--shard-size" -> {
+                    try {
+                        shardSize = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid shard size: " + value);
+                    }
+                    if (shardSize <= 0) {
+                        throw new IllegalArgumentException("Shard size must be greater than 0");
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        void validate() {
+            if (project == null) {
+                throw new IllegalArgumentException("Missing required option --project");
+            }
+            if (csvFile == null) {
+                throw new IllegalArgumentException("Missing required option --csv");
+            }
+            if (outputDirectory == null && format != OutputFormat.STDOUT) {
+                throw new IllegalArgumentException("Missing required option --out");
+            }
+            if (incremental && format != OutputFormat.FILES) {
+                throw new IllegalArgumentException("--incremental only works with --format files");
+            }
+            if (resume && format != OutputFormat.FILES) {
+                throw new IllegalArgumentException("--resume only works with --format files");
+            }
+            if (deduplicate && format != OutputFormat.FILES) {
+                throw new IllegalArgumentException("--dedup only works with --format files");
+            }
+        }
+
+        int execute(PrintStream out, PrintStream err) throws IOException {
+            // Load the project, its variables and template
+            ProjectFile projectFile = ProjectFile.open(project);
+            if (projectFile == null) {
+                throw new IOException("Could not open project: " + project);
+            }
+            List<Variable> variables = projectFile.loadVariables();
+            if (projectFile.getTemplateFilePath() == null || projectFile.getTemplateFilePath().isEmpty()) {
+                throw new IOException("Project has no template file: " + project);
+            }
+            CompiledTemplate template = Jamplate.compile(Paths.get(projectFile.getTemplateFilePath()));
+
+            // The export directory also receives the dead-letter file, even when documents go to stdout
+            Path exportDirectory = Paths.get(outputDirectory != null ? outputDirectory : ".");
+            Files.createDirectories(exportDirectory);
+
+            // With documents on stdout, everything else goes to stderr
+            PrintStream summary = format == OutputFormat.STDOUT ? err : out;
+
+            try (RecordSource source = ParallelCsvReader.open(new File(csvFile), charset, threads)) {
+                List<String> missingVariables = RecordBinder.findUnboundVariables(
+                    template, source.getHeaders(), variables);
+                if (!missingVariables.isEmpty()) {
+                    err.println("Error: The following variables are required by the template but not found "
+                        + "in the CSV or project variables: " + String.join(", ", missingVariables));
+                    return EXIT_FAILED;
+                }
+
+                // A resumed export keeps the timestamp, and so the file names, of the interrupted one
+                String timestamp = resume ? ExportJob.findResumableTimestamp(exportDirectory) : null;
+                if (resume && timestamp == null) {
+                    err.println("No checkpoint found in " + exportDirectory + ", starting a new export");
+                }
+                if (timestamp == null) {
+                    timestamp = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss").format(LocalDateTime.now());
+                }
+                ExportOptions options = new ExportOptions();
+                options.setThreads(threads);
+                options.setMaxFailures(maxFailures);
+                options.setOutputFormat(format);
+                options.setCompressionLevel(compressionLevel);
+                options.setFlushPolicy(flushPolicy);
+                options.setDurability(durability);
+                options.setSyncInterval(syncInterval);
+                options.setSharding(sharding);
+                options.setShardSize(shardSize);
+                options.setManifestEnabled(sharding != ShardingStrategy.NONE);
+                options.setIncremental(incremental);
+                options.setResume(resume);
+                options.setDeduplicate(deduplicate);
+                options.setRenderCacheSize(renderCacheSize);
+                options.setFragmentCacheSize(fragmentCacheSize);
+                options.setColumnProjection(usedColumns);
+                if (format == OutputFormat.STDOUT) {
+                    options.setOutputSink(new StreamSink(new BufferedOutputStream(out, 1 << 16),
+                        options.getDocumentSeparator(), false));
+                }
+                ExportJob exportJob = new ExportJob(source, template, variables,
+                    projectFile.getProjectName(), projectFile.getTemplateFileType(), exportDirectory,
+                    timestamp, options);
+
+                // On Ctrl+C, stop reading records and let the ones in flight finish
+                AtomicBoolean cancelled = new AtomicBoolean();
+                CountDownLatch finished = new CountDownLatch(1);
+                Thread shutdownHook = new Thread(() -> {
+                    cancelled.set(true);
+                    try {
+                        finished.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+                int completed;
+                try {
+                    completed = exportJob.run(cancelled::get, new ExportListener() {
+                        @Override
+                        public void recordExported(int recordNumber, String fileName, int completed, int total) {
+                        }
+
+                        @Override
+                        public void recordFailed(int recordNumber, Exception error, int completed, int total) {
+                            err.println(String.format("Failed to export record %d: %s",
+                                recordNumber, error.getMessage()));
+                        }
+                    });
+                } finally {
+                    finished.countDown();
+                    if (exportJob.getDeadLetterFile() != null) {
+                        err.println("Failed records written to " + exportJob.getDeadLetterFile());
+                    }
+                    try {
+                        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                    } catch (IllegalStateException e) {
+                        // Already shutting down
+                    }
+                }
+
+                int failures = exportJob.getFailedCount();
+                String target = exportJob.getOutputFile() != null ? exportJob.getOutputFile().toString()
+                    : format == OutputFormat.STDOUT ? "standard output" : exportDirectory.toString();
+                summary.println(String.format("Exported %d of %d records to %s (%d failed)",
+                    completed - failures, completed, target, failures));
+                if (exportJob.getResumedCount() > 0) {
+                    summary.println(String.format("Resumed after %d records finished by the interrupted export",
+                        exportJob.getResumedCount()));
+                }
+                if (cancelled.get() && format == OutputFormat.FILES) {
+                    summary.println("Export interrupted; run again with --resume to continue");
+                }
+                if (deduplicate) {
+                    summary.println(String.format("%d duplicate documents stored as hard links",
+                        exportJob.getDeduplicatedCount()));
+                }
+                FragmentCache fragments = exportJob.getFragmentCache();
+                if (fragments != null && fragments.getHitCount() > 0) {
+                    summary.println(String.format("Fragment cache: %.0f%% hit rate, %d evictions",
+                        fragments.getHitRate() * 100, fragments.getEvictionCount()));
+                }
+                if (incremental) {
+                    summary.println(String.format("%d records unchanged, %d stale files deleted",
+                        exportJob.getUnchangedCount(), exportJob.getDeletedCount()));
+                }
+                if (exportJob.getManifestFile() != null) {
+                    summary.println("Manifest written to " + exportJob.getManifestFile());
+                }
+                return failures == 0 ? EXIT_OK : EXIT_FAILED;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package media.samson.jamplate.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every document as one line of JSON Lines: {@code {"filename":"...","content":"..."}}.
+ * The content has to be escaped as a whole, so each document is buffered in memory
+ * until its entry is closed.
+ */
+final class JsonLinesSink implements OutputSink {
+    private final OutputStream out;
+
+    /**
+     * Creates a sink over a stream.
+     *
+     * @param out The stream to write to; should be buffered. It is closed with the sink.
+     */
+    JsonLinesSink(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public OutputStream openEntry(String fileName) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    writeLine(fileName, toString(StandardCharsets.UTF_8));
+                }
+            }
+        };
+    }
+
+    private void writeLine(String fileName, String content) throws IOException {
+        StringBuilder line = new StringBuilder(content.length() + fileName.length() + 32);
+        line.append("{\"filename\":");
+        appendString(line, fileName);
+        line.append(",\"content\":");
+        appendString(line, content);
+        line.append("}\n");
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a JSON string literal, escaping quotes, backslashes and control characters.
+     */
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                case '\b' -> json.append("\\b");
+                case '\f' -> json.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public boolean requiresRecordOrder() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,85 @@
+package media.samson.jamplate.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class MyTemplateEngine {
+    private String template;
+    private CompiledTemplate compiledTemplate = Jamplate.compile("");
+
+    /**
+     *
+     * @param template
+     *
+     * String template = "Hello {{world}}";
+     *
+     *  HashMap<String, String> variables = new HashMap<String, String>();
+     *  variables.put("k1","v1");
+     *  variables.put("k2","v2");
+     *
+     *  MyTemplateEngine myTemplateEngine = MyTemplateEngine();
+     *
+     *  Either:
+     *  myTemplateEngine.setTemplate(template);
+     *
+     *  Or:
+     *  myTemplateEngine.loadTemplateFromResource(template);
+     *
+     *  String doc = myTemplateEngine.build(varibles);
+     *
+     */
+    public void setTemplate(String template) {
+        this.template = template;
+        this.compiledTemplate = Jamplate.compile(template);
+    }
+
+    public void loadTemplateFromResource(String resourcePath) throws Exception {
+        try (InputStream is = getClass().getResourceAsStream(resourcePath);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
+            setTemplate(reader.lines().collect(Collectors.joining("\n")));
+        }
+    }
+
+    /**
+     * Gets the compiled form of the current template.
+     * The template is parsed once when it is set, so this is cheap to call.
+     *
+     * @return The compiled template
+     */
+    public CompiledTemplate getCompiledTemplate() {
+        return compiledTemplate;
+    }
+
+    public String build(Map<String,String> variables) {
+        return compiledTemplate.render(variables);
+    }
+
+    /**
+     * Renders the template straight into a writer without building the document in memory.
+     *
+     * @param variables Map of variable name to value
+     * @param out The writer to render into; it is not closed
+     * @throws IOException If writing fails
+     */
+    public void render(Map<String,String> variables, Writer out) throws IOException {
+        compiledTemplate.render(variables, out);
+    }
+
+    /**
+     * Renders the template straight into an output stream as UTF-8.
+     *
+     * @param variables Map of variable name to value
+     * @param out The stream to render into; it is flushed but not closed
+     * @throws IOException If writing fails
+     */
+    public void render(Map<String,String> variables, OutputStream out) throws IOException {
+        compiledTemplate.render(variables, out, StandardCharsets.UTF_8);
+    }
+}
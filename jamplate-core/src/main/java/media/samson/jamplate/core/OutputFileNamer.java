@@ -0,0 +1,244 @@
+package media.samson.jamplate.core;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the output filename of each exported record.
+ * <p>
+ * Everything that does not depend on the record is worked out once per export:
+ * the {@value ExportJob#OUTPUT_FILE_NAME} template is compiled, the fallback
+ * column is looked up and the extension is chosen. Names are then sanitized and
+ * made unique within the export, so two records that would produce the same name
+ * get {@code name.html} and {@code name_2.html} instead of one overwriting the other.
+ * Uniqueness ignores case, since the export may be written to a case-insensitive
+ * file system.
+ * <p>
+ * Instances are not thread-safe. Names should be generated on the thread that reads
+ * the records, so the numbering of duplicates follows record order.
+ */
+final class OutputFileNamer {
+    /** Longest filename, in UTF-8 bytes, that common file systems accept. */
+    static final int MAX_FILENAME_BYTES = 255;
+
+    /** Characters that are invalid in filenames, together with underscores, collapse to a single underscore. */
+    private static final Pattern INVALID_CHARACTERS = Pattern.compile("[\\\\/:*?\"<>|_]+");
+
+    /** Leading and trailing dots and spaces. */
+    private static final Pattern TRIMMED_EDGES = Pattern.compile("^[. ]+|[. ]+$");
+
+    private final RecordBinder filenameBinder;
+    private final String[] filenameSlots;
+    private final int filenameColumn;
+    private final int nameColumn;
+    private final String extension;
+    private final String timestamp;
+    private final Set<String> usedNames = new HashSet<>();
+
+    /**
+     * Prepares filename generation for an export.
+     *
+     * @param headers The CSV headers
+     * @param projectVariables The project variables
+     * @param projectName The project name
+     * @param templateFileType The template type, which decides the file extension
+     * @param timestamp The export timestamp, used for fallback filenames
+     */
+    OutputFileNamer(List<String> headers, List<Variable> projectVariables, String projectName,
+                    TemplateFileType templateFileType, String timestamp) {
+        this.timestamp = timestamp;
+
+        // Compile the filename template once, if the project defines one
+        this.filenameBinder = projectVariables.stream()
+            .filter(v -> v.getName().equals(ExportJob.OUTPUT_FILE_NAME))
+            .findFirst()
+            .map(v -> new RecordBinder(Jamplate.compile(v.getValue()),
+                headers, projectVariables, projectName, timestamp))
+            .orElse(null);
+        this.filenameSlots = filenameBinder == null ? null : new String[filenameBinder.getSlotCount()];
+        this.filenameColumn = headers.indexOf("filename");
+        this.nameColumn = headers.indexOf("name");
+
+        // Get file extension using switch on template type
+        this.extension = templateFileType == null ? ".txt" : switch (templateFileType) {
+            case HTML_FILE -> ".html";
+            case PHP_FILE -> ".php";
+            case TXT_FILE -> ".txt";
+        };
+    }
+
+    /**
+     * Gets the extension given to every filename.
+     *
+     * @return The extension, including the dot
+     */
+    String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Gets the CSV columns filenames are made from.
+     *
+     * @return The column names; empty if filenames do not depend on the record's values
+     */
+    Set<String> getColumnsUsed() {
+        if (filenameBinder != null) {
+            return filenameBinder.getColumnsUsed();
+        }
+        if (filenameColumn >= 0) {
+            return Set.of("filename");
+        }
+        return nameColumn >= 0 ? Set.of("name") : Set.of();
+    }
+
+    /**
+     * Generates the unique output filename for a record using the available patterns and variables.
+     *
+     * @param record The CSV values, in header order
+     * @param recordNumber The 1-based record number
+     * @return The sanitized filename, including the extension
+     * @throws IllegalArgumentException If the record produces an empty filename
+     */
+    String nextFileName(String[] record, int recordNumber) {
+        String outputFileName;
+        if (filenameBinder != null) {
+            // Process filename template with variables
+            outputFileName = filenameBinder.getTemplate().render(
+                filenameBinder.bind(record, recordNumber, filenameSlots));
+        } else if (filenameColumn >= 0) {
+            // Use filename column if available
+            outputFileName = record[filenameColumn];
+        } else if (nameColumn >= 0) {
+            // Use name column if available
+            outputFileName = record[nameColumn];
+        } else {
+            // Use timestamp and padded index as fallback
+            outputFileName = String.format("%s_%s", timestamp, RecordBinder.padRecordNumber(recordNumber));
+        }
+
+        // Add file extension if not already present
+        if (outputFileName != null && !outputFileName.toLowerCase(Locale.ROOT).endsWith(extension)) {
+            outputFileName += extension;
+        }
+
+        return reserve(sanitize(outputFileName));
+    }
+
+    /**
+     * Marks a filename as taken, as if an earlier record had been given it.
+     * Used when resuming an export, so later records are numbered as before.
+     *
+     * @param fileName A filename returned by an earlier call to {@link #nextFileName}
+     */
+    void markUsed(String fileName) {
+        usedNames.add(fileName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Claims a filename for this export, adding a counter if it is already taken.
+     *
+     * @param fileName A sanitized filename
+     * @return The filename, or {@code name_N.ext} for the first free counter N
+     */
+    private String reserve(String fileName) {
+        if (usedNames.add(fileName.toLowerCase(Locale.ROOT))) {
+            return fileName;
+        }
+
+        int lastDot = fileName.lastIndexOf('.');
+        String base = lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
+        String suffix = lastDot > 0 ? fileName.substring(lastDot) : "";
+        for (int counter = 2; ; counter++) {
+            String candidate = truncate(base + "_" + counter, suffix);
+            if (usedNames.add(candidate.toLowerCase(Locale.ROOT))) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Sanitizes a filename to remove invalid characters and ensure it's valid for the file system.
+     *
+     * @param filename The filename to sanitize
+     * @return A sanitized filename
+     * @throws IllegalArgumentException If the filename is null or blank
+     */
+    static String sanitize(String filename) {
+        if (filename == null || filename.isBlank()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+
+        // Replace runs of invalid characters and underscores with a single underscore
+        String sanitized = INVALID_CHARACTERS.matcher(filename).replaceAll("_");
+
+        // Remove leading/trailing dots and spaces
+        sanitized = TRIMMED_EDGES.matcher(sanitized).replaceAll("");
+
+        // If the filename is empty after sanitization, use a default name
+        if (sanitized.isBlank()) {
+            return "untitled";
+        }
+
+        int lastDot = sanitized.lastIndexOf('.');
+        if (lastDot <= 0) {
+            return truncate(sanitized, "");
+        }
+        return truncate(sanitized.substring(0, lastDot), sanitized.substring(lastDot));
+    }
+
+    /**
+     * Shortens the name part so that name and extension fit in {@link #MAX_FILENAME_BYTES}
+     * UTF-8 bytes, without splitting a character.
+     *
+     * @param name The name without extension
+     * @param extension The extension including its dot, or an empty string
+     * @return The possibly shortened name followed by the extension
+     */
+    private static String truncate(String name, String extension) {
+        int extensionBytes = utf8Length(extension);
+        if (extensionBytes >= MAX_FILENAME_BYTES) {
+            // An extension this long cannot be kept; truncate the whole name instead
+            name = name + extension;
+            extension = "";
+            extensionBytes = 0;
+        }
+
+        int budget = MAX_FILENAME_BYTES - extensionBytes;
+        int bytes = 0;
+        int end = 0;
+        while (end < name.length()) {
+            int codePoint = name.codePointAt(end);
+            int length = utf8Length(codePoint);
+            if (bytes + length > budget) {
+                return name.substring(0, end) + extension;
+            }
+            bytes += length;
+            end += Character.charCount(codePoint);
+        }
+        return name + extension;
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            bytes += utf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,46 @@
+package media.samson.jamplate.core;
+
+/**
+ * Where an {@link ExportJob} puts the documents it renders.
+ */
+public enum OutputFormat {
+    /** One file per record in the export directory. */
+    FILES("Files", ""),
+    /** A single ZIP archive in the export directory, with one entry per record. */
+    ZIP("ZIP archive", ".zip"),
+    /** A single gzip-compressed tar archive in the export directory, with one entry per record. */
+    TAR_GZ("TAR.GZ archive", ".tar.gz"),
+    /** A single file in the export directory holding every document, with a separator between them. */
+    CONCATENATED("Single file", ""),
+    /** A JSON Lines file in the export directory, with a filename and content object per record. */
+    JSON_LINES("JSON Lines", ".jsonl"),
+    /** Every document written to standard output, with a separator between them. */
+    STDOUT("Standard output", "");
+
+    private final String displayName;
+    private final String archiveExtension;
+
+    OutputFormat(String displayName, String archiveExtension) {
+        this.displayName = displayName;
+        this.archiveExtension = archiveExtension;
+    }
+
+    /**
+     * Gets the extension of the archive file, including the dot.
+     *
+     * @return The archive extension, or an empty string when the format has no fixed extension
+     */
+    public String getArchiveExtension() {
+        return archiveExtension;
+    }
+
+    /**
+     * Returns the display name of the output format.
+     *
+     * @return The human-readable display name
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
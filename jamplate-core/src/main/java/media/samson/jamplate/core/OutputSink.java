@@ -0,0 +1,51 @@
+package media.samson.jamplate.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the documents of an export, one named entry at a time.
+ * <p>
+ * The built-in sinks are chosen with {@link ExportOptions#setOutputFormat(OutputFormat)};
+ * embedders can send documents anywhere else by implementing this interface and
+ * passing it to {@link ExportOptions#setOutputSink(OutputSink)}.
+ * <p>
+ * Entries are opened and written from a single thread, and each entry is closed
+ * before the next one is opened. The export calls {@link #flush()} according to
+ * its {@link FlushPolicy}, so a sink can buffer a batch of documents and push them
+ * on in one go. Closing the sink finishes the output, for example by writing an
+ * archive's trailer.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * Starts a document. The document is complete once the returned stream is closed.
+     *
+     * @param fileName The sanitized, unique filename of the document
+     * @return The stream to write the document to
+     * @throws IOException If the entry cannot be created
+     */
+    OutputStream openEntry(String fileName) throws IOException;
+
+    /**
+     * Pushes buffered documents on to their destination.
+     * The default does nothing, for sinks that do not buffer across documents.
+     *
+     * @throws IOException If the buffered output cannot be written
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Checks whether documents must arrive in record order.
+     * Sinks that write every document into one stream return true, so a parallel
+     * export produces the same output as a sequential one. Documents are then held
+     * back until every earlier record has been written or has failed.
+     *
+     * @return true if documents must be written in record order
+     */
+    default boolean requiresRecordOrder() {
+        return false;
+    }
+}
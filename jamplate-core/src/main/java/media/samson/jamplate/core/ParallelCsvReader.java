@@ -0,0 +1,647 @@
+package media.samson.jamplate.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads records from a CSV file with headers, parsing it on several threads.
+ * <p>
+ * The file is memory-mapped and split into chunks that end on record boundaries.
+ * Finding a boundary needs a single pass over the bytes that only tracks whether
+ * the position is inside a quoted field; decoding, tokenizing and trimming, which
+ * is where the time goes, then run on a pool of parser threads. Chunks are handed
+ * out in file order, and only a few chunks are parsed ahead, so memory stays
+ * bounded regardless of the file size.
+ * <p>
+ * The records produced are the same as those of {@link CsvRecordReader}: the first
+ * record holds the field names, values are trimmed, empty lines are skipped and a
+ * double quote only starts a quoted field at the beginning of a value.
+ * <p>
+ * Splitting on bytes requires an encoding in which the delimiter, quote and line
+ * break bytes never occur inside other characters. {@link #open} falls back to a
+ * {@link CsvRecordReader} for any other encoding, and for files too small to split.
+ * <p>
+ * Positions are byte offsets of chunk starts, so seeking is immediate; at most one
+ * chunk is parsed again to get back to a record inside it. Positions saved by a
+ * {@link CsvRecordReader} are translated by decoding the file up to their character offset.
+ * <p>
+ * After {@link #selectColumns(Set)}, the tokenizer still finds where every field
+ * ends, but only builds strings for the selected columns.
+ */
+public class ParallelCsvReader implements SeekableRecordSource {
+    /** Target chunk size; chunks are extended to the end of the record they stop in. */
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /** Encodings where the delimiter, quote and line break bytes are always single characters. */
+    private static final Set<Charset> SPLITTABLE_CHARSETS = Set.of(
+        StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1);
+
+    private final File file;
+    private final FileChannel channel;
+    private final Charset charset;
+    private final long fileSize;
+    private final int chunkSize;
+    private final int maxPendingChunks;
+    private final ForkJoinPool parsers;
+    private final BoundaryScanner scanner = new BoundaryScanner();
+    private final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+    private final List<String> headers;
+    /** Column position in the file for each header, resolved once. */
+    private final int[] columnIndexes;
+    /** Offset of the file content, after any byte order mark. */
+    private final long contentStart;
+    /** Offset of the first data record. */
+    private final long dataStart;
+    /** Whether each column of the file is kept, or null to keep every column; read by the parser threads. */
+    private volatile boolean[] keptColumns;
+
+    private long nextChunkStart;
+    /** First record, read when the reader is opened. */
+    private String[] firstRecord;
+    private Chunk current;
+    private int currentRow;
+    /** Position of the current chunk: its start offset and the records before it. */
+    private RecordPosition currentPosition;
+    private Exception failure;
+
+    private volatile long recordsRead;
+    private volatile long parsedBytes;
+    private volatile long parsedRecords;
+    private volatile boolean exhausted;
+
+    /**
+     * Opens the best reader for a CSV file: a parallel reader when the file is large
+     * enough to split and its encoding allows it, a {@link CsvRecordReader} otherwise.
+     *
+     * @param file The CSV file to read
+     * @param charset The file's encoding, used unless the file starts with a byte order mark
+     * @param threads The number of parser threads
+     * @return The record source
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty or missing headers or data
+     */
+    public static RecordSource open(File file, Charset charset, int threads) throws IOException {
+        ByteOrderMark byteOrderMark = file.exists() ? ByteOrderMark.read(file) : null;
+        Charset effectiveCharset = byteOrderMark != null ? byteOrderMark.getCharset() : charset;
+        if (threads > 1 && file.length() > DEFAULT_CHUNK_SIZE && isSplittable(effectiveCharset)) {
+            return new ParallelCsvReader(file, charset, threads, DEFAULT_CHUNK_SIZE);
+        }
+        return new CsvRecordReader(file, charset);
+    }
+
+    /**
+     * Checks whether files in an encoding can be split on raw bytes.
+     *
+     * @param charset The encoding
+     * @return true if record boundaries can be found without decoding
+     */
+    static boolean isSplittable(Charset charset) {
+        return SPLITTABLE_CHARSETS.contains(charset)
+            || charset.name().startsWith("ISO-8859-")
+            || charset.name().startsWith("windows-125");
+    }
+
+    /**
+     * Opens a CSV file for parallel reading.
+     *
+     * @param file The CSV file to read
+     * @param charset The file's encoding, used unless the file starts with a byte order mark
+     * @param threads The number of parser threads
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty, missing headers or data,
+     *         or its encoding cannot be split on bytes
+     */
+    public ParallelCsvReader(File file, Charset charset, int threads) throws IOException {
+        this(file, charset, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Opens a CSV file for parallel reading with a given chunk size.
+     *
+     * @param file The CSV file to read
+     * @param charset The file's encoding, used unless the file starts with a byte order mark
+     * @param threads The number of parser threads
+     * @param chunkSize The target chunk size in bytes
+     * @throws IOException If there's an error reading the file
+     * @throws IllegalArgumentException If the file is empty, missing headers or data,
+     *         or its encoding cannot be split on bytes
+     */
+    ParallelCsvReader(File file, Charset charset, int threads, int chunkSize) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("CSV file does not exist: " + file.getAbsolutePath());
+        }
+        if (file.length() == 0) {
+            throw new IllegalArgumentException("CSV file is empty: " + file.getAbsolutePath());
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be greater than 0");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+
+        // Skip the byte order mark; it decides the encoding when present
+        ByteOrderMark byteOrderMark = ByteOrderMark.read(file);
+        this.charset = byteOrderMark != null ? byteOrderMark.getCharset() : charset;
+        if (!isSplittable(this.charset)) {
+            throw new IllegalArgumentException("CSV encoding cannot be read in parallel: " + this.charset.name());
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = threads * 2;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.parsers = new ForkJoinPool(threads);
+
+        try {
+            // The header is the first non-empty record
+            List<String> headerFields = new ArrayList<>();
+            long position = byteOrderMark != null ? byteOrderMark.length() : 0;
+            this.contentStart = position;
+            while (headerFields.isEmpty() && position < fileSize) {
+                long end = scanner.findRecordEnd(position, position + 1);
+                new Tokenizer(decode(position, end), null).next(headerFields);
+                position = end;
+            }
+            this.dataStart = position;
+            this.nextChunkStart = position;
+            this.currentPosition = new RecordPosition(position, 0);
+
+            if (headerFields.isEmpty()) {
+                throw new IllegalArgumentException("CSV file has no headers");
+            }
+            for (String header : headerFields) {
+                if (header.isEmpty()) {
+                    throw new IllegalArgumentException("A header name is missing in " + headerFields);
+                }
+            }
+            this.headers = Collections.unmodifiableList(new ArrayList<>(headerFields));
+
+            // Duplicate names resolve to their last column, as in CsvRecordReader
+            Map<String, Integer> headerMap = new HashMap<>();
+            for (int i = 0; i < headerFields.size(); i++) {
+                headerMap.put(headerFields.get(i), i);
+            }
+            this.columnIndexes = new int[headers.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                columnIndexes[i] = headerMap.get(headers.get(i));
+            }
+
+            // Read the first record so the record count can be estimated from the start
+            this.firstRecord = nextRecord();
+            if (firstRecord == null) {
+                throw new IllegalArgumentException("CSV file contains headers but no data");
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public String[] nextRecord() throws IOException {
+        if (firstRecord != null) {
+            String[] row = firstRecord;
+            firstRecord = null;
+            return row;
+        }
+        while (true) {
+            if (failure != null) {
+                if (failure instanceof IOException io) {
+                    throw io;
+                }
+                throw (RuntimeException) failure;
+            }
+            if (current != null) {
+                if (currentRow < current.rows.size()) {
+                    // Release the row so the chunk doesn't keep it alive
+                    String[] row = current.rows.set(currentRow++, null);
+                    recordsRead++;
+                    return row;
+                }
+                if (current.error != null || current.shortField >= 0) {
+                    failure = recordError(current);
+                    continue;
+                }
+            }
+            if (!advanceChunk()) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void selectColumns(Set<String> columns) {
+        // Chunks already scheduled are parsed with the previous selection
+        boolean[] kept = new boolean[Arrays.stream(columnIndexes).max().orElse(-1) + 1];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            if (columns.contains(headers.get(i))) {
+                kept[columnIndexes[i]] = true;
+            }
+        }
+        keptColumns = kept;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return CsvRecordReader.fingerprint(file);
+    }
+
+    @Override
+    public RecordPosition getPosition() {
+        return currentPosition;
+    }
+
+    @Override
+    public void seek(RecordPosition position) throws IOException {
+        if (position.getOffset() < dataStart || position.getOffset() > fileSize || position.getRecordIndex() < 0) {
+            throw new IllegalArgumentException("Position is outside the CSV data: " + position.getOffset());
+        }
+        for (Future<Chunk> chunk : pending) {
+            chunk.cancel(true);
+        }
+        pending.clear();
+        firstRecord = null;
+        current = null;
+        failure = null;
+        exhausted = false;
+        nextChunkStart = position.getOffset();
+        recordsRead = position.getRecordIndex();
+        currentPosition = position;
+    }
+
+    @Override
+    public RecordPosition translatePosition(RecordPosition position, String sourceType) throws IOException {
+        if (!sourceType.equals(CsvRecordReader.class.getName())) {
+            return SeekableRecordSource.super.translatePosition(position, sourceType);
+        }
+        // CsvRecordReader saves character offsets into the content after the byte order mark
+        long[] decoded = CsvRecordReader.decodeExtent(
+            file, charset, contentStart, fileSize - contentStart, position.getOffset());
+        long offset = contentStart + decoded[0];
+        if (decoded[1] != position.getOffset() || offset < dataStart) {
+            return null;
+        }
+        // Chunks must start on a record boundary, which always follows a line break
+        if (offset > dataStart) {
+            byte previous = channel.map(FileChannel.MapMode.READ_ONLY, offset - 1, 1).get();
+            if (previous != '\n' && previous != '\r') {
+                return null;
+            }
+        }
+        return new RecordPosition(offset, position.getRecordIndex());
+    }
+
+    /**
+     * Moves on to the next parsed chunk, scheduling more chunks to keep the parsers busy.
+     *
+     * @return false once every chunk has been read
+     * @throws IOException If the chunk could not be read
+     */
+    private boolean advanceChunk() throws IOException {
+        fillPending();
+        Future<Chunk> next = pending.poll();
+        if (next == null) {
+            current = null;
+            exhausted = true;
+            return false;
+        }
+        fillPending();
+
+        try {
+            current = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing CSV file");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Error parsing CSV file: " + cause.getMessage(), cause);
+        }
+        currentRow = 0;
+        currentPosition = new RecordPosition(current.start, recordsRead);
+        parsedBytes += current.length;
+        parsedRecords += current.rows.size();
+        return true;
+    }
+
+    /**
+     * Schedules chunks for parsing until the lookahead limit is reached.
+     *
+     * @throws IOException If the file cannot be scanned
+     */
+    private void fillPending() throws IOException {
+        while (pending.size() < maxPendingChunks && nextChunkStart < fileSize) {
+            long start = nextChunkStart;
+            long end = scanner.findRecordEnd(start, start + chunkSize);
+            nextChunkStart = end;
+            pending.add(parsers.submit(() -> parseChunk(start, end)));
+        }
+    }
+
+    /**
+     * Builds the exception for the problem that stopped a chunk, numbering the
+     * record the same way as {@link CsvRecordReader}.
+     */
+    private Exception recordError(Chunk chunk) {
+        long recordNumber = recordsRead + 1;
+        if (chunk.error != null) {
+            return new IOException(String.format("Invalid CSV in record %d: %s", recordNumber, chunk.error));
+        }
+        return new IllegalArgumentException(String.format(
+            "Record %d has %d values but field '%s' is column %d",
+            recordNumber, chunk.shortSize, headers.get(chunk.shortField), columnIndexes[chunk.shortField] + 1));
+    }
+
+    /**
+     * Parses the records between two record boundaries. Runs on a parser thread.
+     *
+     * @param start The offset of the first record
+     * @param end The offset just past the last record
+     * @return The parsed chunk
+     * @throws IOException If the file cannot be read
+     */
+    private Chunk parseChunk(long start, long end) throws IOException {
+        Chunk chunk = new Chunk(start, end - start);
+        Tokenizer tokenizer = new Tokenizer(decode(start, end), keptColumns);
+        List<String> fields = new ArrayList<>(columnIndexes.length);
+        try {
+            while (tokenizer.next(fields)) {
+                String[] row = new String[columnIndexes.length];
+                for (int i = 0; i < row.length; i++) {
+                    int column = columnIndexes[i];
+                    if (column >= fields.size()) {
+                        chunk.shortField = i;
+                        chunk.shortSize = fields.size();
+                        return chunk;
+                    }
+                    row[i] = fields.get(column);
+                }
+                chunk.rows.add(row);
+            }
+        } catch (IOException e) {
+            chunk.error = e.getMessage();
+        }
+        return chunk;
+    }
+
+    private CharBuffer decode(long start, long end) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .decode(bytes);
+    }
+
+    /**
+     * Estimates the record count from the file size and the average size of the
+     * records parsed so far. The estimate is exact once the file has been parsed.
+     *
+     * @return The estimated record count
+     */
+    @Override
+    public long estimateRecordCount() {
+        long read = recordsRead;
+        long bytes = parsedBytes;
+        if (exhausted || bytes == 0) {
+            return read;
+        }
+        long estimate = Math.round((double) parsedRecords * (fileSize - dataStart) / bytes);
+        return Math.max(read, estimate);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<Chunk> chunk : pending) {
+            chunk.cancel(true);
+        }
+        pending.clear();
+        parsers.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * The records parsed from one chunk, and the problem that stopped it, if any.
+     */
+    private static final class Chunk {
+        final long start;
+        final long length;
+        final List<String[]> rows = new ArrayList<>();
+        /** Parse error in the record after the last row. */
+        String error;
+        /** Field missing from the record after the last row, or -1. */
+        int shortField = -1;
+        int shortSize;
+
+        Chunk(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Finds record boundaries on raw bytes, tracking just enough state to tell
+     * line breaks inside quoted fields from those that end a record.
+     */
+    private final class BoundaryScanner {
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long windowEnd;
+
+        /**
+         * Finds the first record boundary at or after a target offset.
+         *
+         * @param from A record boundary to scan from
+         * @param target The earliest acceptable boundary
+         * @return The offset just past the line break ending the record, or the file size
+         * @throws IOException If the file cannot be read
+         */
+        long findRecordEnd(long from, long target) throws IOException {
+            int state = FIELD_START;
+            long position = from;
+            while (position < fileSize) {
+                byte b = byteAt(position++);
+                switch (state) {
+                    case QUOTED -> {
+                        if (b == '"') {
+                            state = QUOTE_IN_QUOTED;
+                        }
+                    }
+                    case FIELD_START, UNQUOTED, QUOTE_IN_QUOTED -> {
+                        if (b == '"' && state != UNQUOTED) {
+                            // Opens a quoted field, or is an escaped quote inside one
+                            state = QUOTED;
+                        } else if (b == ',') {
+                            state = FIELD_START;
+                        } else if (b == '\n' || b == '\r') {
+                            if (b == '\r' && position < fileSize && byteAt(position) == '\n') {
+                                position++;
+                            }
+                            if (position >= target) {
+                                return position;
+                            }
+                            state = FIELD_START;
+                        } else {
+                            state = UNQUOTED;
+                        }
+                    }
+                    default -> throw new IllegalStateException("Unknown scanner state: " + state);
+                }
+            }
+            return fileSize;
+        }
+
+        private byte byteAt(long position) throws IOException {
+            if (window == null || position < windowStart || position >= windowEnd) {
+                windowStart = position;
+                windowEnd = Math.min(fileSize, position + Math.max(chunkSize, 64 * 1024));
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+            }
+            return window.get((int) (position - windowStart));
+        }
+    }
+
+    /**
+     * Splits decoded text into records, following the rules of the CSV format used
+     * by {@link CsvRecordReader}.
+     */
+    private static final class Tokenizer {
+        private final char[] text;
+        private final int end;
+        private final boolean[] keptColumns;
+        private int position;
+        private final StringBuilder quoted = new StringBuilder();
+
+        /**
+         * Creates a tokenizer over decoded text.
+         *
+         * @param buffer The text to split
+         * @param keptColumns Whether each column's values are kept, or null to keep all;
+         *        other values are skipped and read as null
+         */
+        Tokenizer(CharBuffer buffer, boolean[] keptColumns) {
+            this.keptColumns = keptColumns;
+            this.text = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.end = buffer.arrayOffset() + buffer.limit();
+        }
+
+        /**
+         * Reads the next non-empty record.
+         *
+         * @param fields Receives the record's trimmed values, or null for columns that are not kept
+         * @return false at the end of the text
+         * @throws IOException If a quoted field is malformed
+         */
+        boolean next(List<String> fields) throws IOException {
+            fields.clear();
+
+            // Skip empty lines
+            while (position < end && (text[position] == '\n' || text[position] == '\r')) {
+                position++;
+            }
+            if (position >= end) {
+                return false;
+            }
+
+            while (true) {
+                int column = fields.size();
+                boolean keep = keptColumns == null || column < keptColumns.length && keptColumns[column];
+                fields.add(position < end && text[position] == '"' ? quotedField(keep) : unquotedField(keep));
+                if (position >= end) {
+                    return true;
+                }
+                char c = text[position++];
+                if (c == '\r' && position < end && text[position] == '\n') {
+                    position++;
+                }
+                if (c != ',') {
+                    return true;
+                }
+            }
+        }
+
+        private String unquotedField(boolean keep) {
+            int start = position;
+            while (position < end) {
+                char c = text[position];
+                if (c == ',' || c == '\n' || c == '\r') {
+                    break;
+                }
+                position++;
+            }
+            return keep ? new String(text, start, position - start).trim() : null;
+        }
+
+        private String quotedField(boolean keep) throws IOException {
+            quoted.setLength(0);
+            position++;
+            while (true) {
+                if (position >= end) {
+                    throw new IOException("EOF reached before encapsulated token finished");
+                }
+                char c = text[position++];
+                if (c == '"') {
+                    if (position < end && text[position] == '"') {
+                        if (keep) {
+                            quoted.append('"');
+                        }
+                        position++;
+                    } else {
+                        break;
+                    }
+                } else if (keep) {
+                    quoted.append(c);
+                }
+            }
+
+            // Only whitespace may follow the closing quote
+            while (position < end) {
+                char c = text[position];
+                if (c == ',' || c == '\n' || c == '\r') {
+                    break;
+                }
+                if (!Character.isWhitespace(c)) {
+                    throw new IOException("invalid char between encapsulated token and delimiter");
+                }
+                position++;
+            }
+            return keep ? quoted.toString().trim() : null;
+        }
+    }
+}
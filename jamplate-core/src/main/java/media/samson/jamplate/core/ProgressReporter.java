@@ -0,0 +1,86 @@
+package media.samson.jamplate.core;
+
+import java.time.Duration;
+
+/**
+ * Turns the counters of a running {@link ExportJob} into progress snapshots.
+ * <p>
+ * The export threads only bump atomic counters. A UI samples this reporter on a
+ * timer, typically every {@value #SAMPLE_INTERVAL_MILLIS} ms, so the cost of
+ * formatting and redrawing depends on the refresh rate rather than the record
+ * rate. Throughput is smoothed with an exponential moving average so the rates
+ * and the ETA do not jump about between samples.
+ * <p>
+ * Sampling is synchronized, so the reporter can be sampled from any thread.
+ */
+public final class ProgressReporter {
+    /** Suggested interval between samples, giving a 10 Hz refresh rate. */
+    public static final long SAMPLE_INTERVAL_MILLIS = 100;
+
+    /** Time constant of the throughput average, in seconds. */
+    private static final double SMOOTHING_SECONDS = 2.0;
+
+    private final ExportJob job;
+    private final long startNanos;
+    private long lastNanos;
+    private int lastCompleted;
+    private long lastBytes;
+    private double recordsPerSecond = Double.NaN;
+    private double bytesPerSecond = Double.NaN;
+
+    /**
+     * Creates a reporter for a job; the elapsed time is measured from now.
+     *
+     * @param job The export to report on
+     */
+    public ProgressReporter(ExportJob job) {
+        this(job, System.nanoTime());
+    }
+
+    ProgressReporter(ExportJob job, long startNanos) {
+        this.job = job;
+        this.startNanos = startNanos;
+        this.lastNanos = startNanos;
+    }
+
+    /**
+     * Takes a snapshot of the job's progress.
+     *
+     * @return The current progress
+     */
+    public ExportProgress sample() {
+        return sample(System.nanoTime());
+    }
+
+    synchronized ExportProgress sample(long nanos) {
+        int completed = job.getCompletedCount();
+        int failed = job.getFailedCount();
+        long bytes = job.getBytesWritten();
+        int total = Math.max(completed, job.estimateTotalRecords());
+        // Records taken over from an interrupted export were not finished by this run
+        int finished = completed - job.getResumedCount();
+
+        double seconds = (nanos - lastNanos) / 1e9;
+        if (seconds > 0) {
+            double weight = 1 - Math.exp(-seconds / SMOOTHING_SECONDS);
+            recordsPerSecond = smooth(recordsPerSecond, (finished - lastCompleted) / seconds, weight);
+            bytesPerSecond = smooth(bytesPerSecond, (bytes - lastBytes) / seconds, weight);
+            lastNanos = nanos;
+            lastCompleted = finished;
+            lastBytes = bytes;
+        }
+
+        double recordRate = Double.isNaN(recordsPerSecond) ? 0 : recordsPerSecond;
+        double byteRate = Double.isNaN(bytesPerSecond) ? 0 : bytesPerSecond;
+        Duration eta = recordRate > 0
+            ? Duration.ofMillis((long) ((total - completed) / recordRate * 1000))
+            : null;
+        return new ExportProgress(completed, failed, total, bytes, recordRate, byteRate,
+            Duration.ofNanos(nanos - startNanos), eta);
+    }
+
+    private static double smooth(double average, double rate, double weight) {
+        // The first sample seeds the average
+        return Double.isNaN(average) ? rate : average + weight * (rate - average);
+    }
+}
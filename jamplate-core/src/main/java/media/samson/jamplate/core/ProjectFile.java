@@ -1,4 +1,4 @@
-package media.samson.jamplate;
+package media.samson.jamplate.core;
 
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
@@ -711,7 +711,7 @@ public class ProjectFile {
      * @param variables The list of variables to save
      * @throws IOException if there is an error writing to the file
      */
-    public void saveVariables(javafx.collections.ObservableList<Variable> variables) throws IOException {
+    public void saveVariables(List<Variable> variables) throws IOException {
         if (variablesFilePath == null || variablesFilePath.isEmpty()) {
             throw new IOException("Variables file path is not set");
         }
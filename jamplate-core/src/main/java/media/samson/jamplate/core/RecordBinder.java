@@ -0,0 +1,220 @@
+package media.samson.jamplate.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds CSV records to the slots of a {@link CompiledTemplate}.
+ * <p>
+ * Every variable the template references is resolved to its source once, when
+ * the binder is created: a CSV column, a project variable, or one of the
+ * special {@code Jamplate*} variables. Variables whose value is the same for
+ * every record (project variables, the project name and the export timestamp)
+ * are folded into the template's literal text up front, see
+ * {@link CompiledTemplate#specialise(Map)}. Binding a record then only copies
+ * the CSV-driven values by index into a flat slot array, with no per-record maps.
+ * <p>
+ * Precedence matches the export's original map building: special variables win
+ * over CSV columns, and CSV columns win over project variables.
+ */
+public class RecordBinder {
+    /** Special variable holding the project name. */
+    public static final String PROJECT_NAME = "JamplateProjectName";
+
+    /** Special variable holding the export timestamp. */
+    public static final String DOCUMENT_CREATE_AT = "JamplateDocumentCreateAt";
+
+    /** Special variable holding the 1-based record index. */
+    public static final String RECORD_INDEX = "JamplateRecordIndex";
+
+    /** Special variable holding the 1-based record index, zero padded to four digits. */
+    public static final String RECORD_INDEX_PADDED = "JamplateRecordIndexPadded";
+
+    // Slot sources that are not CSV columns
+    private static final int INDEX = -1;
+    private static final int INDEX_PADDED = -2;
+
+    /** The template specialised for this export; only per-record slots remain. */
+    private final CompiledTemplate template;
+    /** CSV column index for each slot, or one of the negative source markers. */
+    private final int[] slotSources;
+
+    /**
+     * Creates a binder for a template and a CSV header layout.
+     *
+     * @param template The compiled template to bind
+     * @param headers The CSV column names, in column order
+     * @param projectVariables The project variables, used when no CSV column has the same name
+     * @param projectName The value for {@value #PROJECT_NAME}
+     * @param createdAt The value for {@value #DOCUMENT_CREATE_AT}
+     */
+    public RecordBinder(CompiledTemplate template, List<String> headers, List<Variable> projectVariables,
+                        String projectName, String createdAt) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            columns.putIfAbsent(headers.get(i), i);
+        }
+
+        Map<String, String> projectValues = new HashMap<>();
+        for (Variable variable : projectVariables) {
+            projectValues.putIfAbsent(variable.getName(), variable.getValue());
+        }
+
+        // Work out which variables are constant for the whole export
+        Map<String, String> constants = new HashMap<>();
+        for (String name : template.getVariableNames()) {
+            switch (name) {
+                case PROJECT_NAME -> constants.put(name, constantOrPlaceholder(name, projectName));
+                case DOCUMENT_CREATE_AT -> constants.put(name, constantOrPlaceholder(name, createdAt));
+                case RECORD_INDEX, RECORD_INDEX_PADDED -> { }
+                default -> {
+                    if (!columns.containsKey(name)) {
+                        // Unbound variables render as their placeholder, which is constant too
+                        constants.put(name, constantOrPlaceholder(name, projectValues.get(name)));
+                    }
+                }
+            }
+        }
+        this.template = template.specialise(constants);
+
+        List<String> names = this.template.getVariableNames();
+        this.slotSources = new int[names.size()];
+        for (int slot = 0; slot < names.size(); slot++) {
+            String name = names.get(slot);
+            slotSources[slot] = switch (name) {
+                case RECORD_INDEX -> INDEX;
+                case RECORD_INDEX_PADDED -> INDEX_PADDED;
+                default -> columns.get(name);
+            };
+        }
+    }
+
+    /**
+     * Finds the template variables that neither a CSV column, a project variable
+     * nor a special variable provides. Such variables would be left as placeholder
+     * text in every exported document.
+     *
+     * @param template The compiled template
+     * @param headers The CSV column names
+     * @param projectVariables The project variables
+     * @return The unbound variable names, in template order
+     */
+    public static List<String> findUnboundVariables(CompiledTemplate template, List<String> headers,
+                                                    List<Variable> projectVariables) {
+        Set<String> bound = new HashSet<>(headers);
+        for (Variable variable : projectVariables) {
+            bound.add(variable.getName());
+        }
+        bound.addAll(List.of(PROJECT_NAME, DOCUMENT_CREATE_AT, RECORD_INDEX, RECORD_INDEX_PADDED));
+
+        List<String> unbound = new ArrayList<>();
+        for (String name : template.getVariableNames()) {
+            if (!bound.contains(name)) {
+                unbound.add(name);
+            }
+        }
+        return unbound;
+    }
+
+    private static String constantOrPlaceholder(String name, String value) {
+        return value != null ? value : CompiledTemplate.placeholder(name);
+    }
+
+    /**
+     * Gets the specialised template this binder fills.
+     * Its slots are the per-record variables only; render it with the arrays
+     * produced by {@link #bind(String[], int, String[])}.
+     *
+     * @return The specialised compiled template
+     */
+    public CompiledTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the number of slot values produced per record.
+     *
+     * @return The specialised template's slot count
+     */
+    public int getSlotCount() {
+        return slotSources.length;
+    }
+
+    /**
+     * Gets the CSV columns the specialised template reads; the other columns are
+     * never looked at by {@link #bind(String[], int, String[])}.
+     *
+     * @return The column names, in slot order
+     */
+    Set<String> getColumnsUsed() {
+        Set<String> used = new LinkedHashSet<>();
+        List<String> names = template.getVariableNames();
+        for (int slot = 0; slot < slotSources.length; slot++) {
+            if (slotSources[slot] >= 0) {
+                used.add(names.get(slot));
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Checks whether the specialised template shows the record number, which makes
+     * every record's document different.
+     *
+     * @return true if a slot holds {@value #RECORD_INDEX} or {@value #RECORD_INDEX_PADDED}
+     */
+    boolean usesRecordNumber() {
+        for (int source : slotSources) {
+            if (source == INDEX || source == INDEX_PADDED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills a slot array for one record.
+     *
+     * @param row The CSV values, in header order
+     * @param recordNumber The 1-based record number
+     * @param slotValues The array to fill; must hold at least {@link #getSlotCount()} entries
+     * @return The filled array, for chaining
+     */
+    public String[] bind(String[] row, int recordNumber, String[] slotValues) {
+        for (int slot = 0; slot < slotSources.length; slot++) {
+            int source = slotSources[slot];
+            slotValues[slot] = switch (source) {
+                case INDEX -> String.valueOf(recordNumber);
+                case INDEX_PADDED -> padRecordNumber(recordNumber);
+                default -> row[source];
+            };
+        }
+        return slotValues;
+    }
+
+    /**
+     * Fills a new slot array for one record.
+     *
+     * @param row The CSV values, in header order
+     * @param recordNumber The 1-based record number
+     * @return The slot values
+     */
+    public String[] bind(String[] row, int recordNumber) {
+        return bind(row, recordNumber, new String[slotSources.length]);
+    }
+
+    /**
+     * Formats a record number the way {@value #RECORD_INDEX_PADDED} exposes it.
+     *
+     * @param recordNumber The 1-based record number
+     * @return The number zero padded to at least four digits
+     */
+    public static String padRecordNumber(int recordNumber) {
+        return String.format("%04d", recordNumber);
+    }
+}
@@ -0,0 +1,42 @@
+package media.samson.jamplate.core;
+
+/**
+ * A place in a {@link SeekableRecordSource} that reading can be restarted from.
+ * <p>
+ * The offset is only meaningful to the kind of source that produced it. It always
+ * lies on a record boundary, and the record index tells how many records come
+ * before it, so a caller can seek there and skip forward to any later record.
+ */
+public final class RecordPosition {
+    private final long offset;
+    private final long recordIndex;
+
+    /**
+     * Creates a position.
+     *
+     * @param offset The source-specific offset of a record boundary
+     * @param recordIndex The number of records before the boundary
+     */
+    public RecordPosition(long offset, long recordIndex) {
+        this.offset = offset;
+        this.recordIndex = recordIndex;
+    }
+
+    /**
+     * Gets the source-specific offset of the record boundary.
+     *
+     * @return The offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the number of records before the boundary.
+     *
+     * @return The 0-based index of the record that starts at the boundary
+     */
+    public long getRecordIndex() {
+        return recordIndex;
+    }
+}
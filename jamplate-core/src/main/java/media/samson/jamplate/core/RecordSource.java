@@ -0,0 +1,49 @@
+package media.samson.jamplate.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A forward-only source of records laid out by column.
+ * Records are produced one at a time, so a source never needs to hold the
+ * whole input in memory.
+ */
+public interface RecordSource extends Closeable {
+
+    /**
+     * Gets the column names, in the order values appear in each record.
+     *
+     * @return An unmodifiable list of column names
+     */
+    List<String> getHeaders();
+
+    /**
+     * Reads the next record.
+     *
+     * @return The record's values in header order, or null when there are no more records
+     * @throws IOException If the input cannot be read or parsed
+     */
+    String[] nextRecord() throws IOException;
+
+    /**
+     * Limits the values read to some columns, so the others are not parsed into
+     * strings or kept in memory. Records keep the header layout, with null in the
+     * columns that were not selected. Records read ahead before the call may still
+     * hold every value, and sources that cannot skip columns may ignore the call.
+     *
+     * @param columns The names of the columns to read
+     */
+    default void selectColumns(Set<String> columns) {
+    }
+
+    /**
+     * Estimates the total number of records in the source.
+     * The estimate may change as more of the input is read, and is exact once
+     * the source is exhausted.
+     *
+     * @return The estimated record count
+     */
+    long estimateRecordCount();
+}
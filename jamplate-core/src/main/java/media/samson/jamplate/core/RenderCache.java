@@ -0,0 +1,172 @@
+package media.samson.jamplate.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of rendered documents with least-recently-used eviction.
+ * <p>
+ * Once a {@link RecordBinder} has bound a record, its slot values are everything
+ * the specialised template depends on, so records with the same slot values render
+ * to the same bytes. The key is the slot values themselves, which only costs a
+ * hash over strings the record already holds. Documents larger than
+ * {@value #MAX_DOCUMENT_BYTES} bytes are rendered but not kept, which bounds the
+ * memory held by the cache. A document can also be written to a stream, in which
+ * case a miss is rendered straight into the stream instead of into a byte array first.
+ * <p>
+ * The cache is thread-safe. Rendering happens outside the lock, so two threads
+ * missing on the same values at once may both render them; the result is the same
+ * either way. Cached documents are shared and must not be modified.
+ */
+final class RenderCache {
+    /** Largest document kept, in bytes. */
+    static final int MAX_DOCUMENT_BYTES = 64 * 1024;
+
+    private final Renderer renderer;
+    private final int capacity;
+    private final Map<SlotKey, byte[]> entries;
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param renderer Renders slot values as a UTF-8 document on a miss
+     * @param capacity The maximum number of documents to keep
+     */
+    RenderCache(Renderer renderer, int capacity) {
+        this.renderer = renderer;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SlotKey, byte[]> eldest) {
+                return size() > RenderCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the UTF-8 document for a record's slot values, rendering it on a miss.
+     *
+     * @param slotValues The bound slot values; the array may be reused afterwards
+     * @return The rendered document
+     */
+    byte[] render(String[] slotValues) {
+        SlotKey key = new SlotKey(0, slotValues.clone());
+        byte[] cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            renderer.render(slotValues, out);
+        } catch (IOException e) {
+            // A byte array stream never fails
+            throw new UncheckedIOException(e);
+        }
+        byte[] content = out.toByteArray();
+        if (content.length <= MAX_DOCUMENT_BYTES) {
+            put(key, content);
+        }
+        return content;
+    }
+
+    /**
+     * Writes the UTF-8 document for a record's slot values to a stream. On a miss the
+     * document is rendered straight into the stream and kept if it is small enough.
+     *
+     * @param slotValues The bound slot values; the array may be reused afterwards
+     * @param out The stream to write to; it is not closed
+     * @throws IOException If writing to the stream fails
+     */
+    void render(String[] slotValues, OutputStream out) throws IOException {
+        SlotKey key = new SlotKey(0, slotValues.clone());
+        byte[] cached = get(key);
+        if (cached != null) {
+            out.write(cached);
+            return;
+        }
+        CopyingOutputStream copy = new CopyingOutputStream(out);
+        renderer.render(slotValues, copy);
+        if (copy.copy != null) {
+            put(key, copy.copy.toByteArray());
+        }
+    }
+
+    /**
+     * Gets the number of documents served from the cache.
+     *
+     * @return The hit count
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    private synchronized byte[] get(SlotKey key) {
+        byte[] cached = entries.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    private synchronized void put(SlotKey key, byte[] content) {
+        entries.put(key, content);
+    }
+
+    /**
+     * Renders slot values as a UTF-8 document.
+     */
+    @FunctionalInterface
+    interface Renderer {
+        /**
+         * Streams a document.
+         *
+         * @param slotValues The bound slot values
+         * @param out The stream to render into; it is not closed
+         * @throws IOException If writing to the stream fails
+         */
+        void render(String[] slotValues, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Passes bytes through while keeping a copy, until the copy is too large to cache.
+     */
+    private static final class CopyingOutputStream extends FilterOutputStream {
+        /** The bytes written so far, or null once there are too many to cache. */
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CopyingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            keep(1);
+            if (copy != null) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            keep(len);
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+        }
+
+        private void keep(int length) {
+            if (copy != null && copy.size() + length > MAX_DOCUMENT_BYTES) {
+                copy = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package media.samson.jamplate.core;
+
+import java.io.IOException;
+
+/**
+ * A {@link RecordSource} that can restart reading from a remembered position,
+ * so an interrupted export can be resumed without parsing the input from the start.
+ */
+public interface SeekableRecordSource extends RecordSource {
+
+    /**
+     * Identifies the input being read, so a position is only reused with the same input.
+     *
+     * @return A string that changes whenever the input changes
+     */
+    String getFingerprint();
+
+    /**
+     * Gets a position from which reading returns the most recently read record again,
+     * or an earlier one.
+     *
+     * @return The position, never past the last record returned
+     */
+    RecordPosition getPosition();
+
+    /**
+     * Restarts reading at a position obtained from {@link #getPosition()} on a source
+     * of the same kind over the same input.
+     *
+     * @param position The position to read from
+     * @throws IOException If the input cannot be read from that position
+     * @throws IllegalArgumentException If the position is outside the input
+     */
+    void seek(RecordPosition position) throws IOException;
+
+    /**
+     * Translates a position saved by a source of another kind over the same input,
+     * so an export can resume with whichever source reads the input now.
+     *
+     * @param position The saved position
+     * @param sourceType The class name of the source that saved it
+     * @return A position this source can seek to, or null if it cannot be translated
+     * @throws IOException If the input cannot be read
+     */
+    default RecordPosition translatePosition(RecordPosition position, String sourceType) throws IOException {
+        return sourceType.equals(getClass().getName()) ? position : null;
+    }
+}
@@ -0,0 +1,60 @@
+package media.samson.jamplate.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * How an {@link ExportJob} spreads documents over subdirectories.
+ * Very large flat directories slow down file lookups and backup tools, so huge
+ * exports can be split into shards of a bounded size.
+ */
+public enum ShardingStrategy {
+    /** Every document goes straight into the export directory. */
+    NONE("None"),
+    /**
+     * Consecutive records share a subdirectory, numbered from {@code 0000/}, holding
+     * {@link ExportOptions#getShardSize()} records each.
+     */
+    RECORD_RANGE("By record range"),
+    /**
+     * Documents are spread over 256 subdirectories, {@code 00/} to {@code ff/}, by a
+     * hash of the filename, so the shard can be found again from the name alone.
+     */
+    FILENAME_HASH("By filename hash");
+
+    private final String displayName;
+
+    ShardingStrategy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets the path of a document relative to the export directory.
+     *
+     * @param fileName The document's unique filename
+     * @param recordNumber The 1-based record number
+     * @param shardSize The number of records per shard for {@link #RECORD_RANGE}
+     * @return The filename, prefixed with its shard directory and a slash
+     */
+    String pathFor(String fileName, int recordNumber, int shardSize) {
+        return switch (this) {
+            case NONE -> fileName;
+            case RECORD_RANGE -> String.format("%04d/%s", (recordNumber - 1) / shardSize, fileName);
+            case FILENAME_HASH -> {
+                CRC32 crc = new CRC32();
+                crc.update(fileName.getBytes(StandardCharsets.UTF_8));
+                yield String.format("%02x/%s", crc.getValue() & 0xFF, fileName);
+            }
+        };
+    }
+
+    /**
+     * Returns the display name of the sharding strategy.
+     *
+     * @return The human-readable display name
+     */
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,35 @@
+package media.samson.jamplate.core;
+
+import java.util.Arrays;
+
+/**
+ * A cache key made of slot values, with its hash computed once.
+ * The id tells apart keys for different parts of a template.
+ */
+final class SlotKey {
+    private final int id;
+    private final String[] values;
+    private final int hash;
+
+    /**
+     * Creates a key.
+     *
+     * @param id What the values belong to, such as a fragment index
+     * @param values The slot values, which must not be changed afterwards
+     */
+    SlotKey(int id, String[] values) {
+        this.id = id;
+        this.values = values;
+        this.hash = 31 * id + Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SlotKey key && hash == key.hash && id == key.id && Arrays.equals(values, key.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,68 @@
+package media.samson.jamplate.core;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every document into one stream, one after another, with a separator between them.
+ * Used for a single concatenated file and for standard output.
+ */
+final class StreamSink implements OutputSink {
+    private final OutputStream out;
+    private final byte[] separator;
+    private final boolean closeStream;
+    private boolean first = true;
+
+    /**
+     * Creates a sink over a stream.
+     *
+     * @param out The stream to write to; should be buffered
+     * @param separator Written between documents
+     * @param closeStream true to close the stream with the sink, false to only flush it
+     */
+    StreamSink(OutputStream out, String separator, boolean closeStream) {
+        this.out = out;
+        this.separator = separator.getBytes(StandardCharsets.UTF_8);
+        this.closeStream = closeStream;
+    }
+
+    @Override
+    public OutputStream openEntry(String fileName) throws IOException {
+        if (!first) {
+            out.write(separator);
+        }
+        first = false;
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                // The document ends here, but the stream carries on
+            }
+        };
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public boolean requiresRecordOrder() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeStream) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+}
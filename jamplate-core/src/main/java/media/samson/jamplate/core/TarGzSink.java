@@ -0,0 +1,141 @@
+package media.samson.jamplate.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every document into a single gzip-compressed tar archive, without temporary files.
+ * <p>
+ * Entries use the POSIX ustar layout. A tar header holds the entry size, so each
+ * document is buffered in memory until its entry is closed. Names that do not fit
+ * the 100-byte ustar name field are stored in a PAX extended header.
+ */
+final class TarGzSink implements OutputSink {
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+
+    private final OutputStream out;
+    private final long modificationTime = System.currentTimeMillis() / 1000;
+
+    /**
+     * Creates the archive.
+     *
+     * @param archiveFile The .tar.gz file to create
+     * @param compressionLevel The deflate level, 0-9 or -1 for the default
+     * @throws IOException If the archive cannot be created
+     */
+    TarGzSink(Path archiveFile, int compressionLevel) throws IOException {
+        this.out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(archiveFile), 1 << 16), 1 << 16) {
+            {
+                def.setLevel(compressionLevel);
+            }
+        };
+    }
+
+    @Override
+    public OutputStream openEntry(String fileName) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    writeEntry(fileName, buf, count);
+                }
+            }
+        };
+    }
+
+    private void writeEntry(String fileName, byte[] content, int length) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > NAME_LENGTH) {
+            // Record the full name in a PAX header that applies to the next entry
+            byte[] record = paxRecord("path", fileName);
+            out.write(header(truncatedName(name, "PaxHeader/"), record.length, (byte) 'x'));
+            out.write(record);
+            pad(record.length);
+        }
+        out.write(header(truncatedName(name, ""), length, (byte) '0'));
+        out.write(content, 0, length);
+        pad(length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Two empty blocks mark the end of the archive
+        out.write(new byte[BLOCK_SIZE * 2]);
+        out.close();
+    }
+
+    private byte[] header(byte[] name, long size, byte type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, NAME_LENGTH));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, modificationTime);
+        header[156] = type;
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+
+        // The checksum is computed with its own field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private void pad(int length) throws IOException {
+        int remainder = length % BLOCK_SIZE;
+        if (remainder != 0) {
+            out.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    /**
+     * Writes a zero-padded octal number followed by a NUL into a header field.
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = i - (width - digits.length());
+            header[offset + i] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        header[offset + width] = 0;
+    }
+
+    private static byte[] truncatedName(byte[] name, String prefix) {
+        byte[] prefixBytes = prefix.getBytes(StandardCharsets.US_ASCII);
+        byte[] result = new byte[Math.min(NAME_LENGTH, prefixBytes.length + name.length)];
+        System.arraycopy(prefixBytes, 0, result, 0, prefixBytes.length);
+        System.arraycopy(name, 0, result, prefixBytes.length, result.length - prefixBytes.length);
+        return result;
+    }
+
+    /**
+     * Builds a PAX record of the form {@code "<length> <key>=<value>\n"}, where the
+     * length counts the whole record including its own digits.
+     */
+    private static byte[] paxRecord(String key, String value) {
+        int body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = body + String.valueOf(body).length();
+        if (String.valueOf(length).length() > String.valueOf(body).length()) {
+            length++;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package media.samson.jamplate.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of {@link CompiledTemplate}s with least-recently-used eviction.
+ * <p>
+ * Template text is keyed by its SHA-256 hash, so the same template compiled from
+ * different places is parsed once. Template files are keyed by their absolute path,
+ * modification time and size, so a hit does not need to read the file and an edited
+ * file is compiled again.
+ * <p>
+ * The cache is thread-safe. Compiling happens outside the lock, so two threads
+ * missing on the same template at once may both compile it; the result is the same
+ * either way.
+ */
+public final class TemplateCache {
+    /** Number of templates kept by the shared cache. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final Map<String, CompiledTemplate> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The maximum number of templates to keep
+     * @throws IllegalArgumentException If the capacity is less than 1
+     */
+    public TemplateCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+                return size() > TemplateCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the compiled form of a template, compiling it on a miss.
+     *
+     * @param source The template text
+     * @return The compiled template
+     */
+    public CompiledTemplate compile(String source) {
+        String text = source == null ? "" : source;
+        String key = "sha256:" + sha256(text);
+
+        CompiledTemplate cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompiledTemplate compiled = CompiledTemplate.compile(text);
+        put(key, compiled);
+        return compiled;
+    }
+
+    /**
+     * Gets the compiled form of a UTF-8 template file, reading and compiling it on a miss.
+     *
+     * @param templateFile The template file
+     * @return The compiled template
+     * @throws IOException If the file cannot be read
+     */
+    public CompiledTemplate compile(Path templateFile) throws IOException {
+        Path path = templateFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = "file:" + path + ":" + attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+
+        CompiledTemplate cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompiledTemplate compiled = CompiledTemplate.compile(Files.readString(path, StandardCharsets.UTF_8));
+        put(key, compiled);
+        return compiled;
+    }
+
+    /**
+     * Gets the number of lookups that found a compiled template.
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to compile the template.
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the maximum number of templates kept.
+     *
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of templates currently cached.
+     *
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every cached template and resets the counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private synchronized CompiledTemplate get(String key) {
+        CompiledTemplate cached = entries.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    private synchronized void put(String key, CompiledTemplate compiled) {
+        entries.put(key, compiled);
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,4 +1,4 @@
-package media.samson.jamplate;
+package media.samson.jamplate.core;
 
 /**
  * Enum representing different types of template files that can be used in projects.
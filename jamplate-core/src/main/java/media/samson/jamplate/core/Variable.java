@@ -1,4 +1,4 @@
-package media.samson.jamplate;
+package media.samson.jamplate.core;
 
 import jakarta.xml.bind.annotation.XmlAttribute;
 import jakarta.xml.bind.annotation.XmlRootElement;
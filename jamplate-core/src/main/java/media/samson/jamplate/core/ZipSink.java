@@ -0,0 +1,53 @@
+package media.samson.jamplate.core;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams every document into a single ZIP archive, without temporary files.
+ */
+final class ZipSink implements OutputSink {
+    private final ZipOutputStream zip;
+
+    /**
+     * Creates the archive.
+     *
+     * @param archiveFile The ZIP file to create
+     * @param compressionLevel The deflate level, 0-9 or -1 for the default
+     * @throws IOException If the archive cannot be created
+     */
+    ZipSink(Path archiveFile, int compressionLevel) throws IOException {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(archiveFile), 1 << 16),
+            StandardCharsets.UTF_8);
+        this.zip.setLevel(compressionLevel);
+    }
+
+    @Override
+    public OutputStream openEntry(String fileName) throws IOException {
+        zip.putNextEntry(new ZipEntry(fileName));
+        return new FilterOutputStream(zip) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Finish the entry but keep the archive open
+                zip.closeEntry();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
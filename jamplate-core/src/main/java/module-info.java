@@ -0,0 +1,12 @@
+module media.samson.jamplate.core {
+    // XML and CSV handling
+    requires jakarta.xml.bind;
+    requires org.apache.commons.csv;
+
+    // Export the core package
+    exports media.samson.jamplate.core;
+
+    // Open the package for reflection access
+    opens media.samson.jamplate.core to
+        jakarta.xml.bind;      // For XML serialization
+}
@@ -0,0 +1,155 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompiledTemplate} class.
+ */
+@DisplayName("CompiledTemplate Tests")
+public class CompiledTemplateTest {
+
+    @Test
+    @DisplayName("Template without placeholders renders unchanged")
+    void testPlainText() {
+        CompiledTemplate template = CompiledTemplate.compile("<p>Hello world</p>");
+
+        assertEquals(0, template.getSlotCount(), "Plain text should have no slots");
+        assertEquals("<p>Hello world</p>", template.render(Map.of()));
+    }
+
+    @Test
+    @DisplayName("Placeholders are replaced with their values")
+    void testSimpleSubstitution() {
+        CompiledTemplate template = CompiledTemplate.compile("Hello {{$first}} {{$last}}!");
+
+        Map<String, String> values = new HashMap<>();
+        values.put("first", "Ada");
+        values.put("last", "Lovelace");
+
+        assertEquals("Hello Ada Lovelace!", template.render(values));
+        assertEquals(List.of("first", "last"), template.getVariableNames());
+    }
+
+    @Test
+    @DisplayName("Repeated placeholders share a single slot")
+    void testRepeatedPlaceholders() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$a}}-{{$b}}-{{$a}}");
+
+        assertEquals(2, template.getSlotCount(), "Repeated names should share a slot");
+        assertEquals(3, template.getPlaceholderCount(), "Every occurrence is a placeholder");
+        assertEquals("1-2-1", template.render(Map.of("a", "1", "b", "2")));
+    }
+
+    @Test
+    @DisplayName("Unbound placeholders are left in the output")
+    void testUnboundPlaceholder() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$known}} and {{$unknown}}");
+
+        assertEquals("yes and {{$unknown}}", template.render(Map.of("known", "yes")));
+    }
+
+    @Test
+    @DisplayName("Dollar signs and backslashes in values are inserted literally")
+    void testSpecialCharactersInValues() {
+        CompiledTemplate template = CompiledTemplate.compile("Price: {{$price}} Path: {{$path}}");
+
+        Map<String, String> values = Map.of("price", "$1.00", "path", "C:\\temp\\$1");
+
+        assertEquals("Price: $1.00 Path: C:\\temp\\$1", template.render(values));
+    }
+
+    @Test
+    @DisplayName("Values containing placeholders are not expanded again")
+    void testValuesAreNotReexpanded() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$a}}");
+
+        assertEquals("{{$b}}", template.render(Map.of("a", "{{$b}}", "b", "nope")));
+    }
+
+    @Test
+    @DisplayName("Unterminated and nested openers are handled like the regex engine")
+    void testMalformedPlaceholders() {
+        assertEquals("{{$a", CompiledTemplate.compile("{{$a").render(Map.of("a", "x")));
+        assertEquals("{{$a x", CompiledTemplate.compile("{{$a {{$b}}").render(Map.of("b", "x")));
+        assertEquals("x}", CompiledTemplate.compile("{{$a}}}").render(Map.of("a", "x")));
+    }
+
+    @Test
+    @DisplayName("MyTemplateEngine delegates to the compiled template")
+    void testTemplateEngineBuild() {
+        MyTemplateEngine engine = new MyTemplateEngine();
+        engine.setTemplate("<h1>{{$title}}</h1>");
+
+        HashMap<String, String> values = new HashMap<>();
+        values.put("title", "Report $5");
+
+        assertEquals("<h1>Report $5</h1>", engine.build(values));
+        assertEquals(List.of("title"), engine.getCompiledTemplate().getVariableNames());
+    }
+
+    @Test
+    @DisplayName("Rendering to a Writer matches rendering to a String")
+    void testRenderToWriter() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile("<p>{{$name}} ({{$missing}})</p>");
+        Map<String, String> values = Map.of("name", "Zoë");
+
+        StringWriter writer = new StringWriter();
+        template.render(values, writer);
+
+        assertEquals(template.render(values), writer.toString());
+    }
+
+    @Test
+    @DisplayName("Rendering to an OutputStream encodes with the given charset")
+    void testRenderToOutputStream() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile("Hello {{$name}}");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Zoë"), out, StandardCharsets.UTF_8);
+
+        assertArrayEquals("Hello Zoë".getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Specialising folds constant variables into the literal text")
+    void testSpecialise() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$title}}: {{$name}}, {{$title}} {{$name}}");
+
+        CompiledTemplate specialised = template.specialise(Map.of("title", "Dr"));
+
+        assertEquals(List.of("name"), specialised.getVariableNames());
+        assertEquals(2, specialised.getPlaceholderCount());
+        assertEquals(template.render(Map.of("title", "Dr", "name", "Who")),
+            specialised.render(new String[] {"Who"}));
+    }
+
+    @Test
+    @DisplayName("Splitting at per-record slots leaves spans keyed by the other slots")
+    void testSplit() {
+        CompiledTemplate template = CompiledTemplate.compile(
+            "<h1>{{$country}}</h1><p>{{$name}}</p><p>{{$plan}} in {{$country}}</p>");
+        String[] values = {"France", "Ada", "Gold"};
+
+        // Only "name" changes with every record
+        List<CompiledTemplate.Span> spans = template.split(new boolean[] {false, true, false});
+
+        assertEquals(2, spans.size());
+        assertArrayEquals(new int[] {0}, spans.get(0).getKeySlots());
+        assertEquals(1, spans.get(0).getFollowingSlot());
+        assertEquals("<h1>France</h1><p>", spans.get(0).render(values));
+        assertArrayEquals(new int[] {0, 2}, spans.get(1).getKeySlots());
+        assertEquals(-1, spans.get(1).getFollowingSlot());
+        assertEquals("</p><p>Gold in France</p>", spans.get(1).render(values));
+    }
+}
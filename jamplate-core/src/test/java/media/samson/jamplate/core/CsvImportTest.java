@@ -0,0 +1,96 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CsvImport Tests")
+class CsvImportTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File writeCsv(String content) throws IOException {
+        Path file = tempDir.resolve("data.csv");
+        Files.writeString(file, content);
+        return file.toFile();
+    }
+
+    @Test
+    @DisplayName("Should expose records as maps in header order")
+    void testRecordViews() throws IOException {
+        CsvImport csvImport = new CsvImport(writeCsv("name,city,age\nAlice,Paris,30\nBob,London,25\n"));
+
+        assertEquals(List.of("name", "city", "age"), csvImport.getHeaders());
+        assertEquals(2, csvImport.getRecordCount());
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("name", "Bob");
+        expected.put("city", "London");
+        expected.put("age", "25");
+        Map<String, String> record = csvImport.getRecord(1);
+        assertEquals(expected, record);
+        assertEquals(List.of("name", "city", "age"), List.copyOf(record.keySet()));
+        assertNull(record.get("missing"));
+        assertThrows(UnsupportedOperationException.class, () -> record.put("name", "Eve"));
+
+        assertEquals(2, csvImport.getRecords().size());
+        assertEquals("Paris", csvImport.getRecords().get(0).get("city"));
+        assertArrayEquals(new String[]{"Alice", "Paris", "30"}, csvImport.getRecordValues(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> csvImport.getRecord(2));
+    }
+
+    @Test
+    @DisplayName("Should return field values and validate required fields")
+    void testFieldValues() throws IOException {
+        CsvImport csvImport = new CsvImport(writeCsv("name,city\nAlice,Paris\nBob,London\nCarol,Paris\n"));
+
+        assertEquals(List.of("Paris", "London", "Paris"), csvImport.getFieldValues("city"));
+        assertThrows(IllegalArgumentException.class, () -> csvImport.getFieldValues("age"));
+
+        assertDoesNotThrow(() -> csvImport.validateRequiredFields(List.of("name", "city")));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> csvImport.validateRequiredFields(List.of("name", "age", "email")));
+        assertTrue(e.getMessage().contains("age, email"));
+    }
+
+    @Test
+    @DisplayName("Should dictionary encode only low-cardinality columns")
+    void testDictionaryEncoding() throws IOException {
+        int rows = CsvImport.DICTIONARY_LIMIT * 2;
+        StringBuilder csv = new StringBuilder("id,country\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("id-").append(i).append(",country-").append(i % 5).append('\n');
+        }
+        CsvImport csvImport = new CsvImport(writeCsv(csv.toString()));
+
+        assertTrue(csvImport.isDictionaryEncoded("country"));
+        assertFalse(csvImport.isDictionaryEncoded("id"));
+
+        List<String> ids = csvImport.getFieldValues("id");
+        List<String> countries = csvImport.getFieldValues("country");
+        assertEquals(rows, ids.size());
+        for (int i = 0; i < rows; i++) {
+            assertEquals("id-" + i, ids.get(i));
+            assertEquals("country-" + (i % 5), countries.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject missing, empty and header-only files")
+    void testInvalidFiles() throws IOException {
+        assertThrows(IOException.class, () -> new CsvImport(tempDir.resolve("missing.csv").toFile()));
+        assertThrows(IllegalArgumentException.class, () -> new CsvImport(writeCsv("")));
+        assertThrows(IllegalArgumentException.class, () -> new CsvImport(writeCsv("name,city\n")));
+    }
+}
@@ -0,0 +1,91 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CsvRecordReader Tests")
+class CsvRecordReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File writeCsv(String content) throws IOException {
+        Path file = tempDir.resolve("data.csv");
+        Files.writeString(file, content);
+        return file.toFile();
+    }
+
+    @Test
+    @DisplayName("Should stream records in header order")
+    void testStreamsRecords() throws IOException {
+        File file = writeCsv("name, city\nAlice, Paris\n\nBob,\"Lon, don\"\n");
+
+        try (CsvRecordReader reader = new CsvRecordReader(file)) {
+            assertEquals(List.of("name", "city"), reader.getHeaders());
+            assertArrayEquals(new String[]{"Alice", "Paris"}, reader.nextRecord());
+            assertArrayEquals(new String[]{"Bob", "Lon, don"}, reader.nextRecord());
+            assertNull(reader.nextRecord());
+            assertNull(reader.nextRecord());
+        }
+    }
+
+    @Test
+    @DisplayName("Should estimate the record count and make it exact at the end")
+    void testEstimateRecordCount() throws IOException {
+        StringBuilder csv = new StringBuilder("id,value\n");
+        for (int i = 0; i < 1000; i++) {
+            csv.append(String.format("%05d,value-%05d%n", i, i));
+        }
+
+        try (CsvRecordReader reader = new CsvRecordReader(writeCsv(csv.toString()))) {
+            long estimate = reader.estimateRecordCount();
+            assertTrue(estimate > 900 && estimate < 1100, "Unexpected estimate: " + estimate);
+
+            int count = 0;
+            while (reader.nextRecord() != null) {
+                count++;
+            }
+            assertEquals(1000, count);
+            assertEquals(1000, reader.estimateRecordCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject records with missing values")
+    void testShortRecord() throws IOException {
+        // Within the read-ahead sample the error is reported when the file is opened
+        File file = writeCsv("name,city\nAlice,Paris\nBob\n");
+        assertThrows(IllegalArgumentException.class, () -> new CsvRecordReader(file));
+
+        // Further in, it is reported when the record is reached
+        StringBuilder csv = new StringBuilder("name,city\n");
+        for (int i = 0; i < 150; i++) {
+            csv.append("Alice,Paris\n");
+        }
+        csv.append("Bob\n");
+        try (CsvRecordReader reader = new CsvRecordReader(writeCsv(csv.toString()))) {
+            for (int i = 0; i < 150; i++) {
+                assertNotNull(reader.nextRecord());
+            }
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::nextRecord);
+            assertTrue(e.getMessage().contains("city"));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject missing, empty and header-only files")
+    void testInvalidFiles() throws IOException {
+        assertThrows(IOException.class, () -> new CsvRecordReader(tempDir.resolve("missing.csv").toFile()));
+        assertThrows(IllegalArgumentException.class, () -> new CsvRecordReader(writeCsv("")));
+        assertThrows(IllegalArgumentException.class, () -> new CsvRecordReader(writeCsv("name,city\n")));
+    }
+}
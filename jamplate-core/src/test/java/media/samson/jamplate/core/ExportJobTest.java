@@ -0,0 +1,675 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ExportJob} class.
+ */
+@DisplayName("ExportJob Tests")
+public class ExportJobTest {
+
+    private static final String TIMESTAMP = "20240101_120000";
+    private static final int RECORD_COUNT = 200;
+
+    @TempDir
+    Path tempDir;
+
+    private Path csvFile;
+    private CompiledTemplate template;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StringBuilder csv = new StringBuilder("filename,name,city\n");
+        for (int i = 1; i <= RECORD_COUNT; i++) {
+            csv.append("doc-").append(i).append(",Person ").append(i).append(",City ").append(i % 7).append('\n');
+        }
+        csvFile = tempDir.resolve("data.csv");
+        Files.writeString(csvFile, csv.toString());
+
+        template = CompiledTemplate.compile(
+            "<h1>{{$JamplateProjectName}}</h1><p>{{$name}} from {{$city}} ({{$JamplateRecordIndex}})</p>");
+    }
+
+    private ExportJob createJob(Path outputDir, ExportOptions options, List<Variable> variables) throws IOException {
+        return createJob(new CsvRecordReader(csvFile.toFile()), outputDir, options, variables);
+    }
+
+    private ExportJob createJob(RecordSource source, Path outputDir, ExportOptions options, List<Variable> variables)
+            throws IOException {
+        Files.createDirectories(outputDir);
+        return new ExportJob(source, template, variables, "Demo",
+            TemplateFileType.HTML_FILE, outputDir, TIMESTAMP, options);
+    }
+
+    /**
+     * Opens the reader an export with the given thread count uses for a large file,
+     * with chunks small enough to seek within this one, optionally counting the records it returns.
+     */
+    private SeekableRecordSource createReader(int threads, AtomicInteger reads) throws IOException {
+        if (reads == null) {
+            return threads == 1
+                ? new CsvRecordReader(csvFile.toFile())
+                : new ParallelCsvReader(csvFile.toFile(), StandardCharsets.UTF_8, threads, 64);
+        }
+        if (threads == 1) {
+            return new CsvRecordReader(csvFile.toFile()) {
+                @Override
+                public String[] nextRecord() throws IOException {
+                    reads.incrementAndGet();
+                    return super.nextRecord();
+                }
+            };
+        }
+        return new ParallelCsvReader(csvFile.toFile(), StandardCharsets.UTF_8, threads, 64) {
+            @Override
+            public String[] nextRecord() throws IOException {
+                reads.incrementAndGet();
+                return super.nextRecord();
+            }
+        };
+    }
+
+    /**
+     * Opens a reader that interrupts the calling thread once it has returned the given record.
+     */
+    private SeekableRecordSource interruptingReader(int interruptAfter) throws IOException {
+        AtomicInteger reads = new AtomicInteger();
+        return new CsvRecordReader(csvFile.toFile()) {
+            @Override
+            public String[] nextRecord() throws IOException {
+                String[] record = super.nextRecord();
+                if (reads.incrementAndGet() == interruptAfter) {
+                    Thread.currentThread().interrupt();
+                }
+                return record;
+            }
+        };
+    }
+
+    private static Map<String, String> readOutputs(Path dir) throws IOException {
+        Map<String, String> outputs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                outputs.put(file.getFileName().toString(), Files.readString(file));
+            }
+        }
+        return outputs;
+    }
+
+    private static ExportListener collectingListener(List<Integer> exported, List<Integer> failed) {
+        return new ExportListener() {
+            @Override
+            public void recordExported(int recordNumber, String fileName, int completed, int total) {
+                exported.add(recordNumber);
+            }
+
+            @Override
+            public void recordFailed(int recordNumber, Exception error, int completed, int total) {
+                failed.add(recordNumber);
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Sequential export writes one file per record")
+    void testSequentialExport() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(1);
+        Path outputDir = tempDir.resolve("sequential");
+        List<Integer> exported = new ArrayList<>();
+        List<Integer> failed = new ArrayList<>();
+
+        int completed = createJob(outputDir, options, List.of()).run(() -> false, collectingListener(exported, failed));
+
+        assertEquals(RECORD_COUNT, completed);
+        assertEquals(RECORD_COUNT, exported.size());
+        assertTrue(failed.isEmpty(), "No record should fail");
+
+        Map<String, String> outputs = readOutputs(outputDir);
+        assertEquals(RECORD_COUNT, outputs.size());
+        assertEquals("<h1>Demo</h1><p>Person 3 from City 3 (3)</p>", outputs.get("doc-3.html"));
+    }
+
+    @Test
+    @DisplayName("Parallel exports produce the same files as a sequential export")
+    void testParallelMatchesSequential() throws IOException {
+        ExportOptions sequential = new ExportOptions();
+        sequential.setThreads(1);
+        createJob(tempDir.resolve("seq"), sequential, List.of()).run(() -> false, collectingListener(
+            new ArrayList<>(), new ArrayList<>()));
+
+        ExportOptions virtual = new ExportOptions();
+        virtual.setThreads(8);
+        virtual.setQueueCapacity(3);
+        List<Integer> exported = Collections.synchronizedList(new ArrayList<>());
+        createJob(tempDir.resolve("virtual"), virtual, List.of()).run(() -> false, collectingListener(
+            exported, new ArrayList<>()));
+
+        ExportOptions platform = new ExportOptions();
+        platform.setThreads(4);
+        platform.setVirtualThreads(false);
+        createJob(tempDir.resolve("platform"), platform, List.of()).run(() -> false, collectingListener(
+            new ArrayList<>(), new ArrayList<>()));
+
+        Map<String, String> expected = readOutputs(tempDir.resolve("seq"));
+        assertEquals(expected, readOutputs(tempDir.resolve("virtual")));
+        assertEquals(expected, readOutputs(tempDir.resolve("platform")));
+        assertEquals(RECORD_COUNT, exported.size());
+    }
+
+    @Test
+    @DisplayName("Pipeline stages count every record and drain their queues")
+    void testStageCounters() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(3);
+        options.setQueueCapacity(2);
+        ExportJob job = createJob(tempDir.resolve("staged"), options, List.of());
+
+        job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        List<ExportStage> stages = job.getStages();
+        assertEquals(List.of("Read", "Render", "Write"), stages.stream().map(ExportStage::getName).toList());
+        for (ExportStage stage : stages) {
+            assertEquals(RECORD_COUNT, stage.getProcessed(), stage.getName());
+            assertEquals(0, stage.getQueueDepth(), stage.getName());
+        }
+        assertEquals(2, stages.get(1).getQueueCapacity());
+        assertEquals(2, stages.get(2).getQueueCapacity());
+    }
+
+    @Test
+    @DisplayName("Cancellation stops new records from starting")
+    void testCancellation() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(4);
+        AtomicInteger polls = new AtomicInteger();
+
+        int completed = createJob(tempDir.resolve("cancelled"), options, List.of())
+            .run(() -> polls.incrementAndGet() > 10, collectingListener(
+                Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        assertEquals(10, completed, "Only records started before cancellation should finish");
+        Map<String, String> outputs = readOutputs(tempDir.resolve("cancelled"));
+        assertNotNull(outputs.remove(ExportCheckpoint.FILE_NAME), "A cancelled export should keep its checkpoint");
+        assertEquals(10, outputs.size());
+    }
+
+    @Test
+    @DisplayName("Interrupting the export thread cancels without failing the record in flight")
+    void testInterruptCancellation() throws IOException {
+        for (int threads : new int[]{1, 4}) {
+            Path outputDir = tempDir.resolve("interrupted-" + threads);
+            ExportOptions options = new ExportOptions();
+            options.setThreads(threads);
+            options.setDurability(Durability.ON_CLOSE);
+            List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+
+            // As a cancelled JavaFX task does: the thread is interrupted while a record is being exported
+            ExportJob job = createJob(interruptingReader(50), outputDir, options, List.of());
+            int completed = job.run(() -> false,
+                collectingListener(Collections.synchronizedList(new ArrayList<>()), failed));
+
+            assertTrue(Thread.interrupted(), "The interrupt is restored for the caller");
+            assertEquals(50, completed, "Threads " + threads);
+            assertEquals(List.of(), failed, "Threads " + threads);
+            assertNull(job.getDeadLetterFile(), "Threads " + threads);
+            Map<String, String> outputs = readOutputs(outputDir);
+            assertNotNull(outputs.remove(ExportCheckpoint.FILE_NAME), "A cancelled export should keep its checkpoint");
+            assertEquals(50, outputs.size(), "Threads " + threads);
+
+            options.setResume(true);
+            ExportJob resumed = createJob(interruptingReader(0), outputDir, options, List.of());
+            assertEquals(RECORD_COUNT, resumed.run(() -> false, collectingListener(
+                Collections.synchronizedList(new ArrayList<>()), new ArrayList<>())));
+            assertEquals(RECORD_COUNT, readOutputs(outputDir).size(), "Threads " + threads);
+        }
+    }
+
+    @Test
+    @DisplayName("Filename template variable controls the output names")
+    void testFilenameTemplate() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(1);
+        List<Variable> variables = List.of(
+            new Variable(ExportJob.OUTPUT_FILE_NAME, "Text", "{{$city}}-{{$JamplateRecordIndexPadded}}"));
+
+        createJob(tempDir.resolve("named"), options, variables).run(() -> false, collectingListener(
+            new ArrayList<>(), new ArrayList<>()));
+
+        assertTrue(Files.exists(tempDir.resolve("named").resolve("City 1-0001.html")));
+    }
+
+    @Test
+    @DisplayName("Duplicate filenames get a counter instead of overwriting")
+    void testFilenameCollisions() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(4);
+        List<Variable> variables = List.of(new Variable(ExportJob.OUTPUT_FILE_NAME, "Text", "{{$city}}"));
+        Path outputDir = tempDir.resolve("collisions");
+
+        createJob(outputDir, options, variables).run(() -> false, collectingListener(
+            Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        assertEquals(RECORD_COUNT, readOutputs(outputDir).size(), "Every record should get its own file");
+        // Duplicates are numbered in record order, whatever order they were rendered in
+        assertTrue(Files.readString(outputDir.resolve("City 1.html")).contains("(1)"));
+        assertTrue(Files.readString(outputDir.resolve("City 1_2.html")).contains("(8)"));
+    }
+
+    /**
+     * Blocks every tenth output file with a directory of the same name, so those records fail to write.
+     */
+    private static void blockEveryTenthFile(Path outputDir) throws IOException {
+        for (int i = 10; i <= RECORD_COUNT; i += 10) {
+            Files.createDirectories(outputDir.resolve("doc-" + i + ".html"));
+        }
+    }
+
+    @Test
+    @DisplayName("Failed records are written to a dead-letter file without stopping the export")
+    void testDeadLetterFile() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(4);
+        Path outputDir = tempDir.resolve("dead-letter");
+        blockEveryTenthFile(outputDir);
+        List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+        ExportJob job = createJob(outputDir, options, List.of());
+
+        int completed = job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), failed));
+
+        assertEquals(RECORD_COUNT, completed);
+        assertEquals(RECORD_COUNT / 10, failed.size());
+        assertEquals(RECORD_COUNT / 10, job.getFailedCount());
+
+        Path deadLetterFile = job.getDeadLetterFile();
+        assertEquals(outputDir.resolve("failed-records_" + TIMESTAMP + ".csv"), deadLetterFile);
+        List<String> lines = Files.readAllLines(deadLetterFile);
+        assertEquals("jamplate_record,filename,name,city,jamplate_error", lines.get(0));
+        assertEquals(RECORD_COUNT / 10 + 1, lines.size());
+        // Rows keep the original values and end with the error
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("10,doc-10,Person 10,City 3,")
+            && line.contains("doc-10.html")), String.join("\n", lines));
+    }
+
+    @Test
+    @DisplayName("Exports reading only the used columns write just those columns to the dead-letter file")
+    void testDeadLetterFileWithColumnProjection() throws IOException {
+        // The name column is neither in the template nor used for filenames
+        template = CompiledTemplate.compile("<p>{{$city}}</p>");
+        ExportOptions options = new ExportOptions();
+        options.setThreads(4);
+        options.setColumnProjection(true);
+        Path outputDir = tempDir.resolve("dead-letter-projected");
+        blockEveryTenthFile(outputDir);
+        ExportJob job = createJob(outputDir, options, List.of());
+
+        job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        assertEquals("<p>City 1</p>", Files.readString(outputDir.resolve("doc-1.html")));
+        List<String> lines = Files.readAllLines(job.getDeadLetterFile());
+        assertEquals("jamplate_record,filename,city,jamplate_error", lines.get(0));
+        assertEquals(RECORD_COUNT / 10 + 1, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("10,doc-10,City 3,")
+            && line.contains("doc-10.html")), String.join("\n", lines));
+    }
+
+    @Test
+    @DisplayName("Export stops once the failure limit is exceeded")
+    void testFailureLimit() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(1);
+        options.setMaxFailures(2);
+        Path outputDir = tempDir.resolve("fail-fast");
+        blockEveryTenthFile(outputDir);
+        ExportJob job = createJob(outputDir, options, List.of());
+
+        IOException error = assertThrows(IOException.class, () -> job.run(() -> false,
+            collectingListener(new ArrayList<>(), new ArrayList<>())));
+
+        assertTrue(error.getMessage().contains("3 failed records"), error.getMessage());
+        assertEquals(3, job.getFailedCount());
+        // The third failure is record 30. Files are written asynchronously, so the few
+        // records queued behind it may still be written, but nothing after them is read
+        assertFalse(Files.exists(outputDir.resolve("doc-" + (31 + DirectorySink.QUEUED_PER_THREAD) + ".html")));
+        assertTrue(Files.exists(outputDir.resolve("doc-29.html")));
+    }
+
+    @Test
+    @DisplayName("Clean exports leave no dead-letter file")
+    void testNoDeadLetterFileWithoutFailures() throws IOException {
+        ExportOptions options = new ExportOptions();
+        options.setThreads(2);
+        ExportJob job = createJob(tempDir.resolve("clean"), options, List.of());
+
+        job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        assertNull(job.getDeadLetterFile());
+        assertEquals(0, job.getFailedCount());
+        assertEquals(RECORD_COUNT, readOutputs(tempDir.resolve("clean")).size());
+    }
+
+    @Test
+    @DisplayName("ZIP export holds the same documents as a file export")
+    void testZipExport() throws IOException {
+        ExportOptions files = new ExportOptions();
+        files.setThreads(1);
+        createJob(tempDir.resolve("files"), files, List.of()).run(() -> false, collectingListener(
+            new ArrayList<>(), new ArrayList<>()));
+
+        for (int threads : new int[]{1, 4}) {
+            ExportOptions zip = new ExportOptions();
+            zip.setThreads(threads);
+            zip.setOutputFormat(OutputFormat.ZIP);
+            zip.setCompressionLevel(1);
+            Path outputDir = tempDir.resolve("zip-" + threads);
+            ExportJob job = createJob(outputDir, zip, List.of());
+            job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+            assertEquals(outputDir.resolve("export_" + TIMESTAMP + ".zip"), job.getOutputFile());
+            try (Stream<Path> written = Files.list(outputDir)) {
+                assertEquals(List.of(job.getOutputFile()), written.toList(), "Only the archive should be written");
+            }
+
+            Map<String, String> entries = new TreeMap<>();
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(job.getOutputFile()))) {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    entries.put(entry.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            assertEquals(readOutputs(tempDir.resolve("files")), entries);
+        }
+    }
+
+    @Test
+    @DisplayName("Concatenated export keeps record order with parallel rendering")
+    void testConcatenatedExport() throws IOException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= RECORD_COUNT; i++) {
+            expected.add("<h1>Demo</h1><p>Person " + i + " from City " + (i % 7) + " (" + i + ")</p>");
+        }
+
+        ExportOptions options = new ExportOptions();
+        options.setThreads(4);
+        options.setOutputFormat(OutputFormat.CONCATENATED);
+        Path outputDir = tempDir.resolve("concatenated");
+        ExportJob job = createJob(outputDir, options, List.of());
+        job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        assertEquals(outputDir.resolve("export_" + TIMESTAMP + ".html"), job.getOutputFile());
+        assertEquals(String.join("\n", expected), Files.readString(job.getOutputFile()));
+    }
+
+    @Test
+    @DisplayName("Custom sinks receive every document and are flushed per batch")
+    void testCustomSinkFlushPolicy() throws IOException {
+        List<String> names = new ArrayList<>();
+        AtomicInteger flushes = new AtomicInteger();
+        AtomicInteger closes = new AtomicInteger();
+        OutputSink sink = new OutputSink() {
+            @Override
+            public OutputStream openEntry(String fileName) {
+                names.add(fileName);
+                return OutputStream.nullOutputStream();
+            }
+
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+
+            @Override
+            public void close() {
+                closes.incrementAndGet();
+            }
+        };
+
+        ExportOptions options = new ExportOptions();
+        options.setThreads(2);
+        options.setOutputSink(sink);
+        options.setBatchSize(50);
+        Path outputDir = tempDir.resolve("custom");
+        ExportJob job = createJob(outputDir, options, List.of());
+        job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+        assertEquals(RECORD_COUNT, names.size());
+        assertEquals(RECORD_COUNT / 50, flushes.get());
+        assertEquals(1, closes.get());
+        assertNull(job.getOutputFile());
+        assertEquals(0, readOutputs(outputDir).size(), "Nothing should be written to the export directory");
+    }
+
+    @Test
+    @DisplayName("Sharded export spreads files over subdirectories and writes a manifest")
+    void testShardedExport() throws IOException {
+        for (ShardingStrategy sharding : new ShardingStrategy[]{ShardingStrategy.RECORD_RANGE,
+                ShardingStrategy.FILENAME_HASH}) {
+            ExportOptions options = new ExportOptions();
+            options.setThreads(4);
+            options.setSharding(sharding);
+            options.setShardSize(64);
+            options.setManifestEnabled(true);
+            Path outputDir = tempDir.resolve(sharding.name());
+            ExportJob job = createJob(outputDir, options, List.of());
+            job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+            List<String> manifest = Files.readAllLines(job.getManifestFile());
+            assertEquals("jamplate_record,path", manifest.get(0));
+            assertEquals(RECORD_COUNT + 1, manifest.size());
+            for (String row : manifest.subList(1, manifest.size())) {
+                String[] columns = row.split(",");
+                int recordNumber = Integer.parseInt(columns[0]);
+                String path = columns[1];
+                assertTrue(path.endsWith("/doc-" + recordNumber + ".html"), path);
+                assertTrue(Files.isRegularFile(outputDir.resolve(path)), path);
+                if (sharding == ShardingStrategy.RECORD_RANGE) {
+                    assertEquals(String.format("%04d", (recordNumber - 1) / 64), path.substring(0, 4));
+                } else {
+                    assertTrue(path.matches("[0-9a-f]{2}/.*"), path);
+                }
+            }
+        }
+        try (Stream<Path> shards = Files.list(tempDir.resolve(ShardingStrategy.RECORD_RANGE.name()))) {
+            assertEquals(4, shards.filter(Files::isDirectory).count(), "200 records in shards of 64");
+        }
+    }
+
+    @Test
+    @DisplayName("Incremental export only rewrites changed records and deletes stale files")
+    void testIncrementalExport() throws IOException {
+        Path outputDir = tempDir.resolve("incremental");
+        ExportOptions options = new ExportOptions();
+        options.setThreads(4);
+        options.setIncremental(true);
+        ExportJob first = createJob(outputDir, options, List.of());
+        first.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+        assertEquals(0, first.getUnchangedCount());
+        assertTrue(Files.exists(outputDir.resolve(".jamplate-manifest.csv")));
+
+        // Change record 3 and drop the last record
+        List<String> lines = new ArrayList<>(Files.readAllLines(csvFile));
+        lines.set(3, "doc-3,Someone Else,City 3");
+        lines.remove(lines.size() - 1);
+        Files.write(csvFile, lines);
+
+        for (int threads : new int[]{1, 4}) {
+            options.setThreads(threads);
+            ExportJob rerun = createJob(outputDir, options, List.of());
+            List<Integer> exported = Collections.synchronizedList(new ArrayList<>());
+            rerun.run(() -> false, collectingListener(exported, new ArrayList<>()));
+
+            assertEquals(RECORD_COUNT - 1, exported.size(), "Unchanged records still count as exported");
+            assertEquals(threads == 1 ? RECORD_COUNT - 2 : RECORD_COUNT - 1, rerun.getUnchangedCount());
+            assertEquals(threads == 1 ? 1 : 0, rerun.getDeletedCount());
+        }
+        assertEquals("<h1>Demo</h1><p>Someone Else from City 3 (3)</p>",
+            Files.readString(outputDir.resolve("doc-3.html")));
+        assertFalse(Files.exists(outputDir.resolve("doc-" + RECORD_COUNT + ".html")));
+        assertEquals(RECORD_COUNT, readOutputs(outputDir).size(), "Documents plus the manifest");
+
+        ExportOptions zip = new ExportOptions();
+        zip.setIncremental(true);
+        zip.setOutputFormat(OutputFormat.ZIP);
+        assertThrows(IllegalArgumentException.class, () -> createJob(outputDir, zip, List.of()));
+    }
+
+    @Test
+    @DisplayName("A cancelled export resumes from its checkpoint and matches an uninterrupted export")
+    void testResume() throws IOException {
+        // Repeated cities give numbered duplicates, which must carry over the checkpoint
+        List<Variable> variables = List.of(new Variable(ExportJob.OUTPUT_FILE_NAME, "Text", "{{$city}}"));
+        ExportOptions clean = new ExportOptions();
+        clean.setThreads(1);
+        createJob(tempDir.resolve("clean"), clean, variables)
+            .run(() -> false, collectingListener(new ArrayList<>(), new ArrayList<>()));
+        Map<String, String> expected = readOutputs(tempDir.resolve("clean"));
+        assertEquals(RECORD_COUNT, expected.size(), "A finished export removes its checkpoint");
+
+        for (int threads : new int[]{1, 4}) {
+            Path outputDir = tempDir.resolve("resumed-" + threads);
+            ExportOptions options = new ExportOptions();
+            options.setThreads(threads);
+            AtomicInteger polls = new AtomicInteger();
+            int first = createJob(outputDir, options, variables).run(() -> polls.incrementAndGet() > 50,
+                collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+            assertEquals(50, first);
+            assertEquals(TIMESTAMP, ExportJob.findResumableTimestamp(outputDir));
+
+            options.setResume(true);
+            ExportJob resumed = createJob(outputDir, options, variables);
+            List<Integer> exported = Collections.synchronizedList(new ArrayList<>());
+            int completed = resumed.run(() -> false, collectingListener(exported, new ArrayList<>()));
+
+            assertEquals(RECORD_COUNT, completed);
+            assertEquals(50, resumed.getResumedCount());
+            assertEquals(RECORD_COUNT - 50, exported.size(), "Only records after the checkpoint are exported");
+            assertEquals(51, Collections.min(exported));
+            assertNull(ExportJob.findResumableTimestamp(outputDir));
+            assertEquals(expected, readOutputs(outputDir), "Threads " + threads);
+        }
+
+        // Resuming with another thread count, and so with the other reader, still seeks to the checkpoint
+        for (int threads : new int[]{1, 4}) {
+            Path outputDir = tempDir.resolve("switched-" + threads);
+            ExportOptions options = new ExportOptions();
+            options.setThreads(threads);
+            AtomicInteger polls = new AtomicInteger();
+            createJob(createReader(threads, null), outputDir, options, variables).run(
+                () -> polls.incrementAndGet() > 50, collectingListener(new ArrayList<>(), new ArrayList<>()));
+
+            int resumedThreads = threads == 1 ? 4 : 1;
+            options.setThreads(resumedThreads);
+            options.setResume(true);
+            AtomicInteger reads = new AtomicInteger();
+            List<Integer> exported = Collections.synchronizedList(new ArrayList<>());
+            ExportJob resumed = createJob(createReader(resumedThreads, reads), outputDir, options, variables);
+            assertEquals(RECORD_COUNT, resumed.run(() -> false, collectingListener(exported, new ArrayList<>())));
+            assertEquals(51, Collections.min(exported));
+            assertTrue(reads.get() < RECORD_COUNT - 40,
+                "Threads " + threads + " to " + resumedThreads + " seeks instead of reading every record: " + reads);
+            assertEquals(expected, readOutputs(outputDir), "Threads " + threads + " to " + resumedThreads);
+        }
+
+        // A checkpoint is not resumed against a different input
+        Path outputDir = tempDir.resolve("changed");
+        ExportOptions options = new ExportOptions();
+        createJob(outputDir, options, variables).run(() -> true,
+            collectingListener(new ArrayList<>(), new ArrayList<>()));
+        Files.writeString(csvFile, "doc-0,Someone,City 0\n", StandardOpenOption.APPEND);
+        options.setResume(true);
+        ExportJob changed = createJob(outputDir, options, variables);
+        assertThrows(IOException.class, () -> changed.run(() -> false,
+            collectingListener(new ArrayList<>(), new ArrayList<>())));
+    }
+
+    @Test
+    @DisplayName("Identical documents are rendered once and stored as links to one file")
+    void testDeduplicatedExport() throws IOException {
+        // Only the city varies, so 200 records produce 7 distinct documents
+        template = CompiledTemplate.compile("<p>Notice for {{$city}}</p>");
+        for (int threads : new int[]{1, 4}) {
+            Path outputDir = tempDir.resolve("dedup-" + threads);
+            ExportOptions options = new ExportOptions();
+            options.setThreads(threads);
+            options.setDeduplicate(true);
+            ExportJob job = createJob(outputDir, options, List.of());
+
+            int completed = job.run(() -> false,
+                collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+            assertEquals(RECORD_COUNT, completed);
+            Map<String, String> outputs = readOutputs(outputDir);
+            assertEquals(RECORD_COUNT, outputs.size());
+            assertEquals("<p>Notice for City 3</p>", outputs.get("doc-10.html"));
+            // Renderers racing on a city's first record may each render it
+            assertTrue(job.getRenderCacheHitCount() >= RECORD_COUNT - 7 * threads, "Threads " + threads);
+            // Documents can overtake each other, so two of a city may both be written before either is linked
+            assertTrue(job.getDeduplicatedCount() >= RECORD_COUNT - 7 * threads, "Threads " + threads);
+            assertTrue(Files.isSameFile(outputDir.resolve("doc-" + (RECORD_COUNT - 7) + ".html"),
+                outputDir.resolve("doc-" + RECORD_COUNT + ".html")));
+        }
+
+        // Documents that show the record number are all different, so none are cached
+        template = CompiledTemplate.compile("<p>{{$city}} #{{$JamplateRecordIndex}}</p>");
+        ExportJob numbered = createJob(tempDir.resolve("numbered"), new ExportOptions(), List.of());
+        numbered.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+        assertEquals(0, numbered.getRenderCacheHitCount());
+
+        ExportOptions zip = new ExportOptions();
+        zip.setDeduplicate(true);
+        zip.setOutputFormat(OutputFormat.ZIP);
+        assertThrows(IllegalArgumentException.class, () -> createJob(tempDir.resolve("zip"), zip, List.of()));
+    }
+
+    @Test
+    @DisplayName("Fragment caching renders the same documents as full rendering")
+    void testFragmentCachedExport() throws IOException {
+        // Enough records to finish sampling; the city repeats, the name and record number do not
+        StringBuilder csv = new StringBuilder("filename,name,city\n");
+        for (int i = 1; i <= 3 * FragmentRenderer.SAMPLE_RECORDS; i++) {
+            csv.append("doc-").append(i).append(",Person ").append(i).append(",City ").append(i % 7).append('\n');
+        }
+        Files.writeString(csvFile, csv.toString());
+
+        ExportOptions full = new ExportOptions();
+        full.setFragmentCacheSize(0);
+        ExportJob reference = createJob(tempDir.resolve("full"), full, List.of());
+        reference.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+        assertNull(reference.getFragmentCache());
+
+        for (int threads : new int[]{1, 4}) {
+            Path outputDir = tempDir.resolve("fragments-" + threads);
+            ExportOptions options = new ExportOptions();
+            options.setThreads(threads);
+            ExportJob job = createJob(outputDir, options, List.of());
+
+            job.run(() -> false, collectingListener(Collections.synchronizedList(new ArrayList<>()), new ArrayList<>()));
+
+            assertEquals(readOutputs(tempDir.resolve("full")), readOutputs(outputDir), "Threads " + threads);
+            FragmentCache cache = job.getFragmentCache();
+            assertTrue(cache.getHitCount() > FragmentRenderer.SAMPLE_RECORDS, "Threads " + threads);
+            assertEquals(0, cache.getEvictionCount());
+        }
+    }
+}
@@ -1,4 +1,4 @@
-package media.samson.jamplate;
+package media.samson.jamplate.core;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -0,0 +1,71 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link FragmentRenderer} class.
+ */
+@DisplayName("FragmentRenderer Tests")
+public class FragmentRendererTest {
+
+    private final CompiledTemplate template = CompiledTemplate.compile(
+        "<h1>{{$country}}</h1><p>Dear {{$name}},</p><p>Your {{$plan}} plan in {{$country}} renews.</p>");
+
+    private static String[] record(int i) {
+        return new String[] {i % 3 == 0 ? "France" : "Japón", "Person " + i, i % 2 == 0 ? "Gold" : null};
+    }
+
+    @Test
+    @DisplayName("Documents match the template and reuse fragments of low-cardinality slots")
+    void testRender() {
+        FragmentRenderer renderer = new FragmentRenderer(template, new FragmentCache(16));
+
+        // The record that completes the sample is the first one rendered from fragments
+        for (int i = 1; i < FragmentRenderer.SAMPLE_RECORDS + 100; i++) {
+            String[] values = record(i);
+            assertEquals(template.render(values), new String(renderer.render(values), StandardCharsets.UTF_8));
+        }
+
+        FragmentCache cache = renderer.getCache();
+        assertEquals(0, cache.getEvictionCount());
+        // Two spans around the name, each with at most 2 x 2 value combinations
+        assertTrue(cache.getMissCount() <= 6, "Misses: " + cache.getMissCount());
+        assertEquals(200 - cache.getMissCount(), cache.getHitCount());
+        assertTrue(cache.getHitRate() > 0.9);
+    }
+
+    @Test
+    @DisplayName("No fragments are cached while sampling")
+    void testSampling() {
+        FragmentRenderer renderer = new FragmentRenderer(template, new FragmentCache(16));
+
+        for (int i = 1; i < FragmentRenderer.SAMPLE_RECORDS; i++) {
+            renderer.render(record(i));
+        }
+
+        assertEquals(0, renderer.getCache().getMissCount());
+        assertEquals(0, renderer.getCache().size());
+    }
+
+    @Test
+    @DisplayName("A full cache evicts fragments and counts the evictions")
+    void testEviction() {
+        FragmentRenderer renderer = new FragmentRenderer(
+            CompiledTemplate.compile("<p>{{$code}}</p>{{$id}}"), new FragmentCache(4));
+
+        for (int i = 1; i < FragmentRenderer.SAMPLE_RECORDS + 64; i++) {
+            String[] values = {"C" + (i % FragmentRenderer.MAX_DISTINCT_VALUES), String.valueOf(i)};
+            assertEquals("<p>" + values[0] + "</p>" + i, new String(renderer.render(values), StandardCharsets.UTF_8));
+        }
+
+        FragmentCache cache = renderer.getCache();
+        assertEquals(4, cache.size());
+        assertEquals(64, cache.getMissCount(), "Cycling through more codes than fit should always miss");
+        assertEquals(60, cache.getEvictionCount());
+    }
+}
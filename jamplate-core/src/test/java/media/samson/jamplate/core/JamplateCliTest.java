@@ -0,0 +1,115 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("JamplateCli Tests")
+class JamplateCliTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path projectDir;
+    private Path csvFile;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ProjectFile projectFile = ProjectFile.create("Demo", tempDir.toString(), TemplateFileType.HTML_FILE);
+        assertTrue(projectFile.save());
+        projectDir = tempDir.resolve("Demo");
+        Files.writeString(Paths.get(projectFile.getTemplateFilePath()),
+            "<p>{{$greeting}}, {{$name}} ({{$JamplateProjectName}})</p>");
+        projectFile.saveVariables(List.of(new Variable("greeting", "Text", "Hello")));
+
+        csvFile = tempDir.resolve("data.csv");
+        Files.writeString(csvFile, "filename,name\nalice,Alice\nbob,Bob\n");
+    }
+
+    private int run(String... args) {
+        return JamplateCli.run(args,
+            new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should export every record and exit with 0")
+    void testExport() throws IOException {
+        Path outDir = tempDir.resolve("out");
+
+        int exitCode = run("export", "--project", projectDir.toString(), "--csv", csvFile.toString(),
+            "--out", outDir.toString(), "--threads", "2", "--durability", "batch", "--sync-interval", "1");
+
+        assertEquals(JamplateCli.EXIT_OK, exitCode, err.toString());
+        assertEquals("<p>Hello, Alice (Demo)</p>", Files.readString(outDir.resolve("alice.html")));
+        assertEquals("<p>Hello, Bob (Demo)</p>", Files.readString(outDir.resolve("bob.html")));
+        assertTrue(out.toString().contains("Exported 2 of 2 records"));
+    }
+
+    @Test
+    @DisplayName("Should start a new export when there is no checkpoint to resume")
+    void testResumeWithoutCheckpoint() throws IOException {
+        Path outDir = tempDir.resolve("out");
+
+        int exitCode = run("export", "--project", projectDir.toString(), "--csv", csvFile.toString(),
+            "--out", outDir.toString(), "--resume");
+
+        assertEquals(JamplateCli.EXIT_OK, exitCode, err.toString());
+        assertTrue(err.toString().contains("No checkpoint found"));
+        assertTrue(Files.exists(outDir.resolve("alice.html")));
+        assertFalse(Files.exists(outDir.resolve(ExportCheckpoint.FILE_NAME)), "A finished export leaves no checkpoint");
+    }
+
+    @Test
+    @DisplayName("Should write documents to standard output and the summary to standard error")
+    void testStdoutExport() {
+        int exitCode = run("export", "--project", projectDir.toString(), "--csv", csvFile.toString(),
+            "--format", "stdout", "--threads", "2", "--flush", "document");
+
+        assertEquals(JamplateCli.EXIT_OK, exitCode, err.toString());
+        assertEquals("<p>Hello, Alice (Demo)</p>\n<p>Hello, Bob (Demo)</p>", out.toString(StandardCharsets.UTF_8));
+        assertTrue(err.toString().contains("Exported 2 of 2 records to standard output"));
+    }
+
+    @Test
+    @DisplayName("Should exit with 1 when template variables are missing")
+    void testMissingVariables() throws IOException {
+        Files.writeString(csvFile, "filename\nalice\n");
+
+        int exitCode = run("export", "--project", projectDir.toString(), "--csv", csvFile.toString(),
+            "--out", tempDir.resolve("out").toString());
+
+        assertEquals(JamplateCli.EXIT_FAILED, exitCode);
+        assertTrue(err.toString().contains("name"));
+    }
+
+    @Test
+    @DisplayName("Should exit with 2 for invalid command lines")
+    void testUsageErrors() {
+        assertEquals(JamplateCli.EXIT_USAGE, run());
+        assertEquals(JamplateCli.EXIT_USAGE, run("import"));
+        assertEquals(JamplateCli.EXIT_USAGE, run("export", "--csv", csvFile.toString()));
+        assertEquals(JamplateCli.EXIT_USAGE, run("export", "--project", "p", "--csv", "c", "--out", "o",
+            "--threads", "zero"));
+        assertEquals(JamplateCli.EXIT_USAGE, run("export", "--bogus", "value"));
+        assertEquals(JamplateCli.EXIT_USAGE, run("export", "--project", "p", "--csv", "c", "--out", "o",
+            "--incremental", "--format", "zip"));
+        assertEquals(JamplateCli.EXIT_USAGE, run("export", "--project", "p", "--csv", "c", "--out", "o",
+            "--resume", "--format", "jsonl"));
+        assertEquals(JamplateCli.EXIT_OK, run("--help"));
+        assertTrue(out.toString().contains("Usage: jamplate export"));
+    }
+}
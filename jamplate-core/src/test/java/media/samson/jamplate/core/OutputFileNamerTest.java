@@ -0,0 +1,62 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OutputFileNamer} class.
+ */
+@DisplayName("OutputFileNamer Tests")
+public class OutputFileNamerTest {
+
+    @Test
+    @DisplayName("Filenames are sanitized")
+    void testSanitize() {
+        assertEquals("a_b_c.html", OutputFileNamer.sanitize("a/b\\\\c.html"));
+        assertEquals("a_b.html", OutputFileNamer.sanitize("a_/_b.html"));
+        assertEquals("report.txt", OutputFileNamer.sanitize("  report.txt. "));
+        assertEquals("untitled", OutputFileNamer.sanitize(". ."));
+        assertThrows(IllegalArgumentException.class, () -> OutputFileNamer.sanitize(" "));
+
+        String longName = "x".repeat(300) + ".html";
+        String sanitized = OutputFileNamer.sanitize(longName);
+        assertEquals(255, sanitized.length());
+        assertTrue(sanitized.endsWith(".html"));
+    }
+
+    @Test
+    @DisplayName("Long names are truncated by UTF-8 bytes without splitting characters")
+    void testMultiByteTruncation() {
+        String sanitized = OutputFileNamer.sanitize("é".repeat(200) + ".html");
+
+        assertTrue(sanitized.getBytes(StandardCharsets.UTF_8).length <= OutputFileNamer.MAX_FILENAME_BYTES);
+        assertEquals("é".repeat(125) + ".html", sanitized);
+    }
+
+    @Test
+    @DisplayName("Duplicate names are numbered, ignoring case")
+    void testCollisions() {
+        OutputFileNamer namer = new OutputFileNamer(List.of("name"), List.of(), "Demo",
+            TemplateFileType.HTML_FILE, "20240101_000000");
+
+        assertEquals("Report.html", namer.nextFileName(new String[]{"Report"}, 1));
+        assertEquals("report_2.html", namer.nextFileName(new String[]{"report"}, 2));
+        assertEquals("Report_3.html", namer.nextFileName(new String[]{"Report.html"}, 3));
+        // A name that happens to match a generated one is numbered too
+        assertEquals("Report_2_2.html", namer.nextFileName(new String[]{"Report_2"}, 4));
+    }
+
+    @Test
+    @DisplayName("Fallback names use the timestamp and record number")
+    void testFallbackName() {
+        OutputFileNamer namer = new OutputFileNamer(List.of("city"), List.of(), "Demo",
+            TemplateFileType.TXT_FILE, "20240101_000000");
+
+        assertEquals("20240101_000000_0007.txt", namer.nextFileName(new String[]{"Paris"}, 7));
+    }
+}
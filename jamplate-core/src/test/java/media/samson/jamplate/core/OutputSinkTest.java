@@ -0,0 +1,205 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link OutputSink} implementations.
+ */
+@DisplayName("OutputSink Tests")
+public class OutputSinkTest {
+
+    /** Longer than the 100-byte ustar name field. */
+    private static final String LONG_NAME = "long-document-name-".repeat(7) + ".html";
+
+    @TempDir
+    Path tempDir;
+
+    private static void writeDocuments(OutputSink sink) throws IOException {
+        try (sink) {
+            try (OutputStream out = sink.openEntry("first.html")) {
+                out.write("<p>First</p>".getBytes(StandardCharsets.UTF_8));
+            }
+            try (OutputStream out = sink.openEntry(LONG_NAME)) {
+                out.write("x".repeat(1000).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Reads a tar stream, following PAX path headers.
+     */
+    private static Map<String, String> readTar(InputStream in) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        DataInputStream data = new DataInputStream(in);
+        String paxPath = null;
+        byte[] header = new byte[512];
+        while (true) {
+            data.readFully(header);
+            if (header[0] == 0) {
+                return entries;
+            }
+            String name = new String(header, 0, 100, StandardCharsets.UTF_8).replace("\0", "");
+            int size = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+            byte[] content = new byte[size];
+            data.readFully(content);
+            data.skipNBytes((512 - size % 512) % 512);
+
+            if (header[156] == 'x') {
+                String record = new String(content, StandardCharsets.UTF_8);
+                paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+                assertEquals(size, Integer.parseInt(record.substring(0, record.indexOf(' '))),
+                    "PAX record length should count the whole record");
+            } else {
+                entries.put(paxPath != null ? paxPath : name, new String(content, StandardCharsets.UTF_8));
+                paxPath = null;
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("ZIP sink streams every document into one archive")
+    void testZipSink() throws IOException {
+        Path archive = tempDir.resolve("out.zip");
+        writeDocuments(new ZipSink(archive, 9));
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        assertEquals(2, entries.size());
+        assertEquals("<p>First</p>", entries.get("first.html"));
+        assertEquals(1000, entries.get(LONG_NAME).length());
+        assertTrue(Files.size(archive) < 1000, "Repetitive content should be compressed");
+    }
+
+    @Test
+    @DisplayName("TAR.GZ sink writes ustar entries with PAX headers for long names")
+    void testTarGzSink() throws IOException {
+        Path archive = tempDir.resolve("out.tar.gz");
+        writeDocuments(new TarGzSink(archive, 1));
+
+        Map<String, String> entries;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+            entries = readTar(in);
+        }
+
+        assertEquals(2, entries.size());
+        assertEquals("<p>First</p>", entries.get("first.html"));
+        assertEquals("x".repeat(1000), entries.get(LONG_NAME));
+    }
+
+    @Test
+    @DisplayName("Directory sink writes one file per document")
+    void testDirectorySink() throws IOException {
+        writeDocuments(new DirectorySink(tempDir));
+
+        assertEquals("<p>First</p>", Files.readString(tempDir.resolve("first.html")));
+        assertTrue(Files.exists(tempDir.resolve(LONG_NAME)));
+    }
+
+    @Test
+    @DisplayName("Directory sink renames complete files into place under every durability policy")
+    void testDirectorySinkDurability() throws IOException {
+        for (Durability durability : Durability.values()) {
+            Path directory = tempDir.resolve(durability.name());
+            Files.createDirectories(directory.resolve("blocked.html"));
+            List<String> written = Collections.synchronizedList(new ArrayList<>());
+            List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+            try (DirectorySink sink = new DirectorySink(directory, 2, durability, 3, false)) {
+                for (int i = 1; i <= 10; i++) {
+                    String fileName = "shard/doc-" + i + ".html";
+                    sink.write(fileName, ("Document " + i).getBytes(StandardCharsets.UTF_8),
+                        callback(fileName, written, failed));
+                }
+                sink.write("blocked.html", new byte[]{1}, callback("blocked.html", written, failed));
+            }
+
+            assertEquals(10, written.size(), durability.name());
+            assertEquals(List.of("blocked.html"), failed, durability.name());
+            assertEquals("Document 7", Files.readString(directory.resolve("shard/doc-7.html")));
+            try (Stream<Path> files = Files.walk(directory)) {
+                assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith(DirectorySink.TEMP_PREFIX)),
+                    "No temporary files should be left behind");
+            }
+        }
+    }
+
+    private static DirectorySink.WriteCallback callback(String fileName, List<String> written, List<String> failed) {
+        return new DirectorySink.WriteCallback() {
+            @Override
+            public void written(long bytes) {
+                written.add(fileName);
+            }
+
+            @Override
+            public void failed(Exception error) {
+                failed.add(fileName);
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Stream sink separates documents and leaves a shared stream open")
+    void testStreamSink() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        OutputStream stream = new FilterOutputStream(buffer) {
+            @Override
+            public void close() {
+                fail("A shared stream should not be closed");
+            }
+        };
+        StreamSink sink = new StreamSink(stream, "\n---\n", false);
+
+        writeDocuments(sink);
+
+        assertTrue(sink.requiresRecordOrder());
+        assertEquals("<p>First</p>\n---\n" + "x".repeat(1000), buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("JSON Lines sink writes one escaped object per document")
+    void testJsonLinesSink() throws IOException {
+        Path file = tempDir.resolve("out.jsonl");
+        try (JsonLinesSink sink = new JsonLinesSink(Files.newOutputStream(file))) {
+            try (OutputStream out = sink.openEntry("a \"quoted\" name.txt")) {
+                out.write("line 1\nline 2\t\\ \u0001 caf\u00e9".getBytes(StandardCharsets.UTF_8));
+            }
+            try (OutputStream out = sink.openEntry("empty.txt")) {
+                // An empty document is still a line
+            }
+        }
+
+        assertEquals(List.of(
+            "{\"filename\":\"a \\\"quoted\\\" name.txt\",\"content\":\"line 1\\nline 2\\t\\\\ \\u0001 caf\u00e9\"}",
+            "{\"filename\":\"empty.txt\",\"content\":\"\"}"),
+            Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,283 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ParallelCsvReader Tests")
+class ParallelCsvReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File writeCsv(String content) throws IOException {
+        return writeBytes(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File writeBytes(byte[] content) throws IOException {
+        Path file = tempDir.resolve("data.csv");
+        Files.write(file, content);
+        return file.toFile();
+    }
+
+    private static List<String[]> readAll(RecordSource source) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while ((row = source.nextRecord()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String trickyCsv(int records) {
+        StringBuilder csv = new StringBuilder("\n id , name,notes\r\n");
+        for (int i = 0; i < records; i++) {
+            switch (i % 5) {
+                case 0 -> csv.append(i).append(",Zoë ").append(i).append(",plain\n");
+                case 1 -> csv.append(i).append(",\"Smith, J\",\"line one\nline two\"\r\n");
+                case 2 -> csv.append(i).append(",\"say \"\"hi\"\"\" ,  spaced  \n\n");
+                case 3 -> csv.append(i).append(",a\"b,\"\"\r");
+                default -> csv.append(i).append(",,\"\"\"\",extra\n");
+            }
+        }
+        csv.append("last,no,newline");
+        return csv.toString();
+    }
+
+    @Test
+    @DisplayName("Should produce the same records as the sequential reader for any chunk size")
+    void testMatchesSequentialReader() throws IOException {
+        File file = writeCsv(trickyCsv(200));
+
+        List<String[]> expected;
+        try (CsvRecordReader reader = new CsvRecordReader(file)) {
+            expected = readAll(reader);
+        }
+        assertEquals(201, expected.size());
+
+        for (int chunkSize : new int[]{1, 7, 64, 1024, 1 << 20}) {
+            try (ParallelCsvReader reader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, chunkSize)) {
+                assertEquals(List.of("id", "name", "notes"), reader.getHeaders());
+                List<String[]> actual = readAll(reader);
+                assertEquals(expected.size(), actual.size(), "Chunk size " + chunkSize);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), actual.get(i), "Chunk size " + chunkSize + ", record " + i);
+                }
+                assertEquals(expected.size(), reader.estimateRecordCount());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should skip a byte order mark and use its encoding")
+    void testByteOrderMark() throws IOException {
+        ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+        utf8.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        utf8.write("name,city\nRenée,Zürich\n".getBytes(StandardCharsets.UTF_8));
+        File file = writeBytes(utf8.toByteArray());
+
+        try (ParallelCsvReader reader = new ParallelCsvReader(file, StandardCharsets.ISO_8859_1, 2, 4)) {
+            assertEquals(List.of("name", "city"), reader.getHeaders());
+            assertArrayEquals(new String[]{"Renée", "Zürich"}, reader.nextRecord());
+        }
+
+        // UTF-16 can't be split on bytes, so open() falls back to the sequential reader
+        ByteArrayOutputStream utf16 = new ByteArrayOutputStream();
+        utf16.write(new byte[]{(byte) 0xFF, (byte) 0xFE});
+        utf16.write("name,city\nRenée,Zürich\n".getBytes(StandardCharsets.UTF_16LE));
+        File utf16File = writeBytes(utf16.toByteArray());
+
+        try (RecordSource source = ParallelCsvReader.open(utf16File, StandardCharsets.UTF_8, 4)) {
+            assertInstanceOf(CsvRecordReader.class, source);
+            assertEquals(List.of("name", "city"), source.getHeaders());
+            assertArrayEquals(new String[]{"Renée", "Zürich"}, source.nextRecord());
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> new ParallelCsvReader(utf16File, StandardCharsets.UTF_8, 4));
+    }
+
+    @Test
+    @DisplayName("Should report bad records with their record number")
+    void testBadRecords() throws IOException {
+        StringBuilder csv = new StringBuilder("name,city\n");
+        for (int i = 0; i < 50; i++) {
+            csv.append("Alice,Paris\n");
+        }
+        String valid = csv.toString();
+
+        try (ParallelCsvReader reader = new ParallelCsvReader(writeCsv(valid + "Bob\n"), StandardCharsets.UTF_8, 4, 16)) {
+            skipRecords(reader, 50);
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::nextRecord);
+            assertTrue(e.getMessage().startsWith("Record 51 has 1 values"), e.getMessage());
+        }
+
+        try (ParallelCsvReader reader = new ParallelCsvReader(writeCsv(valid + "Bob,\"Lon\n"), StandardCharsets.UTF_8, 4, 16)) {
+            skipRecords(reader, 50);
+            IOException e = assertThrows(IOException.class, reader::nextRecord);
+            assertTrue(e.getMessage().contains("record 51"), e.getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Should resume reading from a saved position in a new reader")
+    void testSeek() throws IOException {
+        File file = writeCsv(trickyCsv(200));
+        List<String[]> expected;
+        try (CsvRecordReader reader = new CsvRecordReader(file)) {
+            expected = readAll(reader);
+        }
+
+        for (int read : new int[]{0, 1, 37, 150, 201}) {
+            RecordPosition sequential;
+            RecordPosition parallel;
+            try (CsvRecordReader reader = new CsvRecordReader(file)) {
+                skipRecords(reader, read);
+                sequential = reader.getPosition();
+            }
+            try (ParallelCsvReader reader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, 64)) {
+                skipRecords(reader, read);
+                parallel = reader.getPosition();
+            }
+
+            try (CsvRecordReader reader = new CsvRecordReader(file);
+                 ParallelCsvReader parallelReader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, 64)) {
+                reader.seek(sequential);
+                parallelReader.seek(parallel);
+                for (SeekableRecordSource source : List.of(reader, parallelReader)) {
+                    RecordPosition position = source == reader ? sequential : parallel;
+                    assertTrue(position.getRecordIndex() <= Math.max(0, read - 1), "Position is at or before the last read");
+                    skipRecords(source, read - (int) position.getRecordIndex());
+                    List<String[]> rest = readAll(source);
+                    assertEquals(expected.size() - read, rest.size(), source.getClass().getSimpleName() + " after " + read);
+                    for (int i = 0; i < rest.size(); i++) {
+                        assertArrayEquals(expected.get(read + i), rest.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should translate a position saved by the other reader")
+    void testTranslatePosition() throws IOException {
+        // A byte order mark and multi-byte characters make byte and character offsets differ
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        bytes.write(trickyCsv(200).getBytes(StandardCharsets.UTF_8));
+        File file = writeBytes(bytes.toByteArray());
+        List<String[]> expected;
+        try (CsvRecordReader reader = new CsvRecordReader(file)) {
+            expected = readAll(reader);
+        }
+
+        for (int read : new int[]{0, 1, 37, 150, 201}) {
+            RecordPosition sequential;
+            RecordPosition parallel;
+            try (CsvRecordReader reader = new CsvRecordReader(file)) {
+                skipRecords(reader, read);
+                sequential = reader.getPosition();
+            }
+            try (ParallelCsvReader reader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, 64)) {
+                skipRecords(reader, read);
+                parallel = reader.getPosition();
+            }
+
+            try (CsvRecordReader reader = new CsvRecordReader(file);
+                 ParallelCsvReader parallelReader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, 64)) {
+                RecordPosition fromParallel = reader.translatePosition(parallel, ParallelCsvReader.class.getName());
+                RecordPosition fromSequential = parallelReader.translatePosition(
+                    sequential, CsvRecordReader.class.getName());
+                assertNotNull(fromParallel);
+                assertNotNull(fromSequential);
+                reader.seek(fromParallel);
+                parallelReader.seek(fromSequential);
+                for (SeekableRecordSource source : List.of(reader, parallelReader)) {
+                    RecordPosition position = source == reader ? fromParallel : fromSequential;
+                    skipRecords(source, read - (int) position.getRecordIndex());
+                    List<String[]> rest = readAll(source);
+                    assertEquals(expected.size() - read, rest.size(), source.getClass().getSimpleName() + " after " + read);
+                    for (int i = 0; i < rest.size(); i++) {
+                        assertArrayEquals(expected.get(read + i), rest.get(i));
+                    }
+                }
+            }
+        }
+
+        try (ParallelCsvReader reader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, 64)) {
+            assertNull(reader.translatePosition(new RecordPosition(50, 3), "some.OtherReader"),
+                "Positions of unknown readers are not translated");
+            assertNull(reader.translatePosition(new RecordPosition(Long.MAX_VALUE, 3), CsvRecordReader.class.getName()),
+                "Positions past the end are not translated");
+        }
+    }
+
+    @Test
+    @DisplayName("Should only build values for the selected columns")
+    void testSelectColumns() throws IOException {
+        File file = writeCsv(trickyCsv(200));
+        List<String[]> expected;
+        try (CsvRecordReader reader = new CsvRecordReader(file)) {
+            expected = readAll(reader);
+        }
+
+        try (CsvRecordReader reader = new CsvRecordReader(file);
+             ParallelCsvReader parallelReader = new ParallelCsvReader(file, StandardCharsets.UTF_8, 4, 64)) {
+            for (RecordSource source : List.of(reader, parallelReader)) {
+                source.selectColumns(Set.of("id", "notes"));
+                List<String[]> rows = readAll(source);
+                assertEquals(expected.size(), rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    String name = source.getClass().getSimpleName() + ", record " + i;
+                    assertEquals(expected.get(i)[0], rows.get(i)[0], name);
+                    assertEquals(expected.get(i)[2], rows.get(i)[2], name);
+                    // Records parsed before the selection may keep every value
+                    if (i >= 100) {
+                        assertNull(rows.get(i)[1], name);
+                    }
+                }
+            }
+        }
+
+        // Skipped values are still checked
+        File bad = writeCsv("id,name\n1,a\n2,b\n3,\"bad\"x\n");
+        try (ParallelCsvReader reader = new ParallelCsvReader(bad, StandardCharsets.UTF_8, 2, 1)) {
+            reader.selectColumns(Set.of("id"));
+            assertThrows(IOException.class, () -> readAll(reader));
+        }
+    }
+
+    private static void skipRecords(RecordSource source, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            assertNotNull(source.nextRecord());
+        }
+    }
+
+    @Test
+    @DisplayName("Should use the sequential reader for small files and reject invalid ones")
+    void testOpen() throws IOException {
+        try (RecordSource source = ParallelCsvReader.open(writeCsv("name\nAlice\n"), StandardCharsets.UTF_8, 4)) {
+            assertInstanceOf(CsvRecordReader.class, source);
+        }
+
+        assertThrows(IOException.class,
+            () -> new ParallelCsvReader(tempDir.resolve("missing.csv").toFile(), StandardCharsets.UTF_8, 2));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ParallelCsvReader(writeCsv(""), StandardCharsets.UTF_8, 2));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ParallelCsvReader(writeCsv("name,city\n\n"), StandardCharsets.UTF_8, 2));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ParallelCsvReader(writeCsv("name,,city\nA,B,C\n"), StandardCharsets.UTF_8, 2));
+    }
+}
@@ -0,0 +1,95 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ProgressReporter} class.
+ */
+@DisplayName("ProgressReporter Tests")
+public class ProgressReporterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+
+    private ExportJob createJob(int records) throws IOException {
+        StringBuilder csv = new StringBuilder("name\n");
+        for (int i = 1; i <= records; i++) {
+            csv.append("Person ").append(i).append('\n');
+        }
+        Path csvFile = tempDir.resolve("data.csv");
+        Files.writeString(csvFile, csv.toString());
+
+        ExportOptions options = new ExportOptions();
+        options.setThreads(1);
+        return new ExportJob(new CsvRecordReader(csvFile.toFile()), CompiledTemplate.compile("<p>{{$name}}</p>"),
+            List.of(), "Demo", TemplateFileType.HTML_FILE, tempDir, "20240101_120000", options);
+    }
+
+    private static ExportListener ignoringListener() {
+        return new ExportListener() {
+            @Override
+            public void recordExported(int recordNumber, String fileName, int completed, int total) {
+            }
+
+            @Override
+            public void recordFailed(int recordNumber, Exception error, int completed, int total) {
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("No ETA is given before any record has finished")
+    void testNoEtaBeforeStart() throws IOException {
+        ProgressReporter reporter = new ProgressReporter(createJob(10), 0);
+
+        ExportProgress progress = reporter.sample(SECOND);
+
+        assertEquals(0, progress.getCompleted());
+        assertEquals(0.0, progress.getRecordsPerSecond());
+        assertNull(progress.getEta());
+        assertEquals(Duration.ofSeconds(1), progress.getElapsed());
+    }
+
+    @Test
+    @DisplayName("Throughput is measured from the job counters")
+    void testThroughput() throws IOException {
+        ExportJob job = createJob(200);
+        ProgressReporter reporter = new ProgressReporter(job, 0);
+        job.run(() -> false, ignoringListener());
+
+        ExportProgress progress = reporter.sample(2 * SECOND);
+
+        assertEquals(200, progress.getCompleted());
+        assertEquals(1.0, progress.getFraction());
+        assertEquals(100.0, progress.getRecordsPerSecond(), 0.001);
+        assertTrue(progress.getBytesWritten() > 0);
+        assertEquals(progress.getBytesWritten() / 2.0, progress.getBytesPerSecond(), 0.001);
+        assertEquals(Duration.ZERO, progress.getEta());
+    }
+
+    @Test
+    @DisplayName("Throughput is smoothed between samples")
+    void testSmoothing() throws IOException {
+        ExportJob job = createJob(200);
+        ProgressReporter reporter = new ProgressReporter(job, 0);
+        job.run(() -> false, ignoringListener());
+        reporter.sample(2 * SECOND);
+
+        // Nothing finished in the next two seconds, so the rate decays instead of dropping to zero
+        double rate = reporter.sample(4 * SECOND).getRecordsPerSecond();
+
+        assertEquals(100.0 * Math.exp(-1), rate, 0.001);
+    }
+}
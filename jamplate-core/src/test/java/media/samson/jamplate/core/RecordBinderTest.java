@@ -0,0 +1,107 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RecordBinder} class.
+ */
+@DisplayName("RecordBinder Tests")
+public class RecordBinderTest {
+
+    private static final List<String> HEADERS = List.of("name", "city");
+
+    @Test
+    @DisplayName("CSV columns are bound to slots by index")
+    void testCsvColumnsBound() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$city}}: {{$name}}");
+        RecordBinder binder = new RecordBinder(template, HEADERS, List.of(), "Project", "20240101_000000");
+
+        String[] slots = binder.bind(new String[] {"Ada", "London"}, 1);
+
+        assertEquals("London: Ada", binder.getTemplate().render(slots));
+    }
+
+    @Test
+    @DisplayName("CSV columns take precedence over project variables")
+    void testCsvOverridesProjectVariables() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$name}} / {{$company}}");
+        List<Variable> variables = List.of(
+            new Variable("name", "Text", "Project Name"),
+            new Variable("company", "Text", "Acme"),
+            new Variable("company", "Text", "Ignored duplicate")
+        );
+        RecordBinder binder = new RecordBinder(template, HEADERS, variables, "Project", "20240101_000000");
+
+        String[] slots = binder.bind(new String[] {"Ada", "London"}, 1);
+
+        assertEquals("Ada / Acme", binder.getTemplate().render(slots));
+    }
+
+    @Test
+    @DisplayName("Special variables override CSV columns")
+    void testSpecialVariables() {
+        CompiledTemplate template = CompiledTemplate.compile(
+            "{{$JamplateProjectName}} {{$JamplateDocumentCreateAt}} "
+                + "{{$JamplateRecordIndex}} {{$JamplateRecordIndexPadded}}");
+        List<String> headers = List.of("JamplateProjectName");
+        RecordBinder binder = new RecordBinder(template, headers, List.of(), "Demo", "20240101_000000");
+
+        String[] slots = binder.bind(new String[] {"from csv"}, 7);
+
+        assertEquals("Demo 20240101_000000 7 0007", binder.getTemplate().render(slots));
+    }
+
+    @Test
+    @DisplayName("Unknown variables are left as placeholders")
+    void testUnboundVariables() {
+        CompiledTemplate template = CompiledTemplate.compile("{{$missing}}");
+        RecordBinder binder = new RecordBinder(template, HEADERS, List.of(), "Project", "20240101_000000");
+
+        String[] slots = binder.bind(new String[] {"Ada", "London"}, 1);
+
+        assertEquals("{{$missing}}", binder.getTemplate().render(slots));
+    }
+
+    @Test
+    @DisplayName("Project constants are folded out of the per-record slots")
+    void testConstantsAreFolded() {
+        CompiledTemplate template = CompiledTemplate.compile(
+            "{{$JamplateProjectName}}: {{$greeting}} {{$name}} #{{$JamplateRecordIndex}}");
+        List<Variable> variables = List.of(new Variable("greeting", "Text", "Hello"));
+        RecordBinder binder = new RecordBinder(template, HEADERS, variables, "Demo", "20240101_000000");
+
+        assertEquals(List.of("name", "JamplateRecordIndex"), binder.getTemplate().getVariableNames(),
+            "Only CSV and record index slots should remain");
+
+        String[] slots = binder.bind(new String[] {"Ada", "London"}, 3);
+
+        assertEquals("Demo: Hello Ada #3", binder.getTemplate().render(slots));
+    }
+
+    @Test
+    @DisplayName("Variables without a CSV column, project variable or special value are reported")
+    void testFindUnboundVariables() {
+        CompiledTemplate template = CompiledTemplate.compile(
+            "{{$name}} {{$greeting}} {{$missing}} {{$JamplateRecordIndexPadded}} {{$other}} {{$missing}}");
+        List<Variable> variables = List.of(new Variable("greeting", "Text", "Hello"));
+
+        assertEquals(List.of("missing", "other"), RecordBinder.findUnboundVariables(template, HEADERS, variables));
+    }
+
+    @Test
+    @DisplayName("Only CSV columns read by per-record slots are reported as used")
+    void testColumnsUsed() {
+        CompiledTemplate template = CompiledTemplate.compile(
+            "{{$city}} {{$company}} {{$JamplateRecordIndex}} {{$JamplateProjectName}}");
+        List<Variable> variables = List.of(new Variable("company", "Text", "Acme"));
+        RecordBinder binder = new RecordBinder(template, HEADERS, variables, "Project", "20240101_000000");
+
+        assertEquals(Set.of("city"), binder.getColumnsUsed());
+    }
+}
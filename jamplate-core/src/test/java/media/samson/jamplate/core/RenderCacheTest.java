@@ -0,0 +1,93 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RenderCache} class.
+ */
+@DisplayName("RenderCache Tests")
+public class RenderCacheTest {
+
+    private final CompiledTemplate template = CompiledTemplate.compile("<p>{{$region}}: {{$notice}}</p>");
+    private final RenderCache.Renderer renderer =
+        (slotValues, out) -> template.render(slotValues, out, StandardCharsets.UTF_8);
+
+    @Test
+    @DisplayName("Equal slot values reuse the rendered document")
+    void testHit() {
+        RenderCache cache = new RenderCache(renderer, 4);
+        String[] slotValues = {"North", "Closed"};
+
+        byte[] first = cache.render(slotValues);
+        // The caller reuses its slot array for the next record
+        slotValues[0] = "South";
+        byte[] other = cache.render(slotValues);
+        byte[] second = cache.render(new String[]{"North", new String("Closed")});
+
+        assertSame(first, second, "Equal values should share the rendered bytes");
+        assertEquals("<p>North: Closed</p>", new String(first, StandardCharsets.UTF_8));
+        assertEquals("<p>South: Closed</p>", new String(other, StandardCharsets.UTF_8));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    @DisplayName("Least recently used document is evicted when full")
+    void testLruEviction() {
+        RenderCache cache = new RenderCache(renderer, 2);
+
+        byte[] a = cache.render(new String[]{"a", ""});
+        cache.render(new String[]{"b", ""});
+        // Touch "a" so "b" becomes the eldest entry
+        cache.render(new String[]{"a", ""});
+        cache.render(new String[]{"c", ""});
+
+        assertSame(a, cache.render(new String[]{"a", ""}));
+        cache.render(new String[]{"b", ""});
+        assertEquals(2, cache.getHitCount(), "Only the two lookups of \"a\" should hit");
+    }
+
+    @Test
+    @DisplayName("Large documents are rendered but not kept")
+    void testLargeDocument() {
+        RenderCache cache = new RenderCache(renderer, 4);
+        String[] slotValues = {"x".repeat(RenderCache.MAX_DOCUMENT_BYTES), ""};
+
+        byte[] first = cache.render(slotValues);
+        byte[] second = cache.render(slotValues);
+
+        assertNotSame(first, second);
+        assertArrayEquals(first, second);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    @DisplayName("A miss is rendered straight into the stream and kept for later records")
+    void testStream() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        List<Integer> renderedBytes = new ArrayList<>();
+        RenderCache cache = new RenderCache((slotValues, out) -> {
+            template.render(slotValues, out, StandardCharsets.UTF_8);
+            // The document reaches the caller's stream while it is rendered, not afterwards
+            renderedBytes.add(first.size());
+        }, 4);
+
+        cache.render(new String[]{"North", "Closed"}, first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        cache.render(new String[]{"North", "Closed"}, second);
+
+        assertEquals("<p>North: Closed</p>", first.toString(StandardCharsets.UTF_8));
+        assertEquals("<p>North: Closed</p>", second.toString(StandardCharsets.UTF_8));
+        assertEquals(List.of(first.size()), renderedBytes, "Only the miss should render");
+        assertEquals(1, cache.getHitCount());
+        assertArrayEquals(first.toByteArray(), cache.render(new String[]{"North", "Closed"}));
+    }
+}
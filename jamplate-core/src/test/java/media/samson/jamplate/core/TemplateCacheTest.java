@@ -0,0 +1,81 @@
+package media.samson.jamplate.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TemplateCache} class.
+ */
+@DisplayName("TemplateCache Tests")
+public class TemplateCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Identical template text is compiled once")
+    void testContentHit() {
+        TemplateCache cache = new TemplateCache(4);
+
+        CompiledTemplate first = cache.compile("Hello {{$name}}");
+        CompiledTemplate second = cache.compile(new String("Hello {{$name}}"));
+
+        assertSame(first, second, "Equal text should share the compiled template");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals("Hello Ada", second.render(Map.of("name", "Ada")));
+    }
+
+    @Test
+    @DisplayName("Least recently used template is evicted when full")
+    void testLruEviction() {
+        TemplateCache cache = new TemplateCache(2);
+
+        CompiledTemplate a = cache.compile("a");
+        cache.compile("b");
+        // Touch "a" so "b" becomes the eldest entry
+        cache.compile("a");
+        cache.compile("c");
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.compile("a"), "Recently used template should still be cached");
+        long misses = cache.getMissCount();
+        cache.compile("b");
+        assertEquals(misses + 1, cache.getMissCount(), "Evicted template should be compiled again");
+    }
+
+    @Test
+    @DisplayName("Template files are recompiled when they change")
+    void testFileKey() throws IOException {
+        TemplateCache cache = new TemplateCache(4);
+        Path templateFile = tempDir.resolve("template.html");
+        Files.writeString(templateFile, "<p>{{$name}}</p>");
+
+        CompiledTemplate first = cache.compile(templateFile);
+        assertSame(first, cache.compile(templateFile), "Unchanged file should hit the cache");
+
+        Files.writeString(templateFile, "<h1>{{$name}}</h1>");
+        Files.setLastModifiedTime(templateFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        CompiledTemplate edited = cache.compile(templateFile);
+
+        assertNotSame(first, edited, "Edited file should be compiled again");
+        assertEquals("<h1>Ada</h1>", edited.render(Map.of("name", "Ada")));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Capacity must be positive")
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new TemplateCache(0));
+    }
+}
@@ -56,4 +56,4 @@ echo "Main JAR: $MAIN_JAR"
 echo "Libraries: $LIBS_DIR"
 
 # Launch the application using classpath only
-java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" media.samson.jamplate.HelloApplication "$@" 
\ No newline at end of file
+java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" media.samson.jamplate.JamplateLauncher "$@" 
\ No newline at end of file
@@ -36,4 +36,4 @@ JAVA_OPTS=(
 )
 
 # Launch the application
-exec java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" media.samson.jamplate.HelloApplication "$@" 
\ No newline at end of file
+exec java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" media.samson.jamplate.JamplateLauncher "$@" 
\ No newline at end of file
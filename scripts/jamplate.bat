@@ -50,7 +50,7 @@ if %errorlevel% neq 0 (
 
 REM Launch the application
 echo Starting Jamplate...
-java %JAVA_OPTS% -cp "%CLASSPATH%" media.samson.jamplate.HelloApplication %*
+java %JAVA_OPTS% -cp "%CLASSPATH%" media.samson.jamplate.JamplateLauncher %*
 
 if %errorlevel% neq 0 (
     echo Application exited with error code %errorlevel%
@@ -59,4 +59,4 @@ fi
 
 # Launch the application
 echo "Starting Jamplate..."
-java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" media.samson.jamplate.HelloApplication "$@" 
\ No newline at end of file
+java "${JAVA_OPTS[@]}" -cp "$CLASSPATH" media.samson.jamplate.JamplateLauncher "$@" 
\ No newline at end of file